@@ -0,0 +1,56 @@
+package com.amigoscode.testing;
+
+import com.amigoscode.testing.payment.stripe.StripeApi;
+import com.amigoscode.testing.payment.stripe.StubStripeApi;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Boots the application without the web layer on its own in-memory H2 database, with
+ * stripe replaced by {@link StubStripeApi} so no benchmark ever leaves the JVM.
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(TestingApplication.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .initializers((GenericApplicationContext context) -> {
+                    context.getBeanFactory().registerSingleton(
+                            "testConfigurationExcludeFilter", new TestConfigurationExcludeFilter());
+                    context.registerBean(
+                            "stubStripeApi",
+                            StripeApi.class,
+                            StubStripeApi::new,
+                            definition -> definition.setPrimary(true));
+                })
+                .properties(
+                        "logging.level.root=WARN",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark-" + UUID.randomUUID())
+                // as command line arguments, so they win over application.properties
+                .run(Arrays.stream(properties).map(property -> "--" + property).toArray(String[]::new));
+    }
+
+    // Benchmarks run with the test classes on the classpath, keep their configurations out of the scan
+    private static class TestConfigurationExcludeFilter extends TypeExcludeFilter {
+
+        @Override
+        public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+            return metadataReader.getAnnotationMetadata().hasAnnotation(TestConfiguration.class.getName());
+        }
+    }
+}
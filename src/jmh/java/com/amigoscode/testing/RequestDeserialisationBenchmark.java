@@ -0,0 +1,51 @@
+package com.amigoscode.testing;
+
+import com.amigoscode.testing.customer.CustomerRegistrationRequest;
+import com.amigoscode.testing.payment.PaymentRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RequestDeserialisationBenchmark {
+
+    private static final byte[] PAYMENT_REQUEST = ("{\"payment\":{\"amount\":100.00,\"currency\":\"USD\"," +
+            "\"source\":\"card123xx\",\"description\":\"Donation\"}}").getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] CUSTOMER_REGISTRATION_REQUEST = ("{\"customer\":{\"name\":\"Zoe\"," +
+            "\"phoneNumber\":\"07700900000\"}}").getBytes(StandardCharsets.UTF_8);
+
+    // same defaults as the mapper spring boot configures for the controllers
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectReader paymentRequestReader = objectMapper.readerFor(PaymentRequest.class);
+    private final ObjectReader customerRegistrationRequestReader =
+            objectMapper.readerFor(CustomerRegistrationRequest.class);
+
+    @Benchmark
+    public PaymentRequest paymentRequest() throws IOException {
+        return paymentRequestReader.readValue(PAYMENT_REQUEST);
+    }
+
+    @Benchmark
+    public CustomerRegistrationRequest customerRegistrationRequest() throws IOException {
+        return customerRegistrationRequestReader.readValue(CUSTOMER_REGISTRATION_REQUEST);
+    }
+}
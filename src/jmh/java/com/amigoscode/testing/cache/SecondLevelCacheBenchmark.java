@@ -0,0 +1,114 @@
+package com.amigoscode.testing.cache;
+
+import com.amigoscode.testing.BenchmarkContext;
+import com.amigoscode.testing.customer.Customer;
+import com.amigoscode.testing.customer.CustomerRegistrationRequest;
+import com.amigoscode.testing.customer.CustomerRegistrationService;
+import com.amigoscode.testing.payment.Currency;
+import com.amigoscode.testing.payment.Money;
+import com.amigoscode.testing.payment.Payment;
+import com.amigoscode.testing.payment.PaymentRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Repeat registrations and payment lookups by id with hibernate's second-level cache on and off. The
+// read-through caches and the in-memory phone number index are switched off so every read reaches
+// hibernate. The statements counter over the score is the number of sql statements per call.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SecondLevelCacheBenchmark {
+
+    private static final int ROWS = 1_000;
+
+    @Param({"true", "false"})
+    public boolean secondLevelCache;
+
+    private ConfigurableApplicationContext context;
+    private CustomerRegistrationService customerRegistrationService;
+    private PaymentRepository paymentRepository;
+    private Statistics statistics;
+    private final List<Customer> customers = new ArrayList<>(ROWS);
+    private final List<Payment> payments = new ArrayList<>(ROWS);
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(
+                "cache.hibernate.enabled=" + secondLevelCache,
+                "cache.specs.customers.maximum-size=0",
+                "cache.specs.customers-by-phone-number-key.maximum-size=0",
+                "cache.specs.payments.maximum-weight=0",
+                "cache.specs.payments.maximum-size=0",
+                "customer.phone-number-index.enabled=false",
+                "spring.jpa.properties.hibernate.generate_statistics=true");
+        customerRegistrationService = context.getBean(CustomerRegistrationService.class);
+        paymentRepository = context.getBean(PaymentRepository.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+        for (int i = 0; i < ROWS; i++) {
+            Customer customer = new Customer(null, "Benchmark", "07700 9" + String.format("%05d", i));
+            customerRegistrationService.registerNewCustomer(new CustomerRegistrationRequest(customer));
+            customers.add(customer);
+            payments.add(paymentRepository.save(new Payment(
+                    null, customer.getId(), Money.parse("10.00", Currency.USD), "card123", "Benchmark")));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void registerExistingCustomer(Statements statements) {
+        Customer customer = customers.get(nextRow());
+        long before = statistics.getPrepareStatementCount();
+        customerRegistrationService.registerNewCustomer(new CustomerRegistrationRequest(
+                new Customer(null, customer.getName(), customer.getPhoneNumber())));
+        statements.statements += statistics.getPrepareStatementCount() - before;
+    }
+
+    @Benchmark
+    public Payment findPayment(Statements statements) {
+        Payment payment = payments.get(nextRow());
+        long before = statistics.getPrepareStatementCount();
+        Payment loaded = paymentRepository.findById(payment.getPaymentId()).orElseThrow();
+        statements.statements += statistics.getPrepareStatementCount() - before;
+        return loaded;
+    }
+
+    private int nextRow() {
+        next = (next + 1) % ROWS;
+        return next;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Statements {
+
+        public long statements;
+    }
+}
@@ -0,0 +1,67 @@
+package com.amigoscode.testing.customer;
+
+import com.amigoscode.testing.BenchmarkContext;
+import com.amigoscode.testing.id.TimeOrderedUuid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Batched customer inserts into H2 with random v4 ids against time-ordered v7 ids.
+// The table keeps growing across iterations, which is where random ids start to hurt.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CustomerInsertBenchmark {
+
+    private static final int ROWS = 1_000;
+
+    @Param({"random", "time-ordered"})
+    public String ids;
+
+    private ConfigurableApplicationContext context;
+    private CustomerRepository customerRepository;
+    private Supplier<UUID> idGenerator;
+    private long phoneNumbers;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        customerRepository = context.getBean(CustomerRepository.class);
+        idGenerator = ids.equals("random") ? UUID::randomUUID : TimeOrderedUuid::randomUuid;
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insertCustomers() {
+        List<Customer> customers = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            customers.add(new Customer(idGenerator.get(), "Benchmark", String.valueOf(++phoneNumbers)));
+        }
+        customerRepository.insertAll(customers);
+    }
+}
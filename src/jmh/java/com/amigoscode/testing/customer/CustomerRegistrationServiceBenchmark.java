@@ -0,0 +1,51 @@
+package com.amigoscode.testing.customer;
+
+import com.amigoscode.testing.BenchmarkContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Every invocation registers a customer with a phone number not seen before
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CustomerRegistrationServiceBenchmark {
+
+    private final AtomicLong phoneNumbers = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+    private CustomerRegistrationService customerRegistrationService;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        customerRegistrationService = context.getBean(CustomerRegistrationService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Customer registerNewCustomer() {
+        Customer customer = new Customer(null, "Benchmark", String.valueOf(phoneNumbers.incrementAndGet()));
+        customerRegistrationService.registerNewCustomer(new CustomerRegistrationRequest(customer));
+        return customer;
+    }
+}
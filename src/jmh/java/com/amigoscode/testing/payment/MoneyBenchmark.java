@@ -0,0 +1,67 @@
+package com.amigoscode.testing.payment;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// What a charge does with its amount - read it from the request, check it, put it in the
+// stripe request and add it to the running totals - as BigDecimal and as Money.
+// Compare gc.alloc.rate.norm from -prof gc as well as throughput.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MoneyBenchmark {
+
+    // the number token as jackson holds it in its buffer
+    private static final char[] AMOUNT = "100.00".toCharArray();
+
+    private BigDecimal decimalTotal = BigDecimal.ZERO;
+    private final LongAdder minorUnitsTotal = new LongAdder();
+
+    @Benchmark
+    public Map<String, Object> bigDecimal() {
+        BigDecimal amount = new BigDecimal(AMOUNT, 0, AMOUNT.length);
+        if (amount.signum() <= 0 || amount.scale() > Money.SCALE)
+            throw new IllegalStateException("Amount must be positive");
+
+        decimalTotal = decimalTotal.add(amount);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("amount", amount);
+        params.put("currency", Currency.USD);
+        params.put("source", "card123xx");
+        params.put("description", "Donation");
+        return params;
+    }
+
+    @Benchmark
+    public Map<String, Object> money() {
+        Money amount = Money.ofMinor(Money.parseMinorUnits(AMOUNT, 0, AMOUNT.length), Currency.USD);
+        if (!amount.isPositive())
+            throw new IllegalStateException("Amount must be positive");
+
+        minorUnitsTotal.add(amount.getMinorUnits());
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("amount", amount.getMinorUnits());
+        params.put("currency", amount.getCurrency());
+        params.put("source", "card123xx");
+        params.put("description", "Donation");
+        return params;
+    }
+}
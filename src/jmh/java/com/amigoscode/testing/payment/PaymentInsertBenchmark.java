@@ -0,0 +1,60 @@
+package com.amigoscode.testing.payment;
+
+import com.amigoscode.testing.BenchmarkContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Batched payment inserts into H2, including id generation. Run against the commit before
+// the pooled payment_id_sequence for the one-sequence-call-per-row baseline.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PaymentInsertBenchmark {
+
+    private static final int ROWS = 1_000;
+    private static final Money AMOUNT = Money.parse("100.00", Currency.USD);
+
+    private ConfigurableApplicationContext context;
+    private PaymentRepository paymentRepository;
+    private final UUID customerId = UUID.randomUUID();
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        paymentRepository = context.getBean(PaymentRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insertPayments() {
+        List<Payment> payments = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            payments.add(new Payment(null, customerId, AMOUNT, "card123xx", "Donation"));
+        }
+        paymentRepository.saveAll(payments);
+    }
+}
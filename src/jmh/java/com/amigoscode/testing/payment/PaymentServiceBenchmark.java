@@ -0,0 +1,57 @@
+package com.amigoscode.testing.payment;
+
+import com.amigoscode.testing.BenchmarkContext;
+import com.amigoscode.testing.customer.Customer;
+import com.amigoscode.testing.customer.CustomerRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Full charge path: existence check, currency check, stub stripe charge and the H2 insert
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PaymentServiceBenchmark {
+
+    private static final Money AMOUNT = Money.parse("100.00", Currency.USD);
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+    private UUID customerId;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        paymentService = context.getBean(PaymentService.class);
+
+        customerId = UUID.randomUUID();
+        context.getBean(CustomerRepository.class).save(new Customer(customerId, "Benchmark", "0000"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Payment chargeCard() {
+        Payment payment = new Payment(null, null, AMOUNT, "card123xx", "Donation");
+        paymentService.chargeCard(customerId, new PaymentRequest(payment));
+        return payment;
+    }
+}
@@ -0,0 +1,54 @@
+package com.amigoscode.testing.payment.routing;
+
+import com.amigoscode.testing.payment.CardPaymentCharge;
+import com.amigoscode.testing.payment.CardPaymentCharger;
+import com.amigoscode.testing.payment.Currency;
+import com.amigoscode.testing.payment.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// What routing adds to a charge: the same no-op charger called directly and through the
+// registry, with USD split 70/30 over two routes
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ChargeRoutingBenchmark {
+
+    private static final Money AMOUNT = Money.parse("100.00", Currency.USD);
+    private static final CardPaymentCharge DEBITED = new CardPaymentCharge(true);
+
+    private final CardPaymentCharger charger = (cardSource, amount, description) -> DEBITED;
+
+    private final CardPaymentChargerRegistry registry = new CardPaymentChargerRegistry(
+            Map.of(Currency.USD, List.of(
+                    new ChargeRoutingProperties.Route("first", 70, 1_000),
+                    new ChargeRoutingProperties.Route("second", 30, 1_000))),
+            Map.of("first", charger, "second", charger),
+            bound -> ThreadLocalRandom.current().nextInt(bound),
+            System::nanoTime);
+
+    @Benchmark
+    public CardPaymentCharge direct() {
+        return charger.chargeCard("card123xx", AMOUNT, "Donation");
+    }
+
+    @Benchmark
+    public CardPaymentCharge routed() {
+        return registry.chargeCard("card123xx", AMOUNT, "Donation");
+    }
+}
@@ -0,0 +1,48 @@
+package com.amigoscode.testing.tracing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Tracing cost of one charge request: a root span and the four spans below it (controller,
+// customer lookup, charger, save), for a trace that is sampled and one that is not
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TracerBenchmark {
+
+    private final Tracer sampled = new Tracer(span -> { }, true, 1.0);
+    private final Tracer unsampled = new Tracer(span -> { }, true, 0.0);
+
+    @Benchmark
+    public Span sampledRequest() {
+        return request(sampled);
+    }
+
+    @Benchmark
+    public Span unsampledRequest() {
+        return request(unsampled);
+    }
+
+    private static Span request(Tracer tracer) {
+        Span root = tracer.startSpan("POST /api/v1/payment/{customerId}");
+        Span controller = tracer.startSpan("PaymentController.chargeCard");
+        tracer.startSpan("CustomerRepository.existsById").end();
+        tracer.startSpan("StripeService.chargeCard").end();
+        tracer.startSpan("PaymentRepository.save").end();
+        controller.end();
+        root.end();
+        return root;
+    }
+}
@@ -0,0 +1,74 @@
+package com.amigoscode.testing.cache;
+
+import com.amigoscode.testing.customer.Customer;
+import com.amigoscode.testing.payment.Payment;
+import com.github.benmanes.caffeine.cache.Weigher;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.Map;
+
+/**
+ * Read-through caches for customers and payments. A CacheManager bean named
+ * sharedCacheManager, when defined, is used as the second level behind the in-memory one.
+ * Hibernate's second-level cache regions, when it is switched on, are kept in memory too.
+ */
+@Configuration
+@EnableCaching
+@EnableConfigurationProperties(TwoLevelCacheProperties.class)
+public class CacheConfig {
+
+    // object headers, references and the fixed size fields, roughly
+    private static final int ENTRY_OVERHEAD = 96;
+
+    @Bean
+    @Primary
+    public TwoLevelCacheManager cacheManager(TwoLevelCacheProperties properties,
+                                             @Qualifier("sharedCacheManager") ObjectProvider<CacheManager> sharedCacheManager,
+                                             MeterRegistry meterRegistry) {
+        Weigher<Object, Object> customerWeigher = (key, customer) -> customerWeight((Customer) customer);
+        Map<String, Weigher<Object, Object>> weighers = Map.of(
+                CacheNames.CUSTOMERS, customerWeigher,
+                CacheNames.CUSTOMERS_BY_PHONE_NUMBER_KEY, customerWeigher,
+                CacheNames.PAYMENTS, (key, payment) -> paymentWeight((Payment) payment));
+        return new TwoLevelCacheManager(properties.getSpecs(), weighers,
+                sharedCacheManager.getIfAvailable(), meterRegistry);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCache(TwoLevelCacheProperties properties,
+                                                          MeterRegistry meterRegistry,
+                                                          @Value("${cache.hibernate.enabled:true}") boolean enabled) {
+        return hibernateProperties -> {
+            if (!enabled) {
+                return;
+            }
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY,
+                    new CaffeineRegionFactory(properties.getRegions(), meterRegistry));
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, true);
+        };
+    }
+
+    static int customerWeight(Customer customer) {
+        return ENTRY_OVERHEAD + 2 * (length(customer.getName()) + length(customer.getPhoneNumber()));
+    }
+
+    static int paymentWeight(Payment payment) {
+        return ENTRY_OVERHEAD + 2 * (length(payment.getSource()) + length(payment.getDescription()));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
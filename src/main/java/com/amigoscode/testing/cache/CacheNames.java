@@ -0,0 +1,27 @@
+package com.amigoscode.testing.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+// Caches configured under cache.specs.<name>, a name without a spec has no cache.
+// Hibernate second-level cache regions are sized under cache.regions.<region>.
+public final class CacheNames {
+
+    public static final String CUSTOMERS = "customers";
+    public static final String CUSTOMERS_BY_PHONE_NUMBER_KEY = "customers-by-phone-number-key";
+    public static final String PAYMENTS = "payments";
+
+    public static final String CUSTOMER_ENTITIES = "customer-entities";
+    public static final String CUSTOMER_QUERIES = "customer-queries";
+    public static final String PAYMENT_ENTITIES = "payment-entities";
+
+    private CacheNames() {
+    }
+
+    public static Cache getRequired(CacheManager cacheManager, String name) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache == null)
+            throw new IllegalStateException(String.format("Cache [%s] is not configured", name));
+        return cache;
+    }
+}
@@ -0,0 +1,42 @@
+package com.amigoscode.testing.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.function.ToLongFunction;
+
+// The meters every in-memory cache publishes, tagged with its cache or region name
+public final class CaffeineMetrics {
+
+    private CaffeineMetrics() {
+    }
+
+    public static void bindLocal(MeterRegistry meterRegistry, String name, Cache<?, ?> local) {
+        gets(meterRegistry, name, "local", "hit", local, l -> l.stats().hitCount());
+        gets(meterRegistry, name, "local", "miss", local, l -> l.stats().missCount());
+        FunctionCounter.builder("cache.evictions", local, l -> l.stats().evictionCount())
+                .description("Entries evicted from memory for size, weight or ttl")
+                .tag("cache", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.eviction.weight", local, l -> l.stats().evictionWeight())
+                .description("Weight of the entries evicted from memory")
+                .tag("cache", name)
+                .register(meterRegistry);
+        Gauge.builder("cache.size", local, Cache::estimatedSize)
+                .description("Entries held in memory")
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    static <T> void gets(MeterRegistry meterRegistry, String name, String level, String result, T source,
+                         ToLongFunction<T> count) {
+        FunctionCounter.builder("cache.gets", source, count::applyAsLong)
+                .description("Cache reads by level and result")
+                .tag("cache", name)
+                .tag("level", level)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,114 @@
+package com.amigoscode.testing.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.Map;
+
+/**
+ * Hibernate second-level cache regions held in memory, each sized and expired by its
+ * cache.regions.<region> spec, or the default spec when it has none. Entity and query
+ * result regions publish the same meters as the read-through caches, tagged with the
+ * region name.
+ * <p>
+ * The update timestamps region is neither bounded nor expired: a dropped timestamp would
+ * let a cached query result outlive a write to the table it was read from.
+ */
+public class CaffeineRegionFactory extends RegionFactoryTemplate {
+
+    private final Map<String, TwoLevelCacheProperties.Spec> specs;
+    private final MeterRegistry meterRegistry;
+
+    public CaffeineRegionFactory(Map<String, TwoLevelCacheProperties.Spec> specs, MeterRegistry meterRegistry) {
+        this.specs = specs;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+                                                                    DomainDataRegionBuildingContext buildingContext) {
+        return new CaffeineStorageAccess(bounded(regionConfig.getRegionName()));
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName,
+                                                                  SessionFactoryImplementor sessionFactory) {
+        return new CaffeineStorageAccess(bounded(regionName));
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName,
+                                                                SessionFactoryImplementor sessionFactory) {
+        return new CaffeineStorageAccess(Caffeine.newBuilder().build());
+    }
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map configValues) {
+    }
+
+    @Override
+    protected void releaseFromUse() {
+    }
+
+    private Cache<Object, Object> bounded(String regionName) {
+        TwoLevelCacheProperties.Spec spec = specs.getOrDefault(regionName, new TwoLevelCacheProperties.Spec());
+        // cached entity state has no cheap size estimate, regions are sized by entries
+        if (spec.getMaximumWeight() > 0)
+            throw new IllegalStateException(String.format("Region [%s] can't be sized by weight", regionName));
+        Cache<Object, Object> cache = Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .expireAfterWrite(spec.getTtl())
+                .recordStats()
+                .build();
+        CaffeineMetrics.bindLocal(meterRegistry, regionName, cache);
+        return cache;
+    }
+
+    private static class CaffeineStorageAccess implements DomainDataStorageAccess {
+
+        private final Cache<Object, Object> cache;
+
+        CaffeineStorageAccess(Cache<Object, Object> cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            return cache.getIfPresent(key);
+        }
+
+        @Override
+        public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            cache.put(key, value);
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return cache.asMap().containsKey(key);
+        }
+
+        @Override
+        public void evictData() {
+            cache.invalidateAll();
+        }
+
+        @Override
+        public void evictData(Object key) {
+            cache.invalidate(key);
+        }
+
+        @Override
+        public void release() {
+            cache.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.amigoscode.testing.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.AbstractCacheManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * One {@link TwoLevelCache} per spec, sharing the cache of the same name from
+ * sharedCacheManager when there is one. Every cache publishes its hits and misses per
+ * level, in-memory size and evictions, and the share of reads it answered.
+ */
+public class TwoLevelCacheManager extends AbstractCacheManager {
+
+    private final Map<String, TwoLevelCacheProperties.Spec> specs;
+    private final Map<String, Weigher<Object, Object>> weighers;
+    private final CacheManager sharedCacheManager;
+    private final MeterRegistry meterRegistry;
+    private final Ticker ticker;
+    private final Executor executor;
+
+    public TwoLevelCacheManager(Map<String, TwoLevelCacheProperties.Spec> specs,
+                                Map<String, Weigher<Object, Object>> weighers,
+                                CacheManager sharedCacheManager,
+                                MeterRegistry meterRegistry) {
+        this(specs, weighers, sharedCacheManager, meterRegistry, Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    TwoLevelCacheManager(Map<String, TwoLevelCacheProperties.Spec> specs,
+                         Map<String, Weigher<Object, Object>> weighers,
+                         CacheManager sharedCacheManager,
+                         MeterRegistry meterRegistry,
+                         Ticker ticker,
+                         Executor executor) {
+        this.specs = specs;
+        this.weighers = weighers;
+        this.sharedCacheManager = sharedCacheManager;
+        this.meterRegistry = meterRegistry;
+        this.ticker = ticker;
+        this.executor = executor;
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        List<TwoLevelCache> caches = new ArrayList<>(specs.size());
+        specs.forEach((name, spec) -> {
+            TwoLevelCache cache = new TwoLevelCache(name, local(name, spec),
+                    sharedCacheManager == null ? null : sharedCacheManager.getCache(name));
+            bindMetrics(cache);
+            caches.add(cache);
+        });
+        return caches;
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> local(String name,
+                                                                          TwoLevelCacheProperties.Spec spec) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfterWrite(spec.getTtl())
+                .ticker(ticker)
+                .executor(executor)
+                .recordStats();
+        if (spec.getMaximumWeight() > 0) {
+            Weigher<Object, Object> weigher = weighers.get(name);
+            if (weigher == null)
+                throw new IllegalStateException(String.format("Cache [%s] has a maximum weight but no weigher", name));
+            builder.maximumWeight(spec.getMaximumWeight()).weigher(weigher);
+        } else {
+            builder.maximumSize(spec.getMaximumSize());
+        }
+        return builder.build();
+    }
+
+    private void bindMetrics(TwoLevelCache cache) {
+        String name = cache.getName();
+        CaffeineMetrics.bindLocal(meterRegistry, name, cache.getNativeCache());
+        if (cache.hasShared()) {
+            CaffeineMetrics.gets(meterRegistry, name, "shared", "hit", cache, TwoLevelCache::getSharedHits);
+            CaffeineMetrics.gets(meterRegistry, name, "shared", "miss", cache, TwoLevelCache::getSharedMisses);
+        }
+        Gauge.builder("cache.hit.ratio", cache, TwoLevelCacheManager::hitRatio)
+                .description("Share of reads answered from memory or the shared cache")
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    // a local miss that the shared cache answers is still a hit for the caller
+    private static double hitRatio(TwoLevelCache cache) {
+        CacheStats stats = cache.getNativeCache().stats();
+        long reads = stats.requestCount();
+        return reads == 0 ? 0 : (stats.hitCount() + cache.getSharedHits()) / (double) reads;
+    }
+}
@@ -0,0 +1,77 @@
+package com.amigoscode.testing.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// cache.specs.<name>.maximum-size / maximum-weight / ttl, hibernate regions under cache.regions.<region>
+@ConfigurationProperties(prefix = "cache")
+public class TwoLevelCacheProperties {
+
+    private Map<String, Spec> specs = new LinkedHashMap<>();
+
+    private Map<String, Spec> regions = new LinkedHashMap<>();
+
+    public Map<String, Spec> getSpecs() {
+        return specs;
+    }
+
+    public void setSpecs(Map<String, Spec> specs) {
+        this.specs = specs;
+    }
+
+    public Map<String, Spec> getRegions() {
+        return regions;
+    }
+
+    public void setRegions(Map<String, Spec> regions) {
+        this.regions = regions;
+    }
+
+    public static class Spec {
+
+        // entries kept in memory, used when maximumWeight is not set
+        private long maximumSize = 10_000;
+
+        // estimated bytes kept in memory, replaces maximumSize when above 0
+        private long maximumWeight;
+
+        // time an entry is served from memory after it was loaded
+        private Duration ttl = Duration.ofMinutes(10);
+
+        public Spec(long maximumSize, long maximumWeight, Duration ttl) {
+            this.maximumSize = maximumSize;
+            this.maximumWeight = maximumWeight;
+            this.ttl = ttl;
+        }
+
+        public Spec() {
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public long getMaximumWeight() {
+            return maximumWeight;
+        }
+
+        public void setMaximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.amigoscode.testing.concurrent;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Runs the @Scheduled background jobs, e.g. payment aggregate checkpoints
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,13 +1,31 @@
 package com.amigoscode.testing.customer;
 
+import com.amigoscode.testing.cache.CacheNames;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import java.util.UUID;
 
 @Entity
+// The unique index makes differently formatted copies of a number collide, the covering one
+// answers the lookup by key from the index alone. On databases with INCLUDE they are one index.
+@Table(indexes = {
+        @Index(name = "customer_phone_number_key_uk", columnList = "phoneNumberKey", unique = true),
+        @Index(name = "customer_phone_number_key_lookup_idx", columnList = "phoneNumberKey, id, name, phoneNumber")
+})
+@EntityListeners(CustomerPhoneNumberKeyListener.class)
+// read far more often than written: updates go through the cache under a soft lock
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheNames.CUSTOMER_ENTITIES)
 //It will ignore 'id' field from the client but It will send it to the client
 @JsonIgnoreProperties(value = {"id"}, allowGetters = true)
 public class Customer {
@@ -17,6 +35,9 @@ public class Customer {
     private String name;
     @Column(nullable = false, unique = true)
     private String phoneNumber;
+    // null only for rows stored before the key existed, until the backfill reaches them
+    @JsonIgnore
+    private Long phoneNumberKey;
 
     public Customer(UUID id, String name, String phoneNumber) {
         this.id = id;
@@ -50,4 +71,12 @@ public class Customer {
     public void setPhoneNumber(String phoneNumber) {
         this.phoneNumber = phoneNumber;
     }
+
+    public Long getPhoneNumberKey() {
+        return phoneNumberKey;
+    }
+
+    public void setPhoneNumberKey(Long phoneNumberKey) {
+        this.phoneNumberKey = phoneNumberKey;
+    }
 }
@@ -0,0 +1,12 @@
+package com.amigoscode.testing.customer;
+
+import java.util.List;
+
+public interface CustomerBatchRepository {
+
+    /**
+     * Inserts new customers with plain persist calls, so hibernate sends them as jdbc
+     * batches instead of the select-then-insert merge that save() does for assigned ids.
+     */
+    void insertAll(List<Customer> customers);
+}
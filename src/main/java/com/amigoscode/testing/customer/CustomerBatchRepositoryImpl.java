@@ -0,0 +1,21 @@
+package com.amigoscode.testing.customer;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+class CustomerBatchRepositoryImpl implements CustomerBatchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void insertAll(List<Customer> customers) {
+        customers.forEach(entityManager::persist);
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,281 @@
+package com.amigoscode.testing.customer;
+
+import com.amigoscode.testing.id.TimeOrderedUuid;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.amigoscode.testing.customer.CustomerRegistrationStatus.ALREADY_REGISTERED;
+import static com.amigoscode.testing.customer.CustomerRegistrationStatus.INVALID;
+import static com.amigoscode.testing.customer.CustomerRegistrationStatus.PHONE_NUMBER_TAKEN;
+import static com.amigoscode.testing.customer.CustomerRegistrationStatus.REGISTERED;
+
+/**
+ * Registers a stream of customers read incrementally from a json array or ndjson body.
+ * Records are handled in chunks: one phone number lookup and one batched insert per
+ * chunk, and the result of every record is written out before the next chunk is read.
+ * Memory is bounded by the chunk size, whatever the number of records in the body.
+ * <p>
+ * A record that can't be read is answered as INVALID and the rest carry on. Ndjson is read
+ * line by line, so any broken line is skipped; in a json array only a record of the wrong
+ * shape can be, broken json ends the body as where the next record starts is unknown.
+ */
+@Service
+public class CustomerBulkRegistrationService {
+
+    private final CustomerRepository customerRepository;
+    private final CustomerPhoneNumberIndex customerPhoneNumberIndex;
+    private final CustomerExistenceCache customerExistenceCache;
+    private final CustomerRegistrationService customerRegistrationService;
+    private final PhoneNumberNormalizer phoneNumberNormalizer;
+    private final CustomerValidator customerValidator;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    @Autowired
+    public CustomerBulkRegistrationService(CustomerRepository customerRepository,
+                                           CustomerPhoneNumberIndex customerPhoneNumberIndex,
+                                           CustomerExistenceCache customerExistenceCache,
+                                           CustomerRegistrationService customerRegistrationService,
+                                           PhoneNumberNormalizer phoneNumberNormalizer,
+                                           CustomerValidator customerValidator,
+                                           ObjectMapper objectMapper,
+                                           @Value("${customer.bulk-registration.chunk-size:500}") int chunkSize) {
+        this.customerRepository = customerRepository;
+        this.customerPhoneNumberIndex = customerPhoneNumberIndex;
+        this.customerExistenceCache = customerExistenceCache;
+        this.customerRegistrationService = customerRegistrationService;
+        this.phoneNumberNormalizer = phoneNumberNormalizer;
+        this.customerValidator = customerValidator;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    public void registerNewCustomers(InputStream requestBody, OutputStream responseBody) throws IOException {
+        BufferedReader records = new BufferedReader(new InputStreamReader(requestBody, StandardCharsets.UTF_8));
+        try (SequenceWriter results = objectMapper.writer()
+                .withRootValueSeparator("\n")
+                .writeValues(responseBody)) {
+
+            Chunks chunks = new Chunks(results);
+            if (firstCharacter(records) == '[') {
+                readJsonArray(records, chunks);
+            } else {
+                readNdjson(records, chunks);
+            }
+            chunks.registerPending();
+        }
+    }
+
+    private void readNdjson(BufferedReader records, Chunks chunks) throws IOException {
+        ObjectReader reader = objectMapper.readerFor(CustomerRegistrationRequest.class);
+        String line;
+        while ((line = records.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                chunks.add(reader.readValue(line));
+            } catch (JsonProcessingException e) {
+                chunks.addUnreadable(e);
+            }
+        }
+    }
+
+    private void readJsonArray(BufferedReader records, Chunks chunks) throws IOException {
+        try (MappingIterator<CustomerRegistrationRequest> requests = objectMapper
+                .readerFor(CustomerRegistrationRequest.class)
+                .readValues(records)) {
+            while (true) {
+                try {
+                    if (!requests.hasNextValue()) {
+                        return;
+                    }
+                    chunks.add(requests.nextValue());
+                } catch (JsonMappingException e) {
+                    // the iterator moves on to the next element of the array
+                    chunks.addUnreadable(e);
+                } catch (JsonParseException e) {
+                    chunks.addUnreadable(e);
+                    return;
+                }
+            }
+        }
+    }
+
+    // the first character that isn't whitespace, left unread
+    private static int firstCharacter(BufferedReader records) throws IOException {
+        int c;
+        do {
+            records.mark(1);
+            c = records.read();
+        } while (c != -1 && Character.isWhitespace(c));
+        if (c != -1) {
+            records.reset();
+        }
+        return c;
+    }
+
+    List<CustomerRegistrationResult> registerChunk(long firstIndex, List<CustomerRegistrationRequest> chunk) {
+        // who owns each phone number key of this chunk. Only the chunk's keys are held: numbers taken by
+        // earlier chunks are saved and in the index by now, so the lookup below finds them
+        Map<Long, Customer> owners = new HashMap<>();
+
+        // 1. Which numbers of this chunk are already taken - one lookup for the whole chunk
+        Set<Long> unknownPhoneNumberKeys = new LinkedHashSet<>();
+        for (CustomerRegistrationRequest request : chunk) {
+            if (problem(request).isEmpty()) {
+                long phoneNumberKey = phoneNumberNormalizer.toKey(request.getCustomer().getPhoneNumber());
+                unknownPhoneNumberKeys.add(phoneNumberKey);
+            }
+        }
+        if (!unknownPhoneNumberKeys.isEmpty()) {
+            owners.putAll(customerPhoneNumberIndex.findByPhoneNumberKeys(unknownPhoneNumberKeys));
+        }
+
+        // 2. First record with a free number owns it, later ones in the chunk are checked against it
+        CustomerRegistrationResult[] results = new CustomerRegistrationResult[chunk.size()];
+        List<Integer> newCustomerPositions = new ArrayList<>();
+        List<Customer> newCustomers = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            CustomerRegistrationRequest request = chunk.get(i);
+            long index = firstIndex + i;
+            Optional<String> problem = problem(request);
+            if (problem.isPresent()) {
+                results[i] = new CustomerRegistrationResult(index, null, null, INVALID, problem.get());
+                continue;
+            }
+
+            Customer customer = request.getCustomer();
+            long phoneNumberKey = phoneNumberNormalizer.toKey(customer.getPhoneNumber());
+            Customer owner = owners.get(phoneNumberKey);
+            if (owner != null) {
+                results[i] = resultForTakenNumber(index, customer, owner);
+                continue;
+            }
+
+            if (customer.getId() == null) {
+                customer.setId(TimeOrderedUuid.randomUuid());
+            }
+            owners.put(phoneNumberKey, customer);
+            newCustomerPositions.add(i);
+            newCustomers.add(customer);
+        }
+
+        // 3. Insert the new customers as jdbc batches
+        if (!newCustomers.isEmpty()) {
+            try {
+                customerRepository.insertAll(newCustomers);
+                for (int n = 0; n < newCustomers.size(); n++) {
+                    Customer customer = newCustomers.get(n);
+                    customerRegistrationService.onSaved(customer);
+                    customerPhoneNumberIndex.put(customer);
+                    customerExistenceCache.markKnown(customer.getId());
+                    results[newCustomerPositions.get(n)] = new CustomerRegistrationResult(
+                            firstIndex + newCustomerPositions.get(n),
+                            customer.getPhoneNumber(), customer.getId(), REGISTERED, null);
+                }
+            } catch (DataIntegrityViolationException e) {
+                // 4. A number was registered concurrently, the chunk rolled back - go one by one
+                for (int n = 0; n < newCustomers.size(); n++) {
+                    int position = newCustomerPositions.get(n);
+                    results[position] = registerOne(firstIndex + position, newCustomers.get(n), owners);
+                }
+            }
+        }
+        return List.of(results);
+    }
+
+    private CustomerRegistrationResult registerOne(long index, Customer customer, Map<Long, Customer> owners) {
+        long phoneNumberKey = phoneNumberNormalizer.toKey(customer.getPhoneNumber());
+        try {
+            customerRegistrationService.registerNewCustomer(new CustomerRegistrationRequest(customer));
+        } catch (IllegalStateException e) {
+            customerPhoneNumberIndex.findByPhoneNumber(customer.getPhoneNumber())
+                    .ifPresent(owner -> owners.put(phoneNumberKey, owner));
+            return new CustomerRegistrationResult(index, customer.getPhoneNumber(), null,
+                    PHONE_NUMBER_TAKEN, e.getMessage());
+        }
+        Customer owner = customerPhoneNumberIndex.findByPhoneNumber(customer.getPhoneNumber())
+                .orElse(customer);
+        owners.put(phoneNumberKey, owner);
+        return owner.getId().equals(customer.getId())
+                ? new CustomerRegistrationResult(index, customer.getPhoneNumber(), customer.getId(), REGISTERED, null)
+                : new CustomerRegistrationResult(index, customer.getPhoneNumber(), owner.getId(), ALREADY_REGISTERED, null);
+    }
+
+    private CustomerRegistrationResult resultForTakenNumber(long index, Customer customer, Customer owner) {
+        if (owner.getName().equals(customer.getName())) {
+            return new CustomerRegistrationResult(index, customer.getPhoneNumber(), owner.getId(),
+                    ALREADY_REGISTERED, null);
+        }
+        return new CustomerRegistrationResult(index, customer.getPhoneNumber(), null, PHONE_NUMBER_TAKEN,
+                String.format("Phone number [%s] is taken", customer.getPhoneNumber()));
+    }
+
+    // Records read so far and not registered yet, numbered by their position in the body
+    private class Chunks {
+
+        private final SequenceWriter results;
+        private final List<CustomerRegistrationRequest> chunk = new ArrayList<>(chunkSize);
+        private long firstIndex;
+
+        private Chunks(SequenceWriter results) {
+            this.results = results;
+        }
+
+        private void add(CustomerRegistrationRequest request) throws IOException {
+            chunk.add(request);
+            if (chunk.size() == chunkSize) {
+                registerPending();
+            }
+        }
+
+        // the records before it are registered first, so results stay in body order
+        private void addUnreadable(JsonProcessingException e) throws IOException {
+            registerPending();
+            results.write(new CustomerRegistrationResult(firstIndex, null, null, INVALID,
+                    String.format("Record is not a valid registration request: %s", e.getOriginalMessage())));
+            firstIndex++;
+        }
+
+        private void registerPending() throws IOException {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            results.writeAll(registerChunk(firstIndex, chunk));
+            results.flush();
+            firstIndex += chunk.size();
+            chunk.clear();
+        }
+    }
+
+    private Optional<String> problem(CustomerRegistrationRequest request) {
+        if (request == null || request.getCustomer() == null) {
+            return Optional.of("Customer is required");
+        }
+        return customerValidator.validate(request.getCustomer());
+    }
+}
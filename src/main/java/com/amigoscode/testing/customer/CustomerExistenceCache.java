@@ -0,0 +1,61 @@
+package com.amigoscode.testing.customer;
+
+import com.amigoscode.testing.cache.CaffeineMetrics;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Bounded set of customer ids known to exist, so repeat charges for the same customer
+ * skip the database. Only positive answers are cached: an unknown id always goes to
+ * the database, and registrations add the new id straight away. Hits, misses and
+ * evictions are published as the cache meters tagged {@value #NAME}.
+ */
+@Component
+public class CustomerExistenceCache {
+
+    static final String NAME = "customer-existence";
+
+    private final Cache<UUID, Boolean> knownCustomers;
+
+    @Autowired
+    public CustomerExistenceCache(MeterRegistry meterRegistry,
+                                  @Value("${customer.existence-cache.maximum-size:100000}") long maximumSize,
+                                  @Value("${customer.existence-cache.ttl:10m}") Duration ttl) {
+        this(meterRegistry, maximumSize, ttl, Ticker.systemTicker());
+    }
+
+    CustomerExistenceCache(MeterRegistry meterRegistry, long maximumSize, Duration ttl, Ticker ticker) {
+        this.knownCustomers = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        CaffeineMetrics.bindLocal(meterRegistry, NAME, knownCustomers);
+    }
+
+    public boolean isKnown(UUID customerId) {
+        return knownCustomers.getIfPresent(customerId) != null;
+    }
+
+    public void markKnown(UUID customerId) {
+        knownCustomers.put(customerId, Boolean.TRUE);
+    }
+
+    public void invalidate(UUID customerId) {
+        knownCustomers.invalidate(customerId);
+    }
+
+    public CacheStats stats() {
+        return knownCustomers.stats();
+    }
+}
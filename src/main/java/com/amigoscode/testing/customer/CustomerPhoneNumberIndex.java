@@ -0,0 +1,80 @@
+package com.amigoscode.testing.customer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Phone number to customer lookup held in memory, loaded once from the customer table
+ * and kept up to date by {@link CustomerRegistrationService}. Numbers are matched by
+ * their normalised key, so formatting differences don't matter. Until it has been loaded
+ * (or when it is disabled) lookups go to the database, after the key backfill has run.
+ * The unique index on phone_number_key stays the final guard for numbers registered
+ * behind its back.
+ */
+@Component
+@DependsOn("customerPhoneNumberKeyBackfill")
+public class CustomerPhoneNumberIndex {
+
+    private final CustomerRepository customerRepository;
+    private final PhoneNumberNormalizer phoneNumberNormalizer;
+    private final boolean enabled;
+    private final Map<Long, Customer> customersByPhoneNumberKey = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    @Autowired
+    public CustomerPhoneNumberIndex(CustomerRepository customerRepository,
+                                    PhoneNumberNormalizer phoneNumberNormalizer,
+                                    @Value("${customer.phone-number-index.enabled:true}") boolean enabled) {
+        this.customerRepository = customerRepository;
+        this.phoneNumberNormalizer = phoneNumberNormalizer;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        customerRepository.findAll().forEach(this::put);
+        loaded = true;
+    }
+
+    public Optional<Customer> findByPhoneNumber(String phoneNumber) {
+        long phoneNumberKey = phoneNumberNormalizer.toKey(phoneNumber);
+        if (!loaded) {
+            return customerRepository.selectCustomerByPhoneNumberKey(phoneNumberKey);
+        }
+        return Optional.ofNullable(customersByPhoneNumberKey.get(phoneNumberKey));
+    }
+
+    public Map<Long, Customer> findByPhoneNumberKeys(Collection<Long> phoneNumberKeys) {
+        Map<Long, Customer> customers = new HashMap<>();
+        if (!loaded) {
+            customerRepository.selectCustomersByPhoneNumberKeyIn(phoneNumberKeys)
+                    .forEach(customer -> customers.put(phoneNumberNormalizer.toKey(customer.getPhoneNumber()), customer));
+            return customers;
+        }
+        for (Long phoneNumberKey : phoneNumberKeys) {
+            Customer customer = customersByPhoneNumberKey.get(phoneNumberKey);
+            if (customer != null) {
+                customers.put(phoneNumberKey, customer);
+            }
+        }
+        return customers;
+    }
+
+    public void put(Customer customer) {
+        if (enabled) {
+            customersByPhoneNumberKey.put(phoneNumberNormalizer.toKey(customer.getPhoneNumber()), customer);
+        }
+    }
+}
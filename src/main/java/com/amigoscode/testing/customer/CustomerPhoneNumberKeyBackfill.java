@@ -0,0 +1,107 @@
+package com.amigoscode.testing.customer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills phone_number_key for customers saved before it existed, in chunks of chunkSize
+ * rows keyed on the primary key, one transaction per chunk. New rows get their key from
+ * {@link CustomerPhoneNumberKeyListener}, so once this has run every valid number is keyed.
+ * <p>
+ * Numbers that can't be normalised, or that normalise to a key another customer already
+ * holds, are left without a key and startup carries on. How many were left is published
+ * as customer.phone-number-key.backfill.skipped, tagged with the reason.
+ */
+@Component
+public class CustomerPhoneNumberKeyBackfill {
+
+    private final CustomerRepository customerRepository;
+    private final PhoneNumberNormalizer phoneNumberNormalizer;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final AtomicInteger skippedInvalid = new AtomicInteger();
+    private final AtomicInteger skippedTaken = new AtomicInteger();
+
+    @Autowired
+    public CustomerPhoneNumberKeyBackfill(CustomerRepository customerRepository,
+                                          PhoneNumberNormalizer phoneNumberNormalizer,
+                                          PlatformTransactionManager transactionManager,
+                                          MeterRegistry meterRegistry,
+                                          @Value("${customer.phone-number-key.backfill.enabled:true}") boolean enabled,
+                                          @Value("${customer.phone-number-key.backfill.chunk-size:1000}") int chunkSize) {
+        this.customerRepository = customerRepository;
+        this.phoneNumberNormalizer = phoneNumberNormalizer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+
+        skippedGauge(meterRegistry, "invalid", skippedInvalid);
+        skippedGauge(meterRegistry, "taken", skippedTaken);
+    }
+
+    @PostConstruct
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+        int invalid = 0;
+        int taken = 0;
+        List<UUID> chunk = customerRepository.selectIdsWithoutPhoneNumberKey(PageRequest.of(0, chunkSize));
+        while (!chunk.isEmpty()) {
+            List<UUID> ids = chunk;
+            try {
+                invalid += transactionTemplate.execute(status -> setPhoneNumberKeys(ids)).size();
+            } catch (DataIntegrityViolationException e) {
+                // two customers share a number written differently - the chunk rolled back, go one by one
+                for (UUID id : ids) {
+                    try {
+                        invalid += transactionTemplate.execute(status -> setPhoneNumberKeys(List.of(id))).size();
+                    } catch (DataIntegrityViolationException conflict) {
+                        taken++;
+                    }
+                }
+            }
+            // skipped rows keep a null key, so carry on after the last id rather than from the start
+            chunk = customerRepository.selectIdsWithoutPhoneNumberKeyAfter(
+                    ids.get(ids.size() - 1), PageRequest.of(0, chunkSize));
+        }
+
+        // left unkeyed: they can't be matched by number until someone corrects them
+        skippedInvalid.set(invalid);
+        skippedTaken.set(taken);
+    }
+
+    // ids of the customers whose number is not valid
+    private List<UUID> setPhoneNumberKeys(List<UUID> ids) {
+        List<UUID> invalid = new ArrayList<>();
+        for (Customer customer : customerRepository.findAllById(ids)) {
+            if (phoneNumberNormalizer.isValid(customer.getPhoneNumber())) {
+                customer.setPhoneNumberKey(phoneNumberNormalizer.toKey(customer.getPhoneNumber()));
+            } else {
+                invalid.add(customer.getId());
+            }
+        }
+        return invalid;
+    }
+
+    private static void skippedGauge(MeterRegistry meterRegistry, String reason, AtomicInteger skipped) {
+        Gauge.builder("customer.phone-number-key.backfill.skipped", skipped, AtomicInteger::get)
+                .description("Customers the last backfill left without a phone number key")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,30 @@
+package com.amigoscode.testing.customer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+/**
+ * Keeps phone_number_key in step with phone_number on every insert and update, whichever
+ * path saves the customer. Created by hibernate through the Spring bean container.
+ */
+class CustomerPhoneNumberKeyListener {
+
+    private final PhoneNumberNormalizer phoneNumberNormalizer;
+
+    @Autowired
+    CustomerPhoneNumberKeyListener(@Value("${customer.phone-number.default-country-code:44}") String defaultCountryCode) {
+        this.phoneNumberNormalizer = new PhoneNumberNormalizer(defaultCountryCode);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void setPhoneNumberKey(Customer customer) {
+        // a missing number is left to the not-null constraint
+        if (customer.getPhoneNumber() != null) {
+            customer.setPhoneNumberKey(phoneNumberNormalizer.toKey(customer.getPhoneNumber()));
+        }
+    }
+}
@@ -1,19 +1,55 @@
 package com.amigoscode.testing.customer;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("api/v1/customer-registration")
 public class CustomerRegistrationController {
 
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final CustomerRegistrationService customerRegistrationService;
+    private final CustomerBulkRegistrationService customerBulkRegistrationService;
+
+    @Autowired
+    public CustomerRegistrationController(CustomerRegistrationService customerRegistrationService,
+                                          CustomerBulkRegistrationService customerBulkRegistrationService) {
+        this.customerRegistrationService = customerRegistrationService;
+        this.customerBulkRegistrationService = customerBulkRegistrationService;
+    }
+
     @PutMapping
     public void registerNewCustomer(
            @Valid @RequestBody CustomerRegistrationRequest request){
+        customerRegistrationService.registerNewCustomer(request);
+    }
+
+    @GetMapping("{customerId}")
+    public Customer getCustomer(@PathVariable("customerId") UUID customerId) {
+        return customerRegistrationService.getCustomer(customerId);
+    }
 
+    // Body is a json array or ndjson of registration requests, read and answered record by record
+    @PostMapping(path = "bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE},
+            produces = APPLICATION_NDJSON_VALUE)
+    public void registerNewCustomers(HttpServletRequest request,
+                                     HttpServletResponse response) throws IOException {
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        customerBulkRegistrationService.registerNewCustomers(request.getInputStream(), response.getOutputStream());
     }
 }
@@ -0,0 +1,56 @@
+package com.amigoscode.testing.customer;
+
+import java.util.UUID;
+
+public class CustomerRegistrationResult {
+
+    // position of the record in the request body
+    private final long index;
+    private final String phoneNumber;
+    private final UUID customerId;
+    private final CustomerRegistrationStatus status;
+    private final String message;
+
+    public CustomerRegistrationResult(long index,
+                                      String phoneNumber,
+                                      UUID customerId,
+                                      CustomerRegistrationStatus status,
+                                      String message) {
+        this.index = index;
+        this.phoneNumber = phoneNumber;
+        this.customerId = customerId;
+        this.status = status;
+        this.message = message;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public UUID getCustomerId() {
+        return customerId;
+    }
+
+    public CustomerRegistrationStatus getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "CustomerRegistrationResult{" +
+                "index=" + index +
+                ", phoneNumber='" + phoneNumber + '\'' +
+                ", customerId=" + customerId +
+                ", status=" + status +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -1,41 +1,117 @@
 package com.amigoscode.testing.customer;
 
+import com.amigoscode.testing.cache.CacheNames;
+import com.amigoscode.testing.datasource.DataSourceRouting;
+import com.amigoscode.testing.datasource.ReadYourWritesGuard;
+import com.amigoscode.testing.id.TimeOrderedUuid;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class CustomerRegistrationService {
 
     private final CustomerRepository customerRepository;
+    private final CustomerPhoneNumberIndex customerPhoneNumberIndex;
+    private final CustomerExistenceCache customerExistenceCache;
+    private final PhoneNumberNormalizer phoneNumberNormalizer;
+    private final CustomerValidator customerValidator;
+    private final ReadYourWritesGuard readYourWritesGuard;
+    private final Cache customerCache;
+    private final Cache customerByPhoneNumberKeyCache;
+    private final Timer phoneNumberLookupTimer;
 
     @Autowired
-    public CustomerRegistrationService(CustomerRepository customerRepository) {
+    public CustomerRegistrationService(CustomerRepository customerRepository,
+                                       CustomerPhoneNumberIndex customerPhoneNumberIndex,
+                                       CustomerExistenceCache customerExistenceCache,
+                                       PhoneNumberNormalizer phoneNumberNormalizer,
+                                       CustomerValidator customerValidator,
+                                       ReadYourWritesGuard readYourWritesGuard,
+                                       CacheManager cacheManager,
+                                       MeterRegistry meterRegistry) {
         this.customerRepository = customerRepository;
+        this.customerPhoneNumberIndex = customerPhoneNumberIndex;
+        this.customerExistenceCache = customerExistenceCache;
+        this.phoneNumberNormalizer = phoneNumberNormalizer;
+        this.customerValidator = customerValidator;
+        this.readYourWritesGuard = readYourWritesGuard;
+        this.customerCache = CacheNames.getRequired(cacheManager, CacheNames.CUSTOMERS);
+        this.customerByPhoneNumberKeyCache = CacheNames.getRequired(cacheManager, CacheNames.CUSTOMERS_BY_PHONE_NUMBER_KEY);
+        this.phoneNumberLookupTimer = Timer.builder("customer.phone.number.lookup")
+                .description("Time to find the customer holding a phone number")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     public void registerNewCustomer(CustomerRegistrationRequest request) {
+        customerValidator.validate(request.getCustomer()).ifPresent(problem -> {
+            throw new IllegalStateException(problem);
+        });
+
         // 1. PhoneNumber is taken
         // 2. if taken, check if belongs to the same customer
         // - 2.1 if yes return
         // - 2.2 throw an exception
         // 3. save customer
         String phoneNumber = request.getCustomer().getPhoneNumber();
-        Optional<Customer> customerOptional = customerRepository.selectCustomerByPhoneNumber(phoneNumber);
+        long phoneNumberKey = phoneNumberNormalizer.toKey(phoneNumber);
+        long start = System.nanoTime();
+        Optional<Customer> customerOptional = readYourWritesGuard.read(
+                phoneNumberKey, () -> customerPhoneNumberIndex.findByPhoneNumber(phoneNumber));
+        phoneNumberLookupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         if (customerOptional.isPresent()) {
-            Customer customer = customerOptional.get();
-            if (customer.getName().equals(request.getCustomer().getName())) {
-                return;
-            }
-            throw new IllegalStateException(String.format("Phone number [%s] is taken", phoneNumber));
+            checkSameCustomer(customerOptional.get(), request.getCustomer());
+            return;
         }
 
         if (request.getCustomer().getId() == null) {
-            request.getCustomer().setId(UUID.randomUUID());
+            request.getCustomer().setId(TimeOrderedUuid.randomUuid());
         }
 
-        customerRepository.save(request.getCustomer());
+        try {
+            customerRepository.save(request.getCustomer());
+        } catch (DataIntegrityViolationException e) {
+            // 4. number registered behind the index's back (e.g. by another instance), unique constraint caught it.
+            // Only the primary is sure to have the row yet
+            Customer customer = DataSourceRouting.onPrimary(
+                    () -> customerRepository.selectCustomerByPhoneNumberKey(phoneNumberKey))
+                    .orElseThrow(() -> e);
+            customerPhoneNumberIndex.put(customer);
+            checkSameCustomer(customer, request.getCustomer());
+            return;
+        }
+        onSaved(request.getCustomer());
+        customerPhoneNumberIndex.put(request.getCustomer());
+        customerExistenceCache.markKnown(request.getCustomer().getId());
+    }
+
+    public Customer getCustomer(UUID customerId) {
+        return readYourWritesGuard.read(customerId, () -> customerRepository.findById(customerId))
+                .orElseThrow(() -> new IllegalStateException(
+                        String.format("Customer with id [%s] not found!", customerId)));
+    }
+
+    // Drops what the read caches hold for a customer that was just saved, and reads it from the primary for a while
+    void onSaved(Customer customer) {
+        long phoneNumberKey = phoneNumberNormalizer.toKey(customer.getPhoneNumber());
+        customerCache.evict(customer.getId());
+        customerByPhoneNumberKeyCache.evict(phoneNumberKey);
+        readYourWritesGuard.recordWrite(customer.getId());
+        readYourWritesGuard.recordWrite(phoneNumberKey);
+    }
+
+    private void checkSameCustomer(Customer existing, Customer requested) {
+        if (!existing.getName().equals(requested.getName())) {
+            throw new IllegalStateException(String.format("Phone number [%s] is taken", requested.getPhoneNumber()));
+        }
     }
 }
@@ -0,0 +1,5 @@
+package com.amigoscode.testing.customer;
+
+public enum CustomerRegistrationStatus {
+    REGISTERED, ALREADY_REGISTERED, PHONE_NUMBER_TAKEN, INVALID
+}
@@ -1,19 +1,61 @@
 package com.amigoscode.testing.customer;
 
 
+import com.amigoscode.testing.cache.CacheNames;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface CustomerRepository extends CrudRepository<Customer, UUID> {
+public interface CustomerRepository extends CrudRepository<Customer, UUID>, CustomerBatchRepository {
 
-    @Query(value = "select id, name, phone_number " +
-            "from customer where phone_number = :phone_number ",
-             nativeQuery = true)
-    Optional<Customer> selectCustomerByPhoneNumber(@Param("phone_number") String phoneNumber);
+    @Override
+    @Cacheable(cacheNames = CacheNames.CUSTOMERS, unless = "#result == null")
+    Optional<Customer> findById(UUID id);
 
+    // Only columns of the covering index are read, the customers returned are not managed.
+    // Hibernate's query cache drops the result whenever the customer table is written to.
+    @Cacheable(cacheNames = CacheNames.CUSTOMERS_BY_PHONE_NUMBER_KEY, unless = "#result == null")
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHE_REGION, value = CacheNames.CUSTOMER_QUERIES)
+    })
+    @Query("select new com.amigoscode.testing.customer.Customer(c.id, c.name, c.phoneNumber) " +
+            "from Customer c where c.phoneNumberKey = :phoneNumberKey")
+    Optional<Customer> selectCustomerByPhoneNumberKey(@Param("phoneNumberKey") long phoneNumberKey);
+
+    @Query("select new com.amigoscode.testing.customer.Customer(c.id, c.name, c.phoneNumber) " +
+            "from Customer c where c.phoneNumberKey in :phoneNumberKeys")
+    List<Customer> selectCustomersByPhoneNumberKeyIn(@Param("phoneNumberKeys") Collection<Long> phoneNumberKeys);
+
+    @Query("select c.id from Customer c where c.phoneNumberKey is null order by c.id")
+    List<UUID> selectIdsWithoutPhoneNumberKey(Pageable pageable);
+
+    @Query("select c.id from Customer c where c.phoneNumberKey is null and c.id > :after order by c.id")
+    List<UUID> selectIdsWithoutPhoneNumberKeyAfter(@Param("after") UUID after, Pageable pageable);
+
+    @Query("select c.id from Customer c order by c.id")
+    List<UUID> selectIds(Pageable pageable);
+
+    @Query("select c.id from Customer c where c.id >= :from order by c.id")
+    List<UUID> selectIdsFrom(@Param("from") UUID from, Pageable pageable);
+
+    @Query("select c.id from Customer c where c.id > :after order by c.id")
+    List<UUID> selectIdsAfter(@Param("after") UUID after, Pageable pageable);
+
+    @Query("select max(c.id) from Customer c")
+    UUID selectLastId();
+
+    @Query("select new com.amigoscode.testing.customer.Customer(c.id, c.name, c.phoneNumber) " +
+            "from Customer c where c.id between :from and :to order by c.id")
+    List<Customer> selectCustomersBetween(@Param("from") UUID from, @Param("to") UUID to);
 
 }
@@ -0,0 +1,96 @@
+package com.amigoscode.testing.customer;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Progress of a {@link CustomerRevalidationJob} pass: every customer up to and including
+ * lastCustomerId has been checked. A pass that stopped before completedAt was set is
+ * resumed after lastCustomerId.
+ */
+@Entity
+public class CustomerRevalidationCheckpoint {
+
+    @Id
+    private String job;
+
+    private UUID lastCustomerId;
+
+    private long checked;
+
+    private long invalid;
+
+    private Instant startedAt;
+
+    private Instant updatedAt;
+
+    private Instant completedAt;
+
+    public CustomerRevalidationCheckpoint(String job, Instant startedAt) {
+        this.job = job;
+        this.startedAt = startedAt;
+        this.updatedAt = startedAt;
+    }
+
+    public CustomerRevalidationCheckpoint() {
+    }
+
+    void advance(UUID lastCustomerId, long checked, long invalid, Instant updatedAt) {
+        this.lastCustomerId = lastCustomerId;
+        this.checked += checked;
+        this.invalid += invalid;
+        this.updatedAt = updatedAt;
+    }
+
+    void complete(Instant completedAt) {
+        this.updatedAt = completedAt;
+        this.completedAt = completedAt;
+    }
+
+    public boolean isCompleted() {
+        return completedAt != null;
+    }
+
+    public String getJob() {
+        return job;
+    }
+
+    public UUID getLastCustomerId() {
+        return lastCustomerId;
+    }
+
+    public long getChecked() {
+        return checked;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "CustomerRevalidationCheckpoint{" +
+                "job='" + job + '\'' +
+                ", lastCustomerId=" + lastCustomerId +
+                ", checked=" + checked +
+                ", invalid=" + invalid +
+                ", startedAt=" + startedAt +
+                ", updatedAt=" + updatedAt +
+                ", completedAt=" + completedAt +
+                '}';
+    }
+}
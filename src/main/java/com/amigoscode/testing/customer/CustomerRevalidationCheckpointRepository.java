@@ -0,0 +1,7 @@
+package com.amigoscode.testing.customer;
+
+import org.springframework.data.repository.CrudRepository;
+
+public interface CustomerRevalidationCheckpointRepository
+        extends CrudRepository<CustomerRevalidationCheckpoint, String> {
+}
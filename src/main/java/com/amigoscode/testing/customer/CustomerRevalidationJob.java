@@ -0,0 +1,204 @@
+package com.amigoscode.testing.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks every stored customer against {@link CustomerValidator} and records the ones that
+ * fail it as {@link CustomerValidationFailure} rows.
+ * <p>
+ * The customer table is cut into primary key ranges of rangeSize rows, found with index
+ * only id queries, and the ranges are checked on a pool of parallelism workers. At most
+ * two ranges per worker are in flight. Ranges are completed in key order, and after each
+ * one the checkpoint moves past it, so a pass that stops half way resumes where it left off.
+ */
+@Component
+public class CustomerRevalidationJob {
+
+    static final String JOB = "customer-revalidation";
+
+    private final CustomerRepository customerRepository;
+    private final CustomerValidationFailureRepository failureRepository;
+    private final CustomerRevalidationCheckpointRepository checkpointRepository;
+    private final CustomerValidator customerValidator;
+    private final int parallelism;
+    private final int rangeSize;
+    private final Clock clock;
+    private final Counter validCounter;
+    private final Counter invalidCounter;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Autowired
+    public CustomerRevalidationJob(CustomerRepository customerRepository,
+                                   CustomerValidationFailureRepository failureRepository,
+                                   CustomerRevalidationCheckpointRepository checkpointRepository,
+                                   CustomerValidator customerValidator,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${customer.revalidation.parallelism:4}") int parallelism,
+                                   @Value("${customer.revalidation.range-size:1000}") int rangeSize) {
+        this(customerRepository, failureRepository, checkpointRepository, customerValidator, meterRegistry,
+                parallelism, rangeSize, Clock.systemUTC());
+    }
+
+    CustomerRevalidationJob(CustomerRepository customerRepository,
+                            CustomerValidationFailureRepository failureRepository,
+                            CustomerRevalidationCheckpointRepository checkpointRepository,
+                            CustomerValidator customerValidator,
+                            MeterRegistry meterRegistry,
+                            int parallelism,
+                            int rangeSize,
+                            Clock clock) {
+        this.customerRepository = customerRepository;
+        this.failureRepository = failureRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.customerValidator = customerValidator;
+        this.parallelism = parallelism;
+        this.rangeSize = rangeSize;
+        this.clock = clock;
+        this.validCounter = checkedCounter(meterRegistry, "valid");
+        this.invalidCounter = checkedCounter(meterRegistry, "invalid");
+    }
+
+    @Scheduled(cron = "${customer.revalidation.cron:-}")
+    public CustomerRevalidationReport run() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Customer revalidation is already running");
+        }
+        try {
+            return revalidate();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private CustomerRevalidationReport revalidate() {
+        long start = System.nanoTime();
+        // 1. Carry on with an unfinished pass, or start a new one with no failures recorded
+        CustomerRevalidationCheckpoint checkpoint = checkpointRepository.findById(JOB)
+                .filter(c -> !c.isCompleted())
+                .orElse(null);
+        boolean resumed = checkpoint != null;
+        if (checkpoint == null) {
+            failureRepository.deleteAllFailures();
+            checkpoint = checkpointRepository.save(new CustomerRevalidationCheckpoint(JOB, clock.instant()));
+        }
+        long checkedBefore = checkpoint.getChecked();
+        long invalidBefore = checkpoint.getInvalid();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism, CustomerRevalidationJob::newWorker, null, false);
+        try {
+            // 2. Cut the next range and hand it to the pool, completing the oldest range once enough are in flight
+            Deque<Range> inFlight = new ArrayDeque<>();
+            UUID from = checkpoint.getLastCustomerId() == null
+                    ? first(customerRepository.selectIds(PageRequest.of(0, 1)))
+                    : first(customerRepository.selectIdsAfter(checkpoint.getLastCustomerId(), PageRequest.of(0, 1)));
+            while (from != null) {
+                // ... the id rangeSize - 1 rows on, or the last one
+                UUID to = first(customerRepository.selectIdsFrom(from, PageRequest.of(rangeSize - 1, 1)));
+                if (to == null) {
+                    to = customerRepository.selectLastId();
+                }
+                UUID rangeFrom = from;
+                UUID rangeTo = to;
+                inFlight.add(new Range(rangeTo, pool.submit(() -> check(rangeFrom, rangeTo))));
+                if (inFlight.size() >= 2 * parallelism) {
+                    complete(inFlight.poll(), checkpoint);
+                }
+                from = first(customerRepository.selectIdsAfter(to, PageRequest.of(0, 1)));
+            }
+            while (!inFlight.isEmpty()) {
+                complete(inFlight.poll(), checkpoint);
+            }
+
+            // 3. Pass done, the next run starts from the beginning
+            checkpoint.complete(clock.instant());
+            checkpointRepository.save(checkpoint);
+        } finally {
+            pool.shutdownNow();
+        }
+        return new CustomerRevalidationReport(
+                checkpoint.getChecked() - checkedBefore,
+                checkpoint.getInvalid() - invalidBefore,
+                Duration.ofNanos(System.nanoTime() - start),
+                resumed);
+    }
+
+    // number of customers checked and found invalid in [from, to]
+    private long[] check(UUID from, UUID to) {
+        List<Customer> customers = customerRepository.selectCustomersBetween(from, to);
+        Instant checkedAt = clock.instant();
+        List<CustomerValidationFailure> failures = new ArrayList<>();
+        for (Customer customer : customers) {
+            customerValidator.validate(customer).ifPresent(problem ->
+                    failures.add(new CustomerValidationFailure(customer.getId(), problem, checkedAt)));
+        }
+        // saved by merge, so checking a range again after a resume overwrites its failures
+        if (!failures.isEmpty()) {
+            failureRepository.saveAll(failures);
+        }
+        validCounter.increment(customers.size() - failures.size());
+        invalidCounter.increment(failures.size());
+        return new long[]{customers.size(), failures.size()};
+    }
+
+    private void complete(Range range, CustomerRevalidationCheckpoint checkpoint) {
+        long[] counts;
+        try {
+            counts = range.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Customer revalidation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Customer revalidation failed", e.getCause());
+        }
+        checkpoint.advance(range.to, counts[0], counts[1], clock.instant());
+        checkpointRepository.save(checkpoint);
+    }
+
+    private static UUID first(List<UUID> ids) {
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        worker.setName("customer-revalidation-" + worker.getPoolIndex());
+        return worker;
+    }
+
+    private static Counter checkedCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("customer.revalidation.checked")
+                .description("Stored customers checked against the registration rules")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static final class Range {
+
+        private final UUID to;
+        private final ForkJoinTask<long[]> task;
+
+        private Range(UUID to, ForkJoinTask<long[]> task) {
+            this.to = to;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.amigoscode.testing.customer;
+
+import java.time.Duration;
+
+public class CustomerRevalidationReport {
+
+    private final long checked;
+    private final long invalid;
+    private final Duration elapsed;
+    private final boolean resumed;
+
+    public CustomerRevalidationReport(long checked, long invalid, Duration elapsed, boolean resumed) {
+        this.checked = checked;
+        this.invalid = invalid;
+        this.elapsed = elapsed;
+        this.resumed = resumed;
+    }
+
+    // customers checked by this run, not counting those checked before it resumed
+    public long getChecked() {
+        return checked;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    public double getCustomersPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : checked * 1_000_000_000.0 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "CustomerRevalidationReport{" +
+                "checked=" + checked +
+                ", invalid=" + invalid +
+                ", elapsed=" + elapsed +
+                ", resumed=" + resumed +
+                ", customersPerSecond=" + getCustomersPerSecond() +
+                '}';
+    }
+}
@@ -0,0 +1,50 @@
+package com.amigoscode.testing.customer;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.Instant;
+import java.util.UUID;
+
+// A stored customer that broke a rule of CustomerValidator on the last revalidation
+@Entity
+public class CustomerValidationFailure {
+
+    @Id
+    private UUID customerId;
+
+    @Column(nullable = false)
+    private String problem;
+
+    private Instant checkedAt;
+
+    public CustomerValidationFailure(UUID customerId, String problem, Instant checkedAt) {
+        this.customerId = customerId;
+        this.problem = problem;
+        this.checkedAt = checkedAt;
+    }
+
+    public CustomerValidationFailure() {
+    }
+
+    public UUID getCustomerId() {
+        return customerId;
+    }
+
+    public String getProblem() {
+        return problem;
+    }
+
+    public Instant getCheckedAt() {
+        return checkedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "CustomerValidationFailure{" +
+                "customerId=" + customerId +
+                ", problem='" + problem + '\'' +
+                ", checkedAt=" + checkedAt +
+                '}';
+    }
+}
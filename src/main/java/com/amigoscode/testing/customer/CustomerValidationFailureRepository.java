@@ -0,0 +1,17 @@
+package com.amigoscode.testing.customer;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+public interface CustomerValidationFailureRepository extends CrudRepository<CustomerValidationFailure, UUID> {
+
+    // one statement, deleteAll() would load and remove the rows one by one
+    @Transactional
+    @Modifying
+    @Query("delete from CustomerValidationFailure")
+    void deleteAllFailures();
+}
@@ -0,0 +1,43 @@
+package com.amigoscode.testing.customer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Rules a customer has to meet to be registered, shared by the registration services and
+ * the revalidation job that checks stored customers against them.
+ */
+@Component
+public class CustomerValidator {
+
+    private final PhoneNumberNormalizer phoneNumberNormalizer;
+    private final Set<Long> bannedPhoneNumberKeys = new HashSet<>();
+
+    @Autowired
+    public CustomerValidator(PhoneNumberNormalizer phoneNumberNormalizer,
+                             @Value("${customer.validation.banned-phone-numbers:}") String[] bannedPhoneNumbers) {
+        this.phoneNumberNormalizer = phoneNumberNormalizer;
+        for (String bannedPhoneNumber : bannedPhoneNumbers) {
+            bannedPhoneNumberKeys.add(phoneNumberNormalizer.toKey(bannedPhoneNumber));
+        }
+    }
+
+    // empty when the customer is valid, otherwise what is wrong with it
+    public Optional<String> validate(Customer customer) {
+        if (customer.getName() == null || customer.getName().isBlank()) {
+            return Optional.of("Customer name is required");
+        }
+        if (!phoneNumberNormalizer.isValid(customer.getPhoneNumber())) {
+            return Optional.of(String.format("Phone number [%s] is not valid", customer.getPhoneNumber()));
+        }
+        if (bannedPhoneNumberKeys.contains(phoneNumberNormalizer.toKey(customer.getPhoneNumber()))) {
+            return Optional.of(String.format("Phone number [%s] is banned", customer.getPhoneNumber()));
+        }
+        return Optional.empty();
+    }
+}
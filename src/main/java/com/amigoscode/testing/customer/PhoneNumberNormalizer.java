@@ -0,0 +1,73 @@
+package com.amigoscode.testing.customer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Turns a phone number as typed into the numeric key it is looked up by: the E.164 digits,
+ * country code first, without spaces, dashes or brackets. "+44 7700 900000",
+ * "0044 7700-900000", "+44 (0)7700 900000" and "07700900000" all become 447700900000. A
+ * number starting with a single 0 is a national number and gets the default country code.
+ */
+@Component
+public class PhoneNumberNormalizer {
+
+    // E.164 allows 15 digits, anything past 18 would not fit a long
+    private static final int MAX_DIGITS = 18;
+
+    private final String defaultCountryCode;
+
+    @Autowired
+    public PhoneNumberNormalizer(@Value("${customer.phone-number.default-country-code:44}") String defaultCountryCode) {
+        this.defaultCountryCode = defaultCountryCode;
+    }
+
+    public boolean isValid(String phoneNumber) {
+        return phoneNumber != null && digits(phoneNumber) != null;
+    }
+
+    public long toKey(String phoneNumber) {
+        String digits = phoneNumber == null ? null : digits(phoneNumber);
+        if (digits == null)
+            throw new IllegalStateException(String.format("Phone number [%s] is not valid", phoneNumber));
+        return Long.parseLong(digits);
+    }
+
+    // null when there are no digits, too many, or anything but separators between them
+    private String digits(String phoneNumber) {
+        StringBuilder digits = new StringBuilder(phoneNumber.length());
+        boolean international = false;
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c == '+' && digits.length() == 0 && !international) {
+                international = true;
+            } else if (c == '(' && phoneNumber.startsWith("(0)", i) && digits.length() > 0
+                    && (international || digits.indexOf("00") == 0)) {
+                // the trunk prefix written after a country code is only dialled from inside the country
+                i += 2;
+            } else if (c != ' ' && c != '-' && c != '.' && c != '(' && c != ')') {
+                return null;
+            }
+        }
+
+        if (international) {
+            // country codes don't start with 0
+            if (digits.length() > 0 && digits.charAt(0) == '0') {
+                return null;
+            }
+        } else if (digits.length() > 2 && digits.charAt(0) == '0' && digits.charAt(1) == '0' && digits.charAt(2) != '0') {
+            // 00 is the international prefix
+            digits.delete(0, 2);
+        } else if (digits.length() > 1 && digits.charAt(0) == '0') {
+            digits.replace(0, 1, defaultCountryCode);
+        }
+
+        if (digits.length() == 0 || digits.length() > MAX_DIGITS) {
+            return null;
+        }
+        return digits.toString();
+    }
+}
@@ -0,0 +1,55 @@
+package com.amigoscode.testing.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Where the reads of the current thread go. Reads go to the primary unless they are made
+ * through {@link #onReplica(Supplier)}, and only then when in a read-only transaction -
+ * reads that must see the latest write, such as idempotency keys and checkpoints, never
+ * opt in. {@link #onPrimary(Supplier)} wins over an enclosing or nested onReplica.
+ * <p>
+ * It decides where a connection comes from, so it has no effect on a transaction that
+ * already holds one.
+ */
+public final class DataSourceRouting {
+
+    private enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private static final ThreadLocal<Route> ROUTE = new ThreadLocal<>();
+
+    private DataSourceRouting() {
+    }
+
+    public static <T> T onPrimary(Supplier<T> work) {
+        return on(Route.PRIMARY, work);
+    }
+
+    // for reads that can tolerate replication lag
+    public static <T> T onReplica(Supplier<T> work) {
+        return isPrimaryForced() ? work.get() : on(Route.REPLICA, work);
+    }
+
+    public static boolean isPrimaryForced() {
+        return ROUTE.get() == Route.PRIMARY;
+    }
+
+    public static boolean isReplicaAllowed() {
+        return ROUTE.get() == Route.REPLICA;
+    }
+
+    private static <T> T on(Route route, Supplier<T> work) {
+        Route previous = ROUTE.get();
+        ROUTE.set(route);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                ROUTE.remove();
+            } else {
+                ROUTE.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.amigoscode.testing.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single spring.datasource pool with a primary pool for writes and a pool
+ * per replica for read-only transactions, see {@link ReadWriteRoutingDataSource}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.routing.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReadWriteRoutingProperties.class)
+public class ReadWriteRoutingConfig {
+
+    // a connection is only fetched on the first statement, once the transaction is known to be read-only
+    @Bean
+    @Primary
+    public LazyRoutingDataSource dataSource(DataSourceProperties dataSourceProperties,
+                                            ReadWriteRoutingProperties properties) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("primary");
+
+        List<DataSource> replicas = new ArrayList<>(properties.getReplicas().size());
+        for (int i = 0; i < properties.getReplicas().size(); i++) {
+            ReadWriteRoutingProperties.Replica replica = properties.getReplicas().get(i);
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("replica-" + i);
+            config.setJdbcUrl(replica.getUrl());
+            config.setUsername(replica.getUsername());
+            config.setPassword(replica.getPassword());
+            config.setMaximumPoolSize(replica.getMaximumPoolSize());
+            config.setReadOnly(true);
+            replicas.add(new HikariDataSource(config));
+        }
+        return new LazyRoutingDataSource(new ReadWriteRoutingDataSource(primary, replicas, properties.getBalancing()));
+    }
+
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> replicaRoutingStarter(LazyRoutingDataSource dataSource) {
+        return event -> dataSource.getRoutingDataSource().enableReplicas();
+    }
+
+    // The only DataSource bean: Spring Boot runs its datasource initializer for each one, and would
+    // ask for the primary while it is still being created if the routing data source was a bean too
+    public static class LazyRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+        private final ReadWriteRoutingDataSource routingDataSource;
+
+        LazyRoutingDataSource(ReadWriteRoutingDataSource routingDataSource) {
+            super(routingDataSource);
+            this.routingDataSource = routingDataSource;
+        }
+
+        public ReadWriteRoutingDataSource getRoutingDataSource() {
+            return routingDataSource;
+        }
+
+        @Override
+        public void close() throws IOException {
+            routingDataSource.close();
+        }
+    }
+}
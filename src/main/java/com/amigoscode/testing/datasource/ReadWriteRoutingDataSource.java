@@ -0,0 +1,116 @@
+package com.amigoscode.testing.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * Hands out replica connections to read-only transactions that opted in through
+ * {@link DataSourceRouting#onReplica}, and primary connections to everything else. The
+ * transaction has to be known to be read-only when the connection is fetched, so this sits
+ * behind a LazyConnectionDataSourceProxy, which waits for the first statement.
+ * <p>
+ * Replicas are only used once {@link #enableReplicas()} is called. Until then the startup
+ * rebuilds (the phone number index, payment aggregates) read everything from the primary.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final ReplicaBalancing balancing;
+    private final ToIntFunction<DataSource> connectionsInUse;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private volatile boolean replicasEnabled;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, ReplicaBalancing balancing) {
+        this(primary, replicas, balancing, ReadWriteRoutingDataSource::activeConnections);
+    }
+
+    ReadWriteRoutingDataSource(DataSource primary,
+                               List<DataSource> replicas,
+                               ReplicaBalancing balancing,
+                               ToIntFunction<DataSource> connectionsInUse) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.balancing = balancing;
+        this.connectionsInUse = connectionsInUse;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    public void enableReplicas() {
+        replicasEnabled = true;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!replicasEnabled
+                || replicas.isEmpty()
+                || !DataSourceRouting.isReplicaAllowed()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        return balancing == ReplicaBalancing.LEAST_LOADED ? leastLoadedReplica() : nextReplica();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource replica : replicas) {
+            if (replica instanceof Closeable) {
+                ((Closeable) replica).close();
+            }
+        }
+        if (primary instanceof Closeable) {
+            ((Closeable) primary).close();
+        }
+    }
+
+    private int nextReplica() {
+        return Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+    }
+
+    // starts at the next replica in turn so idle replicas still share the reads
+    private int leastLoadedReplica() {
+        int start = nextReplica();
+        int best = start;
+        int bestLoad = connectionsInUse.applyAsInt(replicas.get(start));
+        for (int i = 1; i < replicas.size() && bestLoad > 0; i++) {
+            int candidate = (start + i) % replicas.size();
+            int load = connectionsInUse.applyAsInt(replicas.get(candidate));
+            if (load < bestLoad) {
+                best = candidate;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    private static int activeConnections(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource) {
+            // null until the pool has started
+            HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getActiveConnections();
+        }
+        return 0;
+    }
+}
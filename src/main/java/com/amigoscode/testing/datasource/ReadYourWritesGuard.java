@@ -0,0 +1,67 @@
+package com.amigoscode.testing.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Remembers what was just written, by key, for as long as a replica may lag behind the
+ * primary, and sends reads of those keys to the primary. Reads of any other key may go to
+ * a replica, this is how the customer lookups opt in to them. Without it a customer could
+ * register and then not be found by the next request. Writes are only remembered by the
+ * instance that made them, a read of the same key on another instance can still lag.
+ */
+@Component
+public class ReadYourWritesGuard {
+
+    private final boolean enabled;
+    private final Cache<Object, Boolean> recentWrites;
+
+    @Autowired
+    public ReadYourWritesGuard(@Value("${datasource.routing.enabled:false}") boolean enabled,
+                               @Value("${datasource.routing.read-your-writes.window:5s}") Duration window,
+                               @Value("${datasource.routing.read-your-writes.maximum-size:100000}") long maximumSize) {
+        this(enabled, window, maximumSize, Ticker.systemTicker());
+    }
+
+    ReadYourWritesGuard(boolean enabled, Duration window, long maximumSize, Ticker ticker) {
+        this.enabled = enabled;
+        this.recentWrites = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(window)
+                .ticker(ticker)
+                .build();
+    }
+
+    public void recordWrite(Object key) {
+        if (enabled) {
+            recentWrites.put(key, Boolean.TRUE);
+        }
+    }
+
+    public <T> T read(Object key, Supplier<T> read) {
+        if (enabled && recentWrites.getIfPresent(key) != null) {
+            return DataSourceRouting.onPrimary(read);
+        }
+        return DataSourceRouting.onReplica(read);
+    }
+
+    // on the primary when any of the keys was just written
+    public <T> T readAll(Collection<?> keys, Supplier<T> read) {
+        if (enabled) {
+            for (Object key : keys) {
+                if (recentWrites.getIfPresent(key) != null) {
+                    return DataSourceRouting.onPrimary(read);
+                }
+            }
+        }
+        return DataSourceRouting.onReplica(read);
+    }
+}
@@ -0,0 +1,8 @@
+package com.amigoscode.testing.datasource;
+
+public enum ReplicaBalancing {
+    // each read-only transaction takes the next replica in turn
+    ROUND_ROBIN,
+    // the replica with the fewest connections in use, ties taken in turn
+    LEAST_LOADED
+}
@@ -0,0 +1,43 @@
+package com.amigoscode.testing.id;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Version 7 UUIDs: a 48 bit unix millisecond timestamp, then a 12 bit counter, then 62
+ * random bits. Ids generated later sort later, so primary key inserts append to the end
+ * of the index instead of landing on random pages the way {@link UUID#randomUUID()} does.
+ * <p>
+ * Within one millisecond the counter keeps ids from this process strictly increasing;
+ * if it runs out the timestamp is borrowed from the next millisecond.
+ */
+public final class TimeOrderedUuid {
+
+    private static final TimeOrderedUuid SYSTEM = new TimeOrderedUuid(System::currentTimeMillis);
+
+    private final LongSupplier currentTimeMillis;
+    // timestamp << 12 | counter of the last id handed out
+    private final AtomicLong last = new AtomicLong();
+
+    TimeOrderedUuid(LongSupplier currentTimeMillis) {
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    public static UUID randomUuid() {
+        return SYSTEM.next();
+    }
+
+    UUID next() {
+        long timestampAndCounter = last.updateAndGet(previous ->
+                Math.max(currentTimeMillis.getAsLong() << 12, previous + 1));
+
+        long mostSigBits = (timestampAndCounter >>> 12) << 16  // unix_ts_ms
+                | 0x7000L                                      // version 7
+                | (timestampAndCounter & 0xFFFL);              // counter
+        long leastSigBits = ThreadLocalRandom.current().nextLong() >>> 2
+                | 0x8000000000000000L;                         // variant 10
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -0,0 +1,12 @@
+package com.amigoscode.testing.payment;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncCardPaymentCharger {
+
+    CompletableFuture<CardPaymentCharge> chargeCardAsync(
+            String cardSource,
+            Money amount,
+            String description
+    );
+}
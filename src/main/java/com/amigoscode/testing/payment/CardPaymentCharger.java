@@ -1,13 +1,10 @@
 package com.amigoscode.testing.payment;
 
-import java.math.BigDecimal;
-
 public interface CardPaymentCharger {
 
     CardPaymentCharge chargeCard(
             String cardSource,
-            BigDecimal amount,
-            Currency currency,
+            Money amount,
             String description
     );
 }
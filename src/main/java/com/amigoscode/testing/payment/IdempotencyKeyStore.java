@@ -0,0 +1,163 @@
+package com.amigoscode.testing.payment;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of each charge by idempotency key, so a client retrying a timed out
+ * request gets the original {@link CardPaymentCharge} back instead of a second charge and a
+ * second payment row. A duplicate arriving while the first attempt is still running waits
+ * for that attempt. Attempts that fail before the card is charged are forgotten so the client
+ * can retry them. Once the card is charged the outcome is kept for good - if recording it
+ * fails, the next request with the key records it again without charging.
+ * <p>
+ * With {@code payment.idempotency.persistent} enabled, charged and recorded outcomes are also
+ * written to the idempotent_charge table so they survive a restart.
+ */
+@Component
+public class IdempotencyKeyStore {
+
+    private final Cache<String, Attempt> attempts;
+    private final IdempotentChargeRepository idempotentChargeRepository;
+    private final boolean persistent;
+    private final Duration ttl;
+    private final Clock clock;
+    private final Counter storeFailures;
+
+    @Autowired
+    public IdempotencyKeyStore(IdempotentChargeRepository idempotentChargeRepository,
+                               @Value("${payment.idempotency.maximum-size:100000}") long maximumSize,
+                               @Value("${payment.idempotency.ttl:24h}") Duration ttl,
+                               @Value("${payment.idempotency.persistent:false}") boolean persistent,
+                               MeterRegistry meterRegistry) {
+        this(idempotentChargeRepository, maximumSize, ttl, persistent, meterRegistry,
+                Ticker.systemTicker(), Clock.systemUTC());
+    }
+
+    IdempotencyKeyStore(IdempotentChargeRepository idempotentChargeRepository,
+                        long maximumSize,
+                        Duration ttl,
+                        boolean persistent,
+                        MeterRegistry meterRegistry,
+                        Ticker ticker,
+                        Clock clock) {
+        this.attempts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .build();
+        this.idempotentChargeRepository = idempotentChargeRepository;
+        this.persistent = persistent;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.storeFailures = Counter.builder("payment.idempotency.store.failures")
+                .description("Charge outcomes that could not be written to the idempotent_charge table")
+                .register(meterRegistry);
+    }
+
+    CompletableFuture<CardPaymentCharge> execute(String idempotencyKey,
+                                                 Supplier<CompletableFuture<CardPaymentCharge>> charge,
+                                                 Function<CardPaymentCharge, CompletableFuture<Void>> record) {
+        // 1. Claim the key, or follow the attempt that already holds it
+        Attempt attempt = new Attempt();
+        Attempt firstAttempt = attempts.asMap().putIfAbsent(idempotencyKey, attempt);
+        if (firstAttempt != null) {
+            return record(idempotencyKey, firstAttempt, record);
+        }
+
+        // 2. Answer from the table if an earlier instance charged it
+        Optional<IdempotentCharge> stored = findStored(idempotencyKey);
+        if (stored.isPresent()) {
+            attempt.charged.complete(new CardPaymentCharge(stored.get().isCardDebited()));
+            if (stored.get().isRecorded()) {
+                attempt.recorded = attempt.charged;
+            }
+            return record(idempotencyKey, attempt, record);
+        }
+
+        // 3. First attempt - charge, and keep the outcome once the card has been charged
+        try {
+            charge.get().whenComplete((cardPaymentCharge, failure) -> {
+                if (failure != null) {
+                    forget(idempotencyKey, attempt, failure);
+                } else {
+                    attempt.charged.complete(cardPaymentCharge);
+                    store(idempotencyKey, cardPaymentCharge, false);
+                }
+            });
+        } catch (RuntimeException e) {
+            forget(idempotencyKey, attempt, e);
+        }
+
+        // 4. Record the charge
+        return record(idempotencyKey, attempt, record);
+    }
+
+    // Only one record runs at a time per key, and a failed one is run again by the next request
+    private CompletableFuture<CardPaymentCharge> record(String idempotencyKey,
+                                                        Attempt attempt,
+                                                        Function<CardPaymentCharge, CompletableFuture<Void>> record) {
+        synchronized (attempt) {
+            if (attempt.recorded == null || attempt.recorded.isCompletedExceptionally()) {
+                attempt.recorded = attempt.charged.thenCompose(cardPaymentCharge -> record.apply(cardPaymentCharge)
+                        .thenApply(recorded -> {
+                            store(idempotencyKey, cardPaymentCharge, true);
+                            return cardPaymentCharge;
+                        }));
+            }
+            return attempt.recorded;
+        }
+    }
+
+    private Optional<IdempotentCharge> findStored(String idempotencyKey) {
+        if (!persistent) {
+            return Optional.empty();
+        }
+        Instant oldest = clock.instant().minus(ttl);
+        return idempotentChargeRepository.findById(idempotencyKey)
+                .filter(idempotentCharge -> idempotentCharge.getCreatedAt().isAfter(oldest));
+    }
+
+    private void store(String idempotencyKey, CardPaymentCharge cardPaymentCharge, boolean recorded) {
+        if (persistent) {
+            // the card is already charged, so a failed write must not fail the request -
+            // the in-memory entry still catches retries against this instance, and the
+            // counter shows how many keys would not survive a restart
+            try {
+                idempotentChargeRepository.save(new IdempotentCharge(
+                        idempotencyKey, cardPaymentCharge.isCardDebited(), recorded, clock.instant()));
+            } catch (RuntimeException e) {
+                storeFailures.increment();
+            }
+        }
+    }
+
+    private void forget(String idempotencyKey, Attempt attempt, Throwable failure) {
+        attempts.asMap().remove(idempotencyKey, attempt);
+        attempt.charged.completeExceptionally(
+                failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause()
+                        : failure);
+    }
+
+    private static final class Attempt {
+        private final CompletableFuture<CardPaymentCharge> charged = new CompletableFuture<>();
+        // guarded by the attempt itself
+        private CompletableFuture<CardPaymentCharge> recorded;
+    }
+}
@@ -0,0 +1,54 @@
+package com.amigoscode.testing.payment;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.Instant;
+
+@Entity
+public class IdempotentCharge {
+
+    @Id
+    private String idempotencyKey;
+
+    private boolean cardDebited;
+
+    private boolean recorded;
+
+    private Instant createdAt;
+
+    public IdempotentCharge(String idempotencyKey, boolean cardDebited, boolean recorded, Instant createdAt) {
+        this.idempotencyKey = idempotencyKey;
+        this.cardDebited = cardDebited;
+        this.recorded = recorded;
+        this.createdAt = createdAt;
+    }
+
+    public IdempotentCharge() {
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public boolean isCardDebited() {
+        return cardDebited;
+    }
+
+    public boolean isRecorded() {
+        return recorded;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "IdempotentCharge{" +
+                "idempotencyKey='" + idempotencyKey + '\'' +
+                ", cardDebited=" + cardDebited +
+                ", recorded=" + recorded +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
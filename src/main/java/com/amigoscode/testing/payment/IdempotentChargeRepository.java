@@ -0,0 +1,6 @@
+package com.amigoscode.testing.payment;
+
+import org.springframework.data.repository.CrudRepository;
+
+public interface IdempotentChargeRepository extends CrudRepository<IdempotentCharge, String> {
+}
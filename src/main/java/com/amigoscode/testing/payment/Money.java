@@ -0,0 +1,151 @@
+package com.amigoscode.testing.payment;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * An amount as a whole number of minor units (cents, pence) plus its currency. Checks
+ * and sums are plain long arithmetic, so the charge path allocates nothing but the Money
+ * itself, where BigDecimal allocates a new BigDecimal (and often a BigInteger) per step.
+ * <p>
+ * Every supported currency has two decimal places. Anything that only accepts decimals,
+ * e.g. the payment table or reports, goes through {@link #toBigDecimal()} at the edge.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+    private static final long MINOR_UNITS_PER_MAJOR = 100;
+
+    private final long minorUnits;
+    private final Currency currency;
+
+    private Money(long minorUnits, Currency currency) {
+        this.minorUnits = minorUnits;
+        this.currency = Objects.requireNonNull(currency, "currency");
+    }
+
+    public static Money ofMinor(long minorUnits, Currency currency) {
+        return new Money(minorUnits, currency);
+    }
+
+    // "100.00", "100.5" or "100" - at most two decimal places, no exponent
+    public static Money parse(CharSequence amount, Currency currency) {
+        return new Money(parseMinorUnits(amount), currency);
+    }
+
+    public static Money of(BigDecimal amount, Currency currency) {
+        return new Money(toMinorUnits(amount), currency);
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public Money plus(Money other) {
+        if (currency != other.currency)
+            throw new IllegalStateException(String.format("Cannot add %s to %s", other.currency, currency));
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    static long parseMinorUnits(CharSequence amount) {
+        char[] chars = amount.toString().toCharArray();
+        return parseMinorUnits(chars, 0, chars.length);
+    }
+
+    // Jackson hands number tokens over as a slice of its own buffer, so this reads it in place
+    static long parseMinorUnits(char[] amount, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        boolean negative = i < end && amount[i] == '-';
+        if (negative) {
+            i++;
+        }
+
+        long major = 0;
+        int majorDigits = 0;
+        while (i < end && isDigit(amount[i])) {
+            major = Math.addExact(Math.multiplyExact(major, 10), amount[i++] - '0');
+            majorDigits++;
+        }
+
+        long minor = 0;
+        int minorDigits = 0;
+        if (i < end && amount[i] == '.') {
+            i++;
+            while (i < end && isDigit(amount[i]) && minorDigits < SCALE) {
+                minor = minor * 10 + (amount[i++] - '0');
+                minorDigits++;
+            }
+            // trailing zeros beyond the scale change nothing, e.g. "10.500"
+            while (i < end && amount[i] == '0') {
+                i++;
+            }
+        }
+
+        if (i != end || (majorDigits == 0 && minorDigits == 0))
+            throw new NumberFormatException(String.format(
+                    "Amount [%s] is not a decimal with at most %d decimal places",
+                    new String(amount, offset, length), SCALE));
+
+        for (int digit = minorDigits; digit < SCALE; digit++) {
+            minor *= 10;
+        }
+        long minorUnits = Math.addExact(Math.multiplyExact(major, MINOR_UNITS_PER_MAJOR), minor);
+        return negative ? -minorUnits : minorUnits;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // "-1.05" for -105, without going through BigDecimal
+    static String format(long minorUnits) {
+        StringBuilder formatted = new StringBuilder(24);
+        if (minorUnits < 0) {
+            formatted.append('-');
+        }
+        long major = Math.abs(minorUnits / MINOR_UNITS_PER_MAJOR);
+        long minor = Math.abs(minorUnits % MINOR_UNITS_PER_MAJOR);
+        formatted.append(major).append('.');
+        if (minor < 10) {
+            formatted.append('0');
+        }
+        return formatted.append(minor).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Money money = (Money) o;
+        return minorUnits == money.minorUnits &&
+                currency == money.currency;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minorUnits, currency);
+    }
+
+    @Override
+    public String toString() {
+        return format(minorUnits) + " " + currency;
+    }
+}
@@ -1,33 +1,72 @@
 package com.amigoscode.testing.payment;
 
+import com.amigoscode.testing.cache.CacheNames;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import java.math.BigDecimal;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
 import java.util.UUID;
 
 @Entity
+// serves payment history: equality on customerId, then paymentId in index order. The unique
+// write-behind key stops a replayed journal entry from being stored twice.
+@Table(indexes = {
+        @Index(name = "payment_customer_id_payment_id_idx", columnList = "customerId, paymentId"),
+        @Index(name = "payment_write_behind_key_uk", columnList = "writeBehindKey", unique = true)
+})
+// payments are only ever inserted, a cached payment never goes stale
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = CacheNames.PAYMENT_ENTITIES)
 public class Payment {
 
+    // pooled: one sequence call reserves the next 50 ids, handed out from memory
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_id_sequence")
+    @SequenceGenerator(name = "payment_id_sequence", sequenceName = "payment_id_sequence", allocationSize = 50)
     private Long paymentId;
 
     private UUID customerId;
 
-    private BigDecimal amount;
+    // minor units of currency, read from and written to json and the table as a decimal
+    @Convert(converter = MinorUnitsConverter.class)
+    @JsonProperty("amount")
+    @JsonSerialize(using = MinorUnitsJson.Serializer.class)
+    @JsonDeserialize(using = MinorUnitsJson.Deserializer.class)
+    private long amount;
 
+    // stored by ordinal, as in the payment shard schema - new currencies go at the end of Currency
+    @Enumerated(EnumType.ORDINAL)
     private Currency currency;
 
     private String source;
 
     private String description;
 
-    public Payment(Long paymentId, UUID customerId, BigDecimal amount, Currency currency, String source, String description) {
+    // given when the payment is journaled for write-behind, null for payments saved directly
+    @JsonIgnore
+    private UUID writeBehindKey;
+
+    public Payment(Long paymentId, UUID customerId, Money amount, String source, String description) {
         this.paymentId = paymentId;
         this.customerId = customerId;
-        this.amount = amount;
-        this.currency = currency;
+        this.amount = amount.getMinorUnits();
+        this.currency = amount.getCurrency();
         this.source = source;
         this.description = description;
     }
@@ -51,12 +90,21 @@ public class Payment {
         this.customerId = customerId;
     }
 
-    public BigDecimal getAmount() {
+    @JsonIgnore
+    public Money getAmount() {
+        return Money.ofMinor(amount, currency);
+    }
+
+    // the amount without a Money around it, for the paths that run for every payment
+    @JsonIgnore
+    public long getAmountInMinorUnits() {
         return amount;
     }
 
-    public void setAmount(BigDecimal amount) {
-        this.amount = amount;
+    @JsonIgnore
+    public void setAmount(Money amount) {
+        this.amount = amount.getMinorUnits();
+        this.currency = amount.getCurrency();
     }
 
     public Currency getCurrency() {
@@ -83,12 +131,20 @@ public class Payment {
         this.description = description;
     }
 
+    public UUID getWriteBehindKey() {
+        return writeBehindKey;
+    }
+
+    public void setWriteBehindKey(UUID writeBehindKey) {
+        this.writeBehindKey = writeBehindKey;
+    }
+
     @Override
     public String toString() {
         return "Payment{" +
                 "paymentId=" + paymentId +
                 ", customerId=" + customerId +
-                ", amount=" + amount +
+                ", amount=" + Money.format(amount) +
                 ", currency=" + currency +
                 ", source='" + source + '\'' +
                 ", description='" + description + '\'' +
@@ -0,0 +1,51 @@
+package com.amigoscode.testing.payment;
+
+import java.math.BigDecimal;
+
+public class PaymentAggregate {
+
+    private final Currency currency;
+    private final long count;
+    private final BigDecimal total;
+    private final BigDecimal min;
+    private final BigDecimal max;
+
+    public PaymentAggregate(Currency currency, long count, BigDecimal total, BigDecimal min, BigDecimal max) {
+        this.currency = currency;
+        this.count = count;
+        this.total = total;
+        this.min = min;
+        this.max = max;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public BigDecimal getMin() {
+        return min;
+    }
+
+    public BigDecimal getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentAggregate{" +
+                "currency=" + currency +
+                ", count=" + count +
+                ", total=" + total +
+                ", min=" + min +
+                ", max=" + max +
+                '}';
+    }
+}
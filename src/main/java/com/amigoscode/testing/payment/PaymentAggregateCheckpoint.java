@@ -0,0 +1,76 @@
+package com.amigoscode.testing.payment;
+
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Entity
+public class PaymentAggregateCheckpoint {
+
+    @EmbeddedId
+    private PaymentAggregateKey key;
+
+    private long count;
+
+    private BigDecimal total;
+
+    private BigDecimal min;
+
+    private BigDecimal max;
+
+    private Instant checkpointedAt;
+
+    public PaymentAggregateCheckpoint(PaymentAggregateKey key,
+                                      long count,
+                                      BigDecimal total,
+                                      BigDecimal min,
+                                      BigDecimal max,
+                                      Instant checkpointedAt) {
+        this.key = key;
+        this.count = count;
+        this.total = total;
+        this.min = min;
+        this.max = max;
+        this.checkpointedAt = checkpointedAt;
+    }
+
+    public PaymentAggregateCheckpoint() {
+    }
+
+    public PaymentAggregateKey getKey() {
+        return key;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public BigDecimal getMin() {
+        return min;
+    }
+
+    public BigDecimal getMax() {
+        return max;
+    }
+
+    public Instant getCheckpointedAt() {
+        return checkpointedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentAggregateCheckpoint{" +
+                "key=" + key +
+                ", count=" + count +
+                ", total=" + total +
+                ", min=" + min +
+                ", max=" + max +
+                ", checkpointedAt=" + checkpointedAt +
+                '}';
+    }
+}
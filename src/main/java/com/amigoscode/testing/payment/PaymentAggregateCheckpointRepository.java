@@ -0,0 +1,7 @@
+package com.amigoscode.testing.payment;
+
+import org.springframework.data.repository.CrudRepository;
+
+public interface PaymentAggregateCheckpointRepository
+        extends CrudRepository<PaymentAggregateCheckpoint, PaymentAggregateKey> {
+}
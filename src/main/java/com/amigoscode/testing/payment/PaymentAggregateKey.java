@@ -0,0 +1,52 @@
+package com.amigoscode.testing.payment;
+
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
+
+@Embeddable
+public class PaymentAggregateKey implements Serializable {
+
+    private UUID customerId;
+
+    private Currency currency;
+
+    public PaymentAggregateKey(UUID customerId, Currency currency) {
+        this.customerId = customerId;
+        this.currency = currency;
+    }
+
+    public PaymentAggregateKey() {
+    }
+
+    public UUID getCustomerId() {
+        return customerId;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PaymentAggregateKey that = (PaymentAggregateKey) o;
+        return Objects.equals(customerId, that.customerId) &&
+                currency == that.currency;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(customerId, currency);
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentAggregateKey{" +
+                "customerId=" + customerId +
+                ", currency=" + currency +
+                '}';
+    }
+}
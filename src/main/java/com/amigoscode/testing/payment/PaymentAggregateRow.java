@@ -0,0 +1,19 @@
+package com.amigoscode.testing.payment;
+
+import java.util.UUID;
+
+// One customer and currency from the GROUP BY over the payment table, amounts in minor units
+public interface PaymentAggregateRow {
+
+    UUID getCustomerId();
+
+    Currency getCurrency();
+
+    long getCount();
+
+    long getTotal();
+
+    long getMin();
+
+    long getMax();
+}
@@ -0,0 +1,144 @@
+package com.amigoscode.testing.payment;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Running count, total, min and max of saved payments per customer and currency, and per
+ * currency across all customers, so reading them doesn't scan the payment table.
+ * <p>
+ * On startup the figures are rebuilt with one GROUP BY over the payment table, after the
+ * write-behind journal has been replayed. From then on every payment is added as it is
+ * saved. Customers that changed since the last checkpoint are written to the
+ * payment_aggregate_checkpoint table on a fixed delay, for readers outside this instance.
+ */
+@Component
+@DependsOn("paymentWriteBehindQueue")
+public class PaymentAggregates {
+
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    private final PaymentStore paymentStore;
+    private final PaymentAggregateCheckpointRepository checkpointRepository;
+    private final Clock clock;
+
+    // indexed by Currency ordinal
+    private final Map<UUID, RunningAggregate[]> customerAggregates = new ConcurrentHashMap<>();
+    private final RunningAggregate[] currencyAggregates = newAggregates();
+    private final Set<UUID> changedCustomers = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public PaymentAggregates(PaymentStore paymentStore,
+                             PaymentAggregateCheckpointRepository checkpointRepository) {
+        this(paymentStore, checkpointRepository, Clock.systemUTC());
+    }
+
+    PaymentAggregates(PaymentStore paymentStore,
+                      PaymentAggregateCheckpointRepository checkpointRepository,
+                      Clock clock) {
+        this.paymentStore = paymentStore;
+        this.checkpointRepository = checkpointRepository;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        for (PaymentAggregateRow row : paymentStore.aggregateByCustomerAndCurrency()) {
+            int currency = row.getCurrency().ordinal();
+            RunningAggregate[] aggregates = customerAggregates.computeIfAbsent(
+                    row.getCustomerId(), customerId -> newAggregates());
+            aggregates[currency].add(row.getCount(), row.getTotal(), row.getMin(), row.getMax());
+            currencyAggregates[currency].add(aggregates[currency]);
+
+            // the first checkpoint brings the table in line with the payment table
+            changedCustomers.add(row.getCustomerId());
+        }
+    }
+
+    void record(Payment payment) {
+        int currency = payment.getCurrency().ordinal();
+        long amount = payment.getAmountInMinorUnits();
+        customerAggregates.computeIfAbsent(payment.getCustomerId(), customerId -> newAggregates())[currency]
+                .add(amount);
+        currencyAggregates[currency].add(amount);
+        changedCustomers.add(payment.getCustomerId());
+    }
+
+    public List<PaymentAggregate> getCurrencyAggregates() {
+        List<PaymentAggregate> snapshots = new ArrayList<>(CURRENCIES.length);
+        for (Currency currency : CURRENCIES) {
+            snapshots.add(currencyAggregates[currency.ordinal()].snapshot(currency));
+        }
+        return snapshots;
+    }
+
+    public List<PaymentAggregate> getCustomerAggregates(UUID customerId) {
+        RunningAggregate[] aggregates = customerAggregates.get(customerId);
+        if (aggregates == null) {
+            return List.of();
+        }
+        return snapshotNonEmpty(aggregates);
+    }
+
+    @Scheduled(
+            fixedDelayString = "${payment.aggregates.checkpoint-interval:PT1M}",
+            initialDelayString = "${payment.aggregates.checkpoint-interval:PT1M}")
+    public void checkpoint() {
+        Instant now = clock.instant();
+        List<PaymentAggregateCheckpoint> checkpoints = new ArrayList<>();
+        for (UUID customerId : changedCustomers) {
+            // removed before reading, a payment landing meanwhile marks the customer again
+            changedCustomers.remove(customerId);
+            for (PaymentAggregate aggregate : snapshotNonEmpty(customerAggregates.get(customerId))) {
+                checkpoints.add(new PaymentAggregateCheckpoint(
+                        new PaymentAggregateKey(customerId, aggregate.getCurrency()),
+                        aggregate.getCount(),
+                        aggregate.getTotal(),
+                        aggregate.getMin(),
+                        aggregate.getMax(),
+                        now));
+            }
+        }
+
+        if (checkpoints.isEmpty()) {
+            return;
+        }
+        try {
+            checkpointRepository.saveAll(checkpoints);
+        } catch (RuntimeException e) {
+            // try again on the next run
+            checkpoints.forEach(checkpoint -> changedCustomers.add(checkpoint.getKey().getCustomerId()));
+            throw e;
+        }
+    }
+
+    private static List<PaymentAggregate> snapshotNonEmpty(RunningAggregate[] aggregates) {
+        List<PaymentAggregate> snapshots = new ArrayList<>();
+        for (Currency currency : CURRENCIES) {
+            if (!aggregates[currency.ordinal()].isEmpty()) {
+                snapshots.add(aggregates[currency.ordinal()].snapshot(currency));
+            }
+        }
+        return snapshots;
+    }
+
+    private static RunningAggregate[] newAggregates() {
+        RunningAggregate[] aggregates = new RunningAggregate[CURRENCIES.length];
+        for (int i = 0; i < aggregates.length; i++) {
+            aggregates[i] = new RunningAggregate();
+        }
+        return aggregates;
+    }
+}
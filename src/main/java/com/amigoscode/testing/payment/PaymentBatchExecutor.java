@@ -0,0 +1,51 @@
+package com.amigoscode.testing.payment;
+
+import com.amigoscode.testing.concurrent.VirtualThreads;
+import com.amigoscode.testing.tracing.TraceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pool batch charges run on, shared by every batch so threads are not started and
+ * stopped per request. At most max-concurrency charges are in flight across all batches,
+ * the rest wait in the queue. Each batch caller waits for its own items, so the queue never
+ * holds more than the items of the batches in progress. With virtual threads enabled the
+ * pool threads are virtual.
+ */
+@Component
+public class PaymentBatchExecutor implements Executor {
+
+    private final ThreadPoolExecutor executor;
+    // runs each charge in the trace of the batch request
+    private final Executor tracingExecutor;
+
+    @Autowired
+    public PaymentBatchExecutor(@Value("${payment.batch.max-concurrency:8}") int maxConcurrency,
+                                @Value("${app.virtual-threads.enabled:false}") boolean virtualThreads) {
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrency,
+                maxConcurrency,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                VirtualThreads.threadFactory("payment-batch-", virtualThreads));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.tracingExecutor = TraceContext.wrap(executor);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        tracingExecutor.execute(command);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,30 @@
+package com.amigoscode.testing.payment;
+
+import java.util.UUID;
+
+public class PaymentBatchItem {
+
+    private final UUID customerId;
+    private final PaymentRequest paymentRequest;
+
+    public PaymentBatchItem(UUID customerId, PaymentRequest paymentRequest) {
+        this.customerId = customerId;
+        this.paymentRequest = paymentRequest;
+    }
+
+    public UUID getCustomerId() {
+        return customerId;
+    }
+
+    public PaymentRequest getPaymentRequest() {
+        return paymentRequest;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentBatchItem{" +
+                "customerId=" + customerId +
+                ", paymentRequest=" + paymentRequest +
+                '}';
+    }
+}
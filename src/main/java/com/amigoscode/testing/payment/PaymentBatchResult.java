@@ -0,0 +1,42 @@
+package com.amigoscode.testing.payment;
+
+import java.util.UUID;
+
+public class PaymentBatchResult {
+
+    private final UUID customerId;
+    // set only when the card was debited, the id is filled in once the batch is inserted
+    private final Payment payment;
+    private final String failureReason;
+
+    public PaymentBatchResult(UUID customerId, Payment payment, String failureReason) {
+        this.customerId = customerId;
+        this.payment = payment;
+        this.failureReason = failureReason;
+    }
+
+    public UUID getCustomerId() {
+        return customerId;
+    }
+
+    public Payment getPayment() {
+        return payment;
+    }
+
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    public boolean isCharged() {
+        return payment != null;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentBatchResult{" +
+                "customerId=" + customerId +
+                ", payment=" + payment +
+                ", failureReason='" + failureReason + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,55 @@
+package com.amigoscode.testing.payment;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * The customer_id, write_behind_key and currency columns of a payment table, read and written
+ * over plain JDBC the way hibernate maps {@link Payment}. A uuid is handed to the driver, which
+ * converts it to whatever type the column has - a native uuid, or 16 bytes as on H2 -
+ * and the currency is stored by ordinal.
+ */
+public final class PaymentColumns {
+
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    private PaymentColumns() {
+    }
+
+    public static UUID getCustomerId(ResultSet resultSet, int column) throws SQLException {
+        return getUuid(resultSet, column);
+    }
+
+    public static void setCustomerId(PreparedStatement statement, int column, UUID customerId) throws SQLException {
+        statement.setObject(column, customerId);
+    }
+
+    public static UUID getWriteBehindKey(ResultSet resultSet, int column) throws SQLException {
+        return getUuid(resultSet, column);
+    }
+
+    public static void setWriteBehindKey(PreparedStatement statement, int column, UUID writeBehindKey) throws SQLException {
+        statement.setObject(column, writeBehindKey);
+    }
+
+    public static Currency getCurrency(ResultSet resultSet, int column) throws SQLException {
+        int ordinal = resultSet.getInt(column);
+        return resultSet.wasNull() ? null : CURRENCIES[ordinal];
+    }
+
+    public static void setCurrency(PreparedStatement statement, int column, Currency currency) throws SQLException {
+        statement.setInt(column, currency.ordinal());
+    }
+
+    private static UUID getUuid(ResultSet resultSet, int column) throws SQLException {
+        Object value = resultSet.getObject(column);
+        if (value == null || value instanceof UUID) {
+            return (UUID) value;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap((byte[]) value);
+        return new UUID(bytes.getLong(), bytes.getLong());
+    }
+}
@@ -0,0 +1,98 @@
+package com.amigoscode.testing.payment;
+
+import com.amigoscode.testing.payment.routing.CardPaymentChargerRegistry;
+import com.amigoscode.testing.payment.routing.ChargeRouteStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("api/v1/payment")
+public class PaymentController {
+
+    private final PaymentService paymentService;
+    private final PaymentHistoryService paymentHistoryService;
+    private final PaymentExportService paymentExportService;
+    private final PaymentAggregates paymentAggregates;
+    private final CardPaymentChargerRegistry cardPaymentChargerRegistry;
+
+    @Autowired
+    public PaymentController(PaymentService paymentService,
+                             PaymentHistoryService paymentHistoryService,
+                             PaymentExportService paymentExportService,
+                             PaymentAggregates paymentAggregates,
+                             CardPaymentChargerRegistry cardPaymentChargerRegistry) {
+        this.paymentService = paymentService;
+        this.paymentHistoryService = paymentHistoryService;
+        this.paymentExportService = paymentExportService;
+        this.paymentAggregates = paymentAggregates;
+        this.cardPaymentChargerRegistry = cardPaymentChargerRegistry;
+    }
+
+    // The servlet thread is handed back as soon as the charge is submitted.
+    // Retries carrying the same Idempotency-Key get the first outcome, not a second charge.
+    @PostMapping("{customerId}")
+    public CompletableFuture<Void> chargeCard(
+            @PathVariable("customerId") UUID customerId,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody PaymentRequest paymentRequest) {
+        if (idempotencyKey == null) {
+            return paymentService.chargeCardAsync(customerId, paymentRequest);
+        }
+        return paymentService.chargeCardAsync(customerId, paymentRequest, idempotencyKey)
+                .thenAccept(cardPaymentCharge -> {
+                });
+    }
+
+    @GetMapping("{customerId}")
+    public PaymentHistoryPage getPaymentHistory(
+            @PathVariable("customerId") UUID customerId,
+            @RequestParam(name = "before", required = false) Long before,
+            @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        return paymentHistoryService.getPaymentHistory(customerId, before, limit);
+    }
+
+    @GetMapping("{customerId}/{paymentId}")
+    public Payment getPayment(@PathVariable("customerId") UUID customerId,
+                              @PathVariable("paymentId") Long paymentId) {
+        return paymentHistoryService.getPayment(customerId, paymentId);
+    }
+
+    // Streams every payment row by row, the response is written while the query is still reading
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> exportPayments(
+            @RequestParam(name = "format", defaultValue = "CSV") PaymentExportFormat format) {
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .body(outputStream -> paymentExportService.exportPayments(format, outputStream));
+    }
+
+    // Count, total, min and max per currency, read from running totals rather than the payment table
+    @GetMapping("aggregates")
+    public List<PaymentAggregate> getCurrencyAggregates() {
+        return paymentAggregates.getCurrencyAggregates();
+    }
+
+    @GetMapping("{customerId}/aggregates")
+    public List<PaymentAggregate> getCustomerAggregates(@PathVariable("customerId") UUID customerId) {
+        return paymentAggregates.getCustomerAggregates(customerId);
+    }
+
+    // Charges in flight, calls, failures and latency for every currency route
+    @GetMapping("routes")
+    public List<ChargeRouteStats> getRouteStats() {
+        return cardPaymentChargerRegistry.getRouteStats();
+    }
+}
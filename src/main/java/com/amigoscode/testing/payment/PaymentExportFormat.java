@@ -0,0 +1,18 @@
+package com.amigoscode.testing.payment;
+
+import org.springframework.http.MediaType;
+
+public enum PaymentExportFormat {
+    CSV(new MediaType("text", "csv")),
+    NDJSON(new MediaType("application", "x-ndjson"));
+
+    private final MediaType mediaType;
+
+    PaymentExportFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,251 @@
+package com.amigoscode.testing.payment;
+
+import com.amigoscode.testing.payment.sharding.PaymentShard;
+import com.amigoscode.testing.payment.sharding.ShardedPaymentStore;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Writes every payment to an output stream as CSV or NDJSON. Rows are read through a
+ * forward-only, read-only JDBC cursor in fetch-size chunks and written as they arrive,
+ * so no entity is created and heap use doesn't grow with the size of the table.
+ * <p>
+ * With payment sharding on, the query runs on every shard at once and the rows are
+ * merged in payment id order as they arrive, holding one row per shard at a time.
+ * <p>
+ * Embedded H2 buffers a whole result set on its side before returning the first row,
+ * unless the connection url sets LAZY_QUERY_EXECUTION=TRUE, as the datasource and shard
+ * urls in application.properties do.
+ */
+@Service
+public class PaymentExportService {
+
+    private static final String SELECT_PAYMENTS =
+            "SELECT payment_id, customer_id, amount, currency, source, description FROM payment ORDER BY payment_id";
+    private static final String CSV_HEADER = "paymentId,customerId,amount,currency,source,description\n";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardedPaymentStore shardedPaymentStore;
+    private final JsonFactory jsonFactory = new JsonFactory().setRootValueSeparator(null);
+    private final int fetchSize;
+
+    @Autowired
+    public PaymentExportService(JdbcTemplate jdbcTemplate,
+                                ObjectProvider<ShardedPaymentStore> shardedPaymentStore,
+                                @Value("${payment.export.fetch-size:1000}") int fetchSize) {
+        this(jdbcTemplate, shardedPaymentStore.getIfAvailable(), fetchSize);
+    }
+
+    PaymentExportService(JdbcTemplate jdbcTemplate, ShardedPaymentStore shardedPaymentStore, int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardedPaymentStore = shardedPaymentStore;
+        this.fetchSize = fetchSize;
+    }
+
+    // read only transaction: some drivers, postgres among them, only honour the fetch size with autocommit off
+    @Transactional(readOnly = true)
+    public void exportPayments(PaymentExportFormat format, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == PaymentExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            query(resultSet -> writeCsv(resultSet, writer));
+        } else {
+            JsonGenerator generator = jsonFactory.createGenerator(writer);
+            query(resultSet -> writeJson(resultSet, generator));
+            generator.flush();
+        }
+        writer.flush();
+    }
+
+    private void query(RowWriter rowWriter) throws IOException {
+        if (shardedPaymentStore != null) {
+            queryShards(rowWriter);
+            return;
+        }
+        jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(
+                            SELECT_PAYMENTS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    statement.setFetchSize(fetchSize);
+                    return statement;
+                },
+                resultSet -> {
+                    try {
+                        rowWriter.write(resultSet);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    private void queryShards(RowWriter rowWriter) throws IOException {
+        List<ShardCursor> cursors = Collections.synchronizedList(new ArrayList<>());
+        try {
+            // 1. Run the query on every shard at once, each sorts its own rows
+            shardedPaymentStore.scatter(shard -> {
+                ShardCursor cursor = new ShardCursor(shard);
+                cursors.add(cursor);
+                return cursor.open(fetchSize);
+            });
+
+            // 2. Write the lowest payment id at the head of any shard's rows, then move that shard on
+            PriorityQueue<ShardCursor> heads = new PriorityQueue<>(Comparator.comparingLong(ShardCursor::paymentId));
+            for (ShardCursor cursor : cursors) {
+                if (cursor.next()) {
+                    heads.add(cursor);
+                }
+            }
+            while (!heads.isEmpty()) {
+                ShardCursor cursor = heads.poll();
+                rowWriter.write(cursor.resultSet);
+                if (cursor.next()) {
+                    heads.add(cursor);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Payment export failed", e);
+        } finally {
+            cursors.forEach(ShardCursor::close);
+        }
+    }
+
+    private static void writeCsv(ResultSet resultSet, Writer writer) throws SQLException, IOException {
+        writer.write(Long.toString(resultSet.getLong(1)));
+        writer.write(',');
+        UUID customerId = PaymentColumns.getCustomerId(resultSet, 2);
+        writer.write(customerId == null ? "" : customerId.toString());
+        writer.write(',');
+        writer.write(amount(resultSet));
+        writer.write(',');
+        Currency currency = PaymentColumns.getCurrency(resultSet, 4);
+        writer.write(currency == null ? "" : currency.name());
+        writer.write(',');
+        writeCsvField(resultSet.getString(5), writer);
+        writer.write(',');
+        writeCsvField(resultSet.getString(6), writer);
+        writer.write('\n');
+    }
+
+    // quoted only when needed, embedded quotes doubled
+    private static void writeCsvField(String value, Writer writer) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static void writeJson(ResultSet resultSet, JsonGenerator generator) throws SQLException, IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("paymentId", resultSet.getLong(1));
+        UUID customerId = PaymentColumns.getCustomerId(resultSet, 2);
+        generator.writeStringField("customerId", customerId == null ? null : customerId.toString());
+        BigDecimal amount = resultSet.getBigDecimal(3);
+        if (amount == null) {
+            generator.writeNullField("amount");
+        } else {
+            generator.writeNumberField("amount", amount);
+        }
+        Currency currency = PaymentColumns.getCurrency(resultSet, 4);
+        generator.writeStringField("currency", currency == null ? null : currency.name());
+        generator.writeStringField("source", resultSet.getString(5));
+        generator.writeStringField("description", resultSet.getString(6));
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static String amount(ResultSet resultSet) throws SQLException {
+        BigDecimal amount = resultSet.getBigDecimal(3);
+        return amount == null ? "" : amount.toPlainString();
+    }
+
+    // A forward-only read of one shard's payments, kept open while the shards are merged
+    private static class ShardCursor {
+
+        private final PaymentShard shard;
+        private Connection connection;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
+        private long paymentId;
+
+        ShardCursor(PaymentShard shard) {
+            this.shard = shard;
+        }
+
+        ShardCursor open(int fetchSize) {
+            try {
+                connection = shard.getDataSource().getConnection();
+                connection.setAutoCommit(false);
+                connection.setReadOnly(true);
+                statement = connection.prepareStatement(
+                        SELECT_PAYMENTS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                resultSet = statement.executeQuery();
+                return this;
+            } catch (SQLException e) {
+                throw new IllegalStateException(String.format("Payment export failed on shard [%s]", shard.getIndex()), e);
+            }
+        }
+
+        boolean next() throws SQLException {
+            if (!resultSet.next()) {
+                return false;
+            }
+            paymentId = resultSet.getLong(1);
+            return true;
+        }
+
+        long paymentId() {
+            return paymentId;
+        }
+
+        void close() {
+            JdbcUtils.closeResultSet(resultSet);
+            JdbcUtils.closeStatement(statement);
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                } catch (SQLException e) {
+                    // nothing was written, closing the connection is all that matters
+                }
+            }
+            JdbcUtils.closeConnection(connection);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet resultSet) throws SQLException, IOException;
+    }
+}
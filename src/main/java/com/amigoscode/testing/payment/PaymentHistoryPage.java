@@ -0,0 +1,31 @@
+package com.amigoscode.testing.payment;
+
+import java.util.List;
+
+public class PaymentHistoryPage {
+
+    private final List<PaymentSummary> payments;
+    // pass back as 'before' to get the next page, null on the last page
+    private final Long nextBefore;
+
+    public PaymentHistoryPage(List<PaymentSummary> payments, Long nextBefore) {
+        this.payments = payments;
+        this.nextBefore = nextBefore;
+    }
+
+    public List<PaymentSummary> getPayments() {
+        return payments;
+    }
+
+    public Long getNextBefore() {
+        return nextBefore;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentHistoryPage{" +
+                "payments=" + payments +
+                ", nextBefore=" + nextBefore +
+                '}';
+    }
+}
@@ -0,0 +1,49 @@
+package com.amigoscode.testing.payment;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A customer's payments newest first, one page at a time. Pages are keyset paginated:
+ * each page starts below the last payment id of the previous one, so reading page 1000
+ * costs the same index seek as reading page 1.
+ */
+@Service
+public class PaymentHistoryService {
+
+    static final int MAX_PAGE_SIZE = 100;
+
+    private final PaymentStore paymentStore;
+
+    @Autowired
+    public PaymentHistoryService(PaymentStore paymentStore) {
+        this.paymentStore = paymentStore;
+    }
+
+    // Read through the payment cache, a payment of another customer is not found
+    Payment getPayment(UUID customerId, Long paymentId) {
+        return paymentStore.findById(paymentId)
+                .filter(payment -> customerId.equals(payment.getCustomerId()))
+                .orElseThrow(() -> new IllegalStateException(String.format(
+                        "Payment [%s] of customer [%s] not found", paymentId, customerId)));
+    }
+
+    PaymentHistoryPage getPaymentHistory(UUID customerId, Long before, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE)
+            throw new IllegalStateException(String.format("Limit [%s] must be between 1 and %s", limit, MAX_PAGE_SIZE));
+
+        PageRequest firstRows = PageRequest.of(0, limit);
+        List<PaymentSummary> payments = before == null
+                ? paymentStore.findByCustomerIdOrderByPaymentIdDesc(customerId, firstRows)
+                : paymentStore.findByCustomerIdAndPaymentIdLessThanOrderByPaymentIdDesc(customerId, before, firstRows);
+
+        Long nextBefore = payments.size() == limit
+                ? payments.get(payments.size() - 1).getPaymentId()
+                : null;
+        return new PaymentHistoryPage(payments, nextBefore);
+    }
+}
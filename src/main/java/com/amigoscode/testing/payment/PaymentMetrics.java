@@ -0,0 +1,73 @@
+package com.amigoscode.testing.payment;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers for each step of a card payment and counters of charge outcomes by currency,
+ * published as payment.charge.step and payment.charges.
+ * <p>
+ * Every meter is registered once up front and kept in arrays indexed by step and currency
+ * ordinal, so recording is a nanoTime read and an array lookup, with no tag lookup and no
+ * Timer.Sample per call.
+ */
+@Component
+public class PaymentMetrics {
+
+    enum Step {
+        CUSTOMER_LOOKUP,
+        CURRENCY_CHECK,
+        CARD_CHARGE,
+        SAVE;
+
+        String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final Step[] STEPS = Step.values();
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    private final Timer[] stepTimers = new Timer[STEPS.length];
+    // [currency ordinal][0 failure, 1 success]
+    private final Counter[][] chargeCounters = new Counter[CURRENCIES.length][2];
+
+    @Autowired
+    public PaymentMetrics(MeterRegistry meterRegistry) {
+        for (Step step : STEPS) {
+            stepTimers[step.ordinal()] = Timer.builder("payment.charge.step")
+                    .description("Time spent in each step of charging a card and saving the payment")
+                    .tag("step", step.tag())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+        for (Currency currency : CURRENCIES) {
+            chargeCounters[currency.ordinal()][0] = chargeCounter(meterRegistry, currency, "failure");
+            chargeCounters[currency.ordinal()][1] = chargeCounter(meterRegistry, currency, "success");
+        }
+    }
+
+    // Records the time since startNanos against the step and returns now, the start of the next step
+    long recordStep(Step step, long startNanos) {
+        long now = System.nanoTime();
+        stepTimers[step.ordinal()].record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    void recordCharge(Currency currency, boolean cardDebited) {
+        chargeCounters[currency.ordinal()][cardDebited ? 1 : 0].increment();
+    }
+
+    private static Counter chargeCounter(MeterRegistry meterRegistry, Currency currency, String outcome) {
+        return Counter.builder("payment.charges")
+                .description("Card charges by currency and outcome")
+                .tag("currency", currency.name())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -1,6 +1,37 @@
 package com.amigoscode.testing.payment;
 
+import com.amigoscode.testing.cache.CacheNames;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
-public interface PaymentRepository extends CrudRepository<Payment, Long> {
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+// The payment store when sharding is off, its finders are derived from the PaymentStore method names
+public interface PaymentRepository extends CrudRepository<Payment, Long>, PaymentStore {
+
+    // declared again so callers see one save and saveAll, not CrudRepository's and PaymentStore's
+    @Override
+    <S extends Payment> S save(S payment);
+
+    @Override
+    <S extends Payment> Iterable<S> saveAll(Iterable<S> payments);
+
+    @Override
+    @Cacheable(cacheNames = CacheNames.PAYMENTS, unless = "#result == null")
+    Optional<Payment> findById(Long paymentId);
+
+    @Override
+    @Query("select p.customerId as customerId, p.currency as currency, count(p) as count, " +
+            "sum(p.amount) as total, min(p.amount) as min, max(p.amount) as max " +
+            "from Payment p group by p.customerId, p.currency")
+    List<PaymentAggregateRow> aggregateByCustomerAndCurrency();
+
+    @Override
+    @Query("select p.writeBehindKey from Payment p where p.writeBehindKey in :writeBehindKeys")
+    List<UUID> findWriteBehindKeysIn(@Param("writeBehindKeys") Collection<UUID> writeBehindKeys);
 }
@@ -1,60 +1,362 @@
 package com.amigoscode.testing.payment;
 
+import com.amigoscode.testing.cache.CacheNames;
+import com.amigoscode.testing.customer.Customer;
+import com.amigoscode.testing.customer.CustomerExistenceCache;
 import com.amigoscode.testing.customer.CustomerRepository;
+import com.amigoscode.testing.datasource.ReadYourWritesGuard;
+import com.amigoscode.testing.payment.notification.PaymentNotificationQueue;
+import com.amigoscode.testing.payment.routing.CardPaymentChargerRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 public class PaymentService {
-    private final Set<Currency> ACCEPTED_CURRENCIES = Set.of(Currency.USD, Currency.GBP);
-
     private final CustomerRepository customerRepository;
-    private final PaymentRepository paymentRepository;
-    private final CardPaymentCharger cardPaymentCharger;
+    private final CustomerExistenceCache customerExistenceCache;
+    private final ReadYourWritesGuard readYourWritesGuard;
+    private final PaymentStore paymentStore;
+    private final CardPaymentChargerRegistry cardPaymentChargerRegistry;
+    private final AsyncCardPaymentCharger asyncCardPaymentCharger;
+    private final IdempotencyKeyStore idempotencyKeyStore;
+    private final PaymentWriteBehindQueue paymentWriteBehindQueue;
+    private final PaymentAggregates paymentAggregates;
+    private final PaymentNotificationQueue paymentNotificationQueue;
+    private final PaymentMetrics paymentMetrics;
+    private final Cache paymentCache;
+    private final PaymentBatchExecutor paymentBatchExecutor;
 
     @Autowired
     public PaymentService(CustomerRepository customerRepository,
-                          PaymentRepository paymentRepository,
-                          CardPaymentCharger cardPaymentCharger) {
+                          CustomerExistenceCache customerExistenceCache,
+                          ReadYourWritesGuard readYourWritesGuard,
+                          PaymentStore paymentStore,
+                          CardPaymentChargerRegistry cardPaymentChargerRegistry,
+                          AsyncCardPaymentCharger asyncCardPaymentCharger,
+                          IdempotencyKeyStore idempotencyKeyStore,
+                          PaymentWriteBehindQueue paymentWriteBehindQueue,
+                          PaymentAggregates paymentAggregates,
+                          PaymentNotificationQueue paymentNotificationQueue,
+                          PaymentMetrics paymentMetrics,
+                          CacheManager cacheManager,
+                          PaymentBatchExecutor paymentBatchExecutor) {
         this.customerRepository = customerRepository;
-        this.paymentRepository = paymentRepository;
-        this.cardPaymentCharger = cardPaymentCharger;
+        this.customerExistenceCache = customerExistenceCache;
+        this.readYourWritesGuard = readYourWritesGuard;
+        this.paymentStore = paymentStore;
+        this.cardPaymentChargerRegistry = cardPaymentChargerRegistry;
+        this.asyncCardPaymentCharger = asyncCardPaymentCharger;
+        this.idempotencyKeyStore = idempotencyKeyStore;
+        this.paymentWriteBehindQueue = paymentWriteBehindQueue;
+        this.paymentAggregates = paymentAggregates;
+        // write-behind payments count once they are saved, a dead lettered one never does
+        paymentWriteBehindQueue.onSaved(paymentAggregates::record);
+        this.paymentNotificationQueue = paymentNotificationQueue;
+        this.paymentMetrics = paymentMetrics;
+        this.paymentCache = CacheNames.getRequired(cacheManager, CacheNames.PAYMENTS);
+        this.paymentBatchExecutor = paymentBatchExecutor;
     }
 
     void chargeCard(UUID customerId, PaymentRequest paymentRequest) {
+        CardPaymentCharge cardPaymentCharge = chargeAndInsert(customerId, paymentRequest.getPayment());
+        checkCardDebited(customerId, cardPaymentCharge);
+    }
+
+    // A retry with the same key returns the first outcome without charging again, and only
+    // inserts when the first attempt charged the card but failed to insert
+    CardPaymentCharge chargeCard(UUID customerId, PaymentRequest paymentRequest, String idempotencyKey) {
+        Payment payment = paymentRequest.getPayment();
+        CompletableFuture<CardPaymentCharge> outcome = idempotencyKeyStore.execute(
+                customerIdempotencyKey(customerId, idempotencyKey),
+                () -> CompletableFuture.completedFuture(charge(customerId, payment)),
+                cardPaymentCharge -> record(customerId, payment, cardPaymentCharge));
+
+        CardPaymentCharge cardPaymentCharge;
+        try {
+            cardPaymentCharge = outcome.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        checkCardDebited(customerId, cardPaymentCharge);
+        return cardPaymentCharge;
+    }
+
+    CompletableFuture<Void> chargeCardAsync(UUID customerId, PaymentRequest paymentRequest) {
+        return chargeAndInsertAsync(customerId, paymentRequest.getPayment())
+                .thenAccept(cardPaymentCharge -> checkCardDebited(customerId, cardPaymentCharge));
+    }
+
+    CompletableFuture<CardPaymentCharge> chargeCardAsync(UUID customerId,
+                                                         PaymentRequest paymentRequest,
+                                                         String idempotencyKey) {
+        Payment payment = paymentRequest.getPayment();
+        return idempotencyKeyStore.execute(
+                        customerIdempotencyKey(customerId, idempotencyKey),
+                        () -> chargeAsync(customerId, payment),
+                        cardPaymentCharge -> record(customerId, payment, cardPaymentCharge))
+                .thenApply(cardPaymentCharge -> {
+                    checkCardDebited(customerId, cardPaymentCharge);
+                    return cardPaymentCharge;
+                });
+    }
+
+    List<PaymentBatchResult> chargeCards(List<PaymentBatchItem> items) {
+        if (items.isEmpty()) {
+            return List.of();
+        }
+
+        // 1. Which customers exist - one query for the ones we have not seen yet
+        long start = System.nanoTime();
+        Set<UUID> existingCustomerIds = new HashSet<>();
+        Set<UUID> unknownCustomerIds = new HashSet<>();
+        for (PaymentBatchItem item : items) {
+            if (customerExistenceCache.isKnown(item.getCustomerId())) {
+                existingCustomerIds.add(item.getCustomerId());
+            } else {
+                unknownCustomerIds.add(item.getCustomerId());
+            }
+        }
+
+        if (!unknownCustomerIds.isEmpty()) {
+            Iterable<Customer> customers = readYourWritesGuard.readAll(
+                    unknownCustomerIds, () -> customerRepository.findAllById(unknownCustomerIds));
+            customers.forEach(customer -> {
+                existingCustomerIds.add(customer.getId());
+                customerExistenceCache.markKnown(customer.getId());
+            });
+        }
+        paymentMetrics.recordStep(PaymentMetrics.Step.CUSTOMER_LOOKUP, start);
+
+        // 2. Charge cards on the shared batch pool, at most max-concurrency charges in flight
+        List<PaymentBatchResult> results = chargeConcurrently(items, existingCustomerIds);
+
+        // 3. Insert debited payments, hibernate groups the inserts into jdbc batches
+        List<Payment> debitedPayments = new ArrayList<>();
+        results.stream()
+                .filter(PaymentBatchResult::isCharged)
+                .forEach(result -> debitedPayments.add(result.getPayment()));
+
+        start = System.nanoTime();
+        if (paymentWriteBehindQueue.isEnabled()) {
+            debitedPayments.forEach(paymentWriteBehindQueue::enqueue);
+        } else if (!debitedPayments.isEmpty()) {
+            paymentStore.saveAll(debitedPayments);
+            debitedPayments.forEach(this::evictCached);
+            debitedPayments.forEach(paymentAggregates::record);
+        }
+        paymentMetrics.recordStep(PaymentMetrics.Step.SAVE, start);
+
+        // 4. Queue a text per debited payment, sent in the background
+        debitedPayments.forEach(paymentNotificationQueue::publish);
+        return results;
+    }
+
+    private List<PaymentBatchResult> chargeConcurrently(List<PaymentBatchItem> items,
+                                                        Set<UUID> existingCustomerIds) {
+        List<CompletableFuture<PaymentBatchResult>> futures = new ArrayList<>(items.size());
+        for (PaymentBatchItem item : items) {
+            UUID customerId = item.getCustomerId();
+            futures.add(CompletableFuture
+                    .supplyAsync(() -> chargeBatchItem(item, existingCustomerIds), paymentBatchExecutor)
+                    // a failed item never takes the charged ones down with it
+                    .exceptionally(e -> failedBatchItem(customerId,
+                            e instanceof CompletionException && e.getCause() != null ? e.getCause() : e)));
+        }
+
+        List<PaymentBatchResult> results = new ArrayList<>(items.size());
+        futures.forEach(future -> results.add(future.join()));
+        return results;
+    }
+
+    private PaymentBatchResult chargeBatchItem(PaymentBatchItem item, Set<UUID> existingCustomerIds) {
+        UUID customerId = item.getCustomerId();
+        Payment payment = item.getPaymentRequest().getPayment();
+        try {
+            if (!existingCustomerIds.contains(customerId))
+                throw new IllegalStateException(String.format("Customer with id [%s] not found!", customerId));
+
+            long start = System.nanoTime();
+            checkCurrencySupported(payment);
+            checkAmountPositive(payment);
+            paymentMetrics.recordStep(PaymentMetrics.Step.CURRENCY_CHECK, start);
+
+            debitCard(customerId, payment);
+
+            payment.setCustomerId(customerId);
+            return new PaymentBatchResult(customerId, payment, null);
+        } catch (RuntimeException e) {
+            return failedBatchItem(customerId, e);
+        }
+    }
+
+    private static PaymentBatchResult failedBatchItem(UUID customerId, Throwable e) {
+        return new PaymentBatchResult(customerId, null, e.getMessage() != null ? e.getMessage() : e.toString());
+    }
+
+    private CardPaymentCharge chargeAndInsert(UUID customerId, Payment payment) {
+        CardPaymentCharge cardPaymentCharge = charge(customerId, payment);
+
+        // 4. Insert payment if debited, the caller throws otherwise
+        insertIfDebited(customerId, payment, cardPaymentCharge);
+        // 5. Send sms - queued by insert, sent in the background
+        return cardPaymentCharge;
+    }
+
+    private CompletableFuture<CardPaymentCharge> chargeAndInsertAsync(UUID customerId, Payment payment) {
+        return chargeAsync(customerId, payment)
+                .thenApply(cardPaymentCharge -> {
+                    // 4. Insert payment if debited, the caller throws otherwise
+                    insertIfDebited(customerId, payment, cardPaymentCharge);
+                    // 5. Send sms - queued by insert, sent in the background
+                    return cardPaymentCharge;
+                });
+    }
+
+    private CardPaymentCharge charge(UUID customerId, Payment payment) {
         // 1. Does customer exist if not throw
-        boolean isCustomerFound = customerRepository.findById(customerId).isPresent();
+        long start = System.nanoTime();
+        checkCustomerExists(customerId);
+        start = paymentMetrics.recordStep(PaymentMetrics.Step.CUSTOMER_LOOKUP, start);
+
+        // 2. Do we support the currency and is there anything to charge if not throw
+        checkCurrencySupported(payment);
+        checkAmountPositive(payment);
+        paymentMetrics.recordStep(PaymentMetrics.Step.CURRENCY_CHECK, start);
+
+        // 3. Charge card with a provider routed by currency
+        return chargeRouted(payment);
+    }
+
+    private CompletableFuture<CardPaymentCharge> chargeAsync(UUID customerId, Payment payment) {
+        // 1. Does customer exist if not throw
+        long start = System.nanoTime();
+        checkCustomerExists(customerId);
+        start = paymentMetrics.recordStep(PaymentMetrics.Step.CUSTOMER_LOOKUP, start);
+
+        // 2. Do we support the currency and is there anything to charge if not throw
+        checkCurrencySupported(payment);
+        checkAmountPositive(payment);
+        long chargeStart = paymentMetrics.recordStep(PaymentMetrics.Step.CURRENCY_CHECK, start);
+
+        // 3. Charge card without holding the calling thread, timed until the charge completes
+        return asyncCardPaymentCharger.chargeCardAsync(
+                        payment.getSource(),
+                        payment.getAmount(),
+                        payment.getDescription())
+                .whenComplete((cardPaymentCharge, e) -> recordCharge(payment, chargeStart, cardPaymentCharge));
+    }
+
+    // A failed insert fails the request but not the charge, so the idempotency key stays charged
+    private CompletableFuture<Void> record(UUID customerId, Payment payment, CardPaymentCharge cardPaymentCharge) {
+        try {
+            insertIfDebited(customerId, payment, cardPaymentCharge);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void insertIfDebited(UUID customerId, Payment payment, CardPaymentCharge cardPaymentCharge) {
+        if (cardPaymentCharge.isCardDebited()) {
+            payment.setCustomerId(customerId);
+            insert(payment);
+        }
+    }
+
+    // With write-behind on, the payment is journaled here and saved by a background writer
+    private void insert(Payment payment) {
+        long start = System.nanoTime();
+        if (paymentWriteBehindQueue.isEnabled()) {
+            paymentWriteBehindQueue.enqueue(payment);
+        } else {
+            paymentStore.save(payment);
+            evictCached(payment);
+            paymentAggregates.record(payment);
+        }
+        paymentMetrics.recordStep(PaymentMetrics.Step.SAVE, start);
+        paymentNotificationQueue.publish(payment);
+    }
+
+    private void evictCached(Payment payment) {
+        if (payment.getPaymentId() != null) {
+            paymentCache.evict(payment.getPaymentId());
+        }
+    }
+
+    // Keys are chosen by clients, so two customers may well send the same one
+    private static String customerIdempotencyKey(UUID customerId, String idempotencyKey) {
+        return customerId + ":" + idempotencyKey;
+    }
+
+    private void checkCustomerExists(UUID customerId) {
+        if (customerExistenceCache.isKnown(customerId)) {
+            return;
+        }
+
+        boolean isCustomerFound = readYourWritesGuard.read(customerId, () -> customerRepository.existsById(customerId));
         if (!isCustomerFound)
             throw new IllegalStateException(String.format("Customer with id [%s] not found!", customerId));
 
-        // 2. Do we support the currency if not throw
-        boolean isCurrencySupported = ACCEPTED_CURRENCIES.contains(paymentRequest.getPayment().getCurrency());
+        customerExistenceCache.markKnown(customerId);
+    }
+
+    private void checkCurrencySupported(Payment payment) {
+        boolean isCurrencySupported = cardPaymentChargerRegistry.supports(payment.getCurrency());
 
         if (!isCurrencySupported) {
             String message = String.format(
                     "Currency [%s] not supported",
-                    paymentRequest.getPayment().getCurrency());
+                    payment.getCurrency());
             throw new IllegalStateException(message);
         }
+    }
 
-        // 3. Charge card
-        CardPaymentCharge cardPaymentCharge = cardPaymentCharger.chargeCard(
-                paymentRequest.getPayment().getSource(),
-                paymentRequest.getPayment().getAmount(),
-                paymentRequest.getPayment().getCurrency(),
-                paymentRequest.getPayment().getDescription());
+    private void checkAmountPositive(Payment payment) {
+        if (payment.getAmountInMinorUnits() <= 0)
+            throw new IllegalStateException(String.format("Amount [%s] must be positive", payment.getAmount()));
+    }
 
-        // 4. If not debited throw
-        if (!cardPaymentCharge.isCardDebited())
-            throw new IllegalStateException(String.format("Card not debited for customer %s", customerId));
+    private void debitCard(UUID customerId, Payment payment) {
+        CardPaymentCharge cardPaymentCharge = chargeRouted(payment);
+
+        checkCardDebited(customerId, cardPaymentCharge);
+    }
 
-        // 5. Insert payment
-        paymentRequest.getPayment().setCustomerId(customerId);
+    // A charger that throws counts as a failed charge
+    private CardPaymentCharge chargeRouted(Payment payment) {
+        long start = System.nanoTime();
+        CardPaymentCharge cardPaymentCharge = null;
+        try {
+            cardPaymentCharge = cardPaymentChargerRegistry.chargeCard(
+                    payment.getSource(),
+                    payment.getAmount(),
+                    payment.getDescription());
+            return cardPaymentCharge;
+        } finally {
+            recordCharge(payment, start, cardPaymentCharge);
+        }
+    }
 
-        paymentRepository.save(paymentRequest.getPayment());
-        // 6. TODO: send sms
+    private void recordCharge(Payment payment, long start, CardPaymentCharge cardPaymentCharge) {
+        paymentMetrics.recordStep(PaymentMetrics.Step.CARD_CHARGE, start);
+        paymentMetrics.recordCharge(payment.getCurrency(), cardPaymentCharge != null && cardPaymentCharge.isCardDebited());
+    }
+
+    private void checkCardDebited(UUID customerId, CardPaymentCharge cardPaymentCharge) {
+        if (!cardPaymentCharge.isCardDebited())
+            throw new IllegalStateException(String.format("Card not debited for customer %s", customerId));
     }
 }
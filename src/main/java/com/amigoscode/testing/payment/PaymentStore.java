@@ -0,0 +1,35 @@
+package com.amigoscode.testing.payment;
+
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Where payments are saved and read back: the payment table through {@link PaymentRepository},
+ * or spread over several databases by {@link com.amigoscode.testing.payment.sharding.ShardedPaymentStore}
+ * when payment.sharding.enabled is set.
+ */
+public interface PaymentStore {
+
+    <S extends Payment> S save(S payment);
+
+    <S extends Payment> Iterable<S> saveAll(Iterable<S> payments);
+
+    Optional<Payment> findById(Long paymentId);
+
+    // newest first page of a customer's payments
+    List<PaymentSummary> findByCustomerIdOrderByPaymentIdDesc(UUID customerId, Pageable pageable);
+
+    // next page: seeks past the last payment id seen instead of skipping rows with an offset
+    List<PaymentSummary> findByCustomerIdAndPaymentIdLessThanOrderByPaymentIdDesc(UUID customerId,
+                                                                                   Long paymentId,
+                                                                                   Pageable pageable);
+
+    List<PaymentAggregateRow> aggregateByCustomerAndCurrency();
+
+    // those of the given write-behind keys whose payment is already saved
+    List<UUID> findWriteBehindKeysIn(Collection<UUID> writeBehindKeys);
+}
@@ -0,0 +1,17 @@
+package com.amigoscode.testing.payment;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+// Only the columns payment history shows, selected without loading Payment entities
+public interface PaymentSummary {
+
+    Long getPaymentId();
+
+    // minor units, the amount column goes through MinorUnitsConverter here too
+    @JsonSerialize(using = MinorUnitsJson.Serializer.class)
+    long getAmount();
+
+    Currency getCurrency();
+
+    String getDescription();
+}
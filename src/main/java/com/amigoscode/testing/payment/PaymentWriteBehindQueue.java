@@ -0,0 +1,454 @@
+package com.amigoscode.testing.payment;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Optional write-behind for debited payments. Instead of inserting on the charging
+ * thread, a payment is appended to a local journal and handed to a background writer
+ * that saves payments in batches. After each batch the writer records the last saved
+ * sequence number in a checkpoint file.
+ * <p>
+ * The journal is a series of segments of at most segment-entries payments, named after
+ * their first sequence number. A segment is deleted once the checkpoint has passed its
+ * last payment, so the journal stays small even when payments never stop arriving.
+ * <p>
+ * At most capacity payments wait for the writer; past that a payment is saved on the
+ * calling thread instead. Whoever registered {@link #onSaved(Consumer)} hears of a payment
+ * once it is saved, never of one that is dead lettered. A batch that still fails after max-attempts saves is appended
+ * to the dead letter file and checkpointed, so one bad batch cannot hold up the rest.
+ * <p>
+ * On startup anything in the journal past the checkpoint is saved before the queue
+ * accepts new payments. Every payment is given a write-behind key when it is journaled,
+ * so replay skips the ones a crash between a batch insert and its checkpoint left saved.
+ */
+@Component
+public class PaymentWriteBehindQueue {
+
+    private static final String SEGMENT_PREFIX = "payments-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT = "payments.checkpoint";
+    private static final String DEAD_LETTER = "payments.dead-letter";
+
+    private final PaymentStore paymentStore;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path journalDirectory;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final boolean fsync;
+    private final int maxAttempts;
+    private final int segmentEntries;
+
+    private final BlockingQueue<JournalEntry> pending;
+    private final List<JournalEntry> replay = new ArrayList<>();
+    private final Counter synchronousSaves;
+    private final Counter retries;
+    private final Counter deadLettered;
+
+    private final Object journalLock = new Object();
+    // first sequence number of each segment on disk, oldest first, the last one is appended to
+    private final List<Long> segments = new ArrayList<>();
+    private FileChannel journal;
+    private int journalEntries;
+    private long lastSequence;
+
+    // replayed payments are saved before anyone registers, they are in the table when aggregates are rebuilt
+    private volatile Consumer<Payment> savedListener = payment -> {
+    };
+
+    private volatile boolean running;
+    private volatile boolean stalled;
+    private Thread writer;
+
+    @Autowired
+    public PaymentWriteBehindQueue(PaymentStore paymentStore,
+                                   ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${payment.write-behind.enabled:false}") boolean enabled,
+                                   @Value("${payment.write-behind.journal-dir:payment-journal}") String journalDirectory,
+                                   @Value("${payment.write-behind.batch-size:100}") int batchSize,
+                                   @Value("${payment.write-behind.flush-interval:200ms}") Duration flushInterval,
+                                   @Value("${payment.write-behind.fsync:true}") boolean fsync,
+                                   @Value("${payment.write-behind.capacity:10000}") int capacity,
+                                   @Value("${payment.write-behind.max-attempts:5}") int maxAttempts,
+                                   @Value("${payment.write-behind.segment-entries:10000}") int segmentEntries) {
+        this.paymentStore = paymentStore;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.journalDirectory = Paths.get(journalDirectory);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.fsync = fsync;
+        this.maxAttempts = maxAttempts;
+        this.segmentEntries = segmentEntries;
+        this.pending = new LinkedBlockingQueue<>(capacity);
+
+        Gauge.builder("payment.write-behind.pending", pending, Collection::size)
+                .description("Journaled payments waiting for the background writer")
+                .register(meterRegistry);
+        this.synchronousSaves = Counter.builder("payment.write-behind.synchronous-saves")
+                .description("Payments saved on the charging thread because the write-behind queue was full")
+                .register(meterRegistry);
+        this.retries = Counter.builder("payment.write-behind.retries")
+                .description("Batch saves that failed and were tried again")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("payment.write-behind.dead-lettered")
+                .description("Payments moved to the dead letter file after max-attempts failed saves")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        // 1. Pick up whatever the previous run appended but never saved
+        recover();
+
+        // 2. Save it before taking new payments
+        flush();
+
+        // 3. From now on the writer saves in the background
+        running = true;
+        writer = new Thread(this::writeBehind, "payment-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    void onSaved(Consumer<Payment> savedListener) {
+        this.savedListener = savedListener;
+    }
+
+    void enqueue(Payment payment) {
+        payment.setWriteBehindKey(UUID.randomUUID());
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payment);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialise payment for write-behind journal", e);
+        }
+
+        // 1. Journal it and hand it to the writer while there is room - only the writer takes from
+        // the queue, so the room checked here is still there when the payment is added
+        synchronized (journalLock) {
+            if (pending.remainingCapacity() > 0) {
+                long sequence = lastSequence + 1;
+                try {
+                    if (journalEntries >= segmentEntries) {
+                        roll(sequence);
+                    }
+                    append(sequence, payment.getWriteBehindKey(), json);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot append payment to write-behind journal", e);
+                }
+                lastSequence = sequence;
+                journalEntries++;
+                pending.add(new JournalEntry(sequence, payment));
+                return;
+            }
+        }
+
+        // 2. The writer is behind, save on the calling thread rather than queue without limit
+        paymentStore.save(payment);
+        savedListener.accept(payment);
+        synchronousSaves.increment();
+    }
+
+    // Saves everything replayed or queued so far on the calling thread
+    void flush() throws IOException {
+        for (int from = 0; from < replay.size(); from += batchSize) {
+            saveUnsaved(replay.subList(from, Math.min(from + batchSize, replay.size())));
+        }
+        replay.clear();
+
+        List<JournalEntry> batch = new ArrayList<>(batchSize);
+        while (pending.drainTo(batch, batchSize) > 0) {
+            save(batch);
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        if (writer != null) {
+            writer.join();
+        }
+        // saving out of order would checkpoint past the stalled batch, leave it all to replay
+        if (!stalled) {
+            flush();
+        }
+        journal.close();
+    }
+
+    private void writeBehind() {
+        List<JournalEntry> batch = new ArrayList<>(batchSize);
+        while (running || !pending.isEmpty()) {
+            try {
+                JournalEntry first = pending.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, batchSize - 1);
+                if (!saveOrDeadLetter(batch)) {
+                    stalled = true;
+                    return;
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // A batch that can't be saved stays journaled until it is saved, dead lettered or we shut down
+    private boolean saveOrDeadLetter(List<JournalEntry> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // an attempt that failed on the checkpoint may have saved the batch already
+                if (attempt == 1) {
+                    save(batch);
+                } else {
+                    saveUnsaved(batch);
+                }
+                return true;
+            } catch (RuntimeException | IOException e) {
+                if (!running) {
+                    return false;
+                }
+                if (attempt >= maxAttempts) {
+                    return deadLetter(batch);
+                }
+                retries.increment();
+                TimeUnit.MILLISECONDS.sleep(flushInterval.toMillis());
+            }
+        }
+    }
+
+    private boolean deadLetter(List<JournalEntry> batch) {
+        StringBuilder lines = new StringBuilder();
+        try {
+            for (JournalEntry entry : batch) {
+                lines.append(entry.sequence).append('\t')
+                        .append(objectMapper.writeValueAsString(entry.payment)).append('\n');
+            }
+            Files.writeString(journalDirectory.resolve(DEAD_LETTER), lines,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND,
+                    StandardOpenOption.SYNC);
+            checkpoint(batch.get(batch.size() - 1).sequence);
+        } catch (IOException e) {
+            // nowhere to park it either, leave the batch and everything after it to replay
+            return false;
+        }
+        deadLettered.increment(batch.size());
+        return true;
+    }
+
+    private void save(List<JournalEntry> batch) throws IOException {
+        List<Payment> payments = new ArrayList<>(batch.size());
+        batch.forEach(entry -> payments.add(entry.payment));
+        saveAndCheckpoint(batch, payments);
+    }
+
+    // Replayed payments may have been saved before the crash, only the others are saved again
+    private void saveUnsaved(List<JournalEntry> batch) throws IOException {
+        List<UUID> writeBehindKeys = new ArrayList<>(batch.size());
+        batch.stream()
+                .map(entry -> entry.payment.getWriteBehindKey())
+                .filter(Objects::nonNull)
+                .forEach(writeBehindKeys::add);
+        Set<UUID> saved = new HashSet<>();
+        if (!writeBehindKeys.isEmpty()) {
+            saved.addAll(paymentStore.findWriteBehindKeysIn(writeBehindKeys));
+        }
+
+        List<Payment> payments = new ArrayList<>(batch.size());
+        batch.stream()
+                .filter(entry -> !saved.contains(entry.payment.getWriteBehindKey()))
+                .forEach(entry -> payments.add(entry.payment));
+        saveAndCheckpoint(batch, payments);
+    }
+
+    private void saveAndCheckpoint(List<JournalEntry> batch, List<Payment> payments) throws IOException {
+        if (!payments.isEmpty()) {
+            paymentStore.saveAll(payments);
+            payments.forEach(savedListener);
+        }
+
+        checkpoint(batch.get(batch.size() - 1).sequence);
+    }
+
+    private void checkpoint(long savedSequence) throws IOException {
+        writeCheckpoint(savedSequence);
+
+        // a segment is done once the next one starts past the checkpoint
+        synchronized (journalLock) {
+            while (segments.size() > 1 && segments.get(1) - 1 <= savedSequence) {
+                Files.deleteIfExists(segment(segments.remove(0)));
+            }
+        }
+    }
+
+    void recover() throws IOException {
+        Files.createDirectories(journalDirectory);
+        long checkpoint = readCheckpoint();
+        lastSequence = checkpoint;
+
+        // 1. Read the segments oldest first, queueing whatever is past the checkpoint for replay
+        for (long firstSequence : listSegments()) {
+            segments.add(firstSequence);
+            try (BufferedReader reader = Files.newBufferedReader(segment(firstSequence), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    JournalEntry entry = parse(line);
+                    // a torn last line was never acknowledged to the caller
+                    if (entry == null) {
+                        break;
+                    }
+                    if (entry.sequence > checkpoint) {
+                        replay.add(entry);
+                    }
+                    lastSequence = Math.max(lastSequence, entry.sequence);
+                }
+            }
+        }
+
+        // 2. Append to a fresh segment, or to the last one if it holds no whole payment -
+        // at most a torn line, which is dropped
+        long next = lastSequence + 1;
+        if (segments.isEmpty() || segments.get(segments.size() - 1) != next) {
+            segments.add(next);
+        }
+        journal = open(next);
+        journal.truncate(0);
+        journalEntries = 0;
+    }
+
+    private void roll(long firstSequence) throws IOException {
+        journal.close();
+        segments.add(firstSequence);
+        journal = open(firstSequence);
+        journalEntries = 0;
+    }
+
+    private void append(long sequence, UUID writeBehindKey, String json) throws IOException {
+        ByteBuffer line = StandardCharsets.UTF_8.encode(sequence + "\t" + writeBehindKey + "\t" + json + "\n");
+        while (line.hasRemaining()) {
+            journal.write(line);
+        }
+        if (fsync) {
+            journal.force(false);
+        }
+    }
+
+    private FileChannel open(long firstSequence) throws IOException {
+        return FileChannel.open(segment(firstSequence),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path segment(long firstSequence) {
+        return journalDirectory.resolve(SEGMENT_PREFIX + firstSequence + SEGMENT_SUFFIX);
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> firstSequences = new ArrayList<>();
+        try (Stream<Path> files = Files.list(journalDirectory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> firstSequences.add(Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        firstSequences.sort(null);
+        return firstSequences;
+    }
+
+    // sequence, write-behind key and payment json, separated by tabs. Lines journaled before
+    // payments had a key go straight from the sequence to the json and are replayed as they are.
+    private JournalEntry parse(String line) {
+        int tab = line.indexOf('\t');
+        if (tab < 0) {
+            return null;
+        }
+        try {
+            long sequence = Long.parseLong(line.substring(0, tab));
+            UUID writeBehindKey = null;
+            int keyTab = line.indexOf('\t', tab + 1);
+            if (keyTab > 0 && line.charAt(tab + 1) != '{') {
+                writeBehindKey = UUID.fromString(line.substring(tab + 1, keyTab));
+                tab = keyTab;
+            }
+            Payment payment = objectMapper.readValue(line.substring(tab + 1), Payment.class);
+            payment.setWriteBehindKey(writeBehindKey);
+            return new JournalEntry(sequence, payment);
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path checkpoint = journalDirectory.resolve(CHECKPOINT);
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        return Long.parseLong(Files.readString(checkpoint).trim());
+    }
+
+    private void writeCheckpoint(long sequence) throws IOException {
+        Path temporary = journalDirectory.resolve(CHECKPOINT + ".tmp");
+        Files.writeString(temporary, Long.toString(sequence));
+        Files.move(temporary, journalDirectory.resolve(CHECKPOINT),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static class JournalEntry {
+        private final long sequence;
+        private final Payment payment;
+
+        private JournalEntry(long sequence, Payment payment) {
+            this.sequence = sequence;
+            this.payment = payment;
+        }
+    }
+}
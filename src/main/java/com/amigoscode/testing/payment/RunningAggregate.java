@@ -0,0 +1,65 @@
+package com.amigoscode.testing.payment;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count, sum, min and max of amounts in one currency, in minor units. Writers never
+ * block each other: each figure is a striped adder or accumulator, so concurrent
+ * payments for the same customer update different cells.
+ */
+class RunningAggregate {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    void add(long minorUnits) {
+        count.increment();
+        total.add(minorUnits);
+        min.accumulate(minorUnits);
+        max.accumulate(minorUnits);
+    }
+
+    void add(long count, long total, long min, long max) {
+        this.count.add(count);
+        this.total.add(total);
+        this.min.accumulate(min);
+        this.max.accumulate(max);
+    }
+
+    void add(RunningAggregate other) {
+        long otherCount = other.count.sum();
+        if (otherCount == 0) {
+            return;
+        }
+        count.add(otherCount);
+        total.add(other.total.sum());
+        min.accumulate(other.min.get());
+        max.accumulate(other.max.get());
+    }
+
+    // figures are read one by one, a payment landing meanwhile may show in some but not others
+    PaymentAggregate snapshot(Currency currency) {
+        long count = this.count.sum();
+        if (count == 0) {
+            return new PaymentAggregate(currency, 0, BigDecimal.ZERO.setScale(Money.SCALE), null, null);
+        }
+        return new PaymentAggregate(
+                currency,
+                count,
+                fromMinorUnits(total.sum()),
+                fromMinorUnits(min.get()),
+                fromMinorUnits(max.get()));
+    }
+
+    boolean isEmpty() {
+        return count.sum() == 0;
+    }
+
+    private static BigDecimal fromMinorUnits(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, Money.SCALE);
+    }
+}
@@ -0,0 +1,39 @@
+package com.amigoscode.testing.payment.notification;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stands in for an SMS provider: keeps the most recent messages in memory, dropping the
+ * oldest once full, and sends nothing. For tests and local runs.
+ */
+public class InMemorySmsSender implements SmsSender {
+
+    private final int capacity;
+    private final ArrayDeque<SmsMessage> messages;
+
+    public InMemorySmsSender(int capacity) {
+        this.capacity = capacity;
+        this.messages = new ArrayDeque<>(capacity);
+    }
+
+    @Override
+    public synchronized void send(List<SmsMessage> batch) {
+        for (SmsMessage message : batch) {
+            if (messages.size() == capacity) {
+                messages.pollFirst();
+            }
+            messages.addLast(message);
+        }
+    }
+
+    // oldest first
+    public synchronized List<SmsMessage> getSentMessages() {
+        return new ArrayList<>(messages);
+    }
+
+    public synchronized void reset() {
+        messages.clear();
+    }
+}
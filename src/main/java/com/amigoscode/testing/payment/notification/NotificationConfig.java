@@ -0,0 +1,20 @@
+package com.amigoscode.testing.payment.notification;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Who sends the payment texts: {@code payment.notification.sms-sender=memory} (the default)
+ * keeps them in memory. A provider is plugged in as another SmsSender bean under its own value.
+ */
+@Configuration
+public class NotificationConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "payment.notification.sms-sender", havingValue = "memory", matchIfMissing = true)
+    public InMemorySmsSender inMemorySmsSender(@Value("${payment.notification.memory.capacity:1000}") int capacity) {
+        return new InMemorySmsSender(capacity);
+    }
+}
@@ -0,0 +1,48 @@
+package com.amigoscode.testing.payment.notification;
+
+import com.amigoscode.testing.payment.Money;
+import com.amigoscode.testing.payment.Payment;
+
+import java.util.UUID;
+
+/**
+ * A debited payment that has been saved (or journaled, with write-behind on, in which
+ * case it has no paymentId yet). Only what the notification needs is copied, so the
+ * payment itself is not held on to while the event waits in the queue.
+ */
+public class PaymentCompletedEvent {
+
+    private final Long paymentId;
+    private final UUID customerId;
+    private final Money amount;
+    // System.nanoTime() when published, for the consumer lag
+    private final long publishedNanos;
+
+    public PaymentCompletedEvent(Long paymentId, UUID customerId, Money amount, long publishedNanos) {
+        this.paymentId = paymentId;
+        this.customerId = customerId;
+        this.amount = amount;
+        this.publishedNanos = publishedNanos;
+    }
+
+    static PaymentCompletedEvent of(Payment payment) {
+        return new PaymentCompletedEvent(
+                payment.getPaymentId(), payment.getCustomerId(), payment.getAmount(), System.nanoTime());
+    }
+
+    public Long getPaymentId() {
+        return paymentId;
+    }
+
+    public UUID getCustomerId() {
+        return customerId;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    public long getPublishedNanos() {
+        return publishedNanos;
+    }
+}
@@ -0,0 +1,193 @@
+package com.amigoscode.testing.payment.notification;
+
+import com.amigoscode.testing.customer.Customer;
+import com.amigoscode.testing.customer.CustomerRepository;
+import com.amigoscode.testing.datasource.ReadYourWritesGuard;
+import com.amigoscode.testing.payment.Payment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Texts customers about their debited payments without holding up the charge. Publishing
+ * only offers a {@link PaymentCompletedEvent} to a bounded ring buffer. A background
+ * thread takes up to batchSize events at a time, looks up the customers' phone numbers in
+ * one query and hands the texts to the {@link SmsSender}.
+ * <p>
+ * When the consumer falls behind, events that don't fit in the queue are dropped and
+ * counted rather than slowing down the charge. Delivery is at most once: queued events are
+ * lost on a crash, and a failed batch is not retried.
+ */
+@Component
+public class PaymentNotificationQueue {
+
+    private final CustomerRepository customerRepository;
+    private final ReadYourWritesGuard readYourWritesGuard;
+    private final SmsSender smsSender;
+    private final boolean enabled;
+    private final int batchSize;
+
+    private final BlockingQueue<PaymentCompletedEvent> pending;
+    private final LongAdder dropped = new LongAdder();
+    private final Timer lagTimer;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+
+    private volatile boolean running;
+    private Thread consumer;
+
+    @Autowired
+    public PaymentNotificationQueue(CustomerRepository customerRepository,
+                                    ReadYourWritesGuard readYourWritesGuard,
+                                    SmsSender smsSender,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${payment.notification.enabled:true}") boolean enabled,
+                                    @Value("${payment.notification.queue-capacity:10000}") int queueCapacity,
+                                    @Value("${payment.notification.batch-size:100}") int batchSize) {
+        this.customerRepository = customerRepository;
+        this.readYourWritesGuard = readYourWritesGuard;
+        this.smsSender = smsSender;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("payment.notification.queue.depth", pending, Collection::size)
+                .description("Payment completed events waiting for the sms sender")
+                .register(meterRegistry);
+        FunctionCounter.builder("payment.notification.dropped", dropped, LongAdder::sum)
+                .description("Payment completed events dropped because the queue was full")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("payment.notification.lag")
+                .description("Time a payment completed event waits in the queue before the consumer takes it")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.sentCounter = smsCounter(meterRegistry, "sent");
+        this.failedCounter = smsCounter(meterRegistry, "failed");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        consumer = new Thread(this::consume, "payment-notifications");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    public void publish(Payment payment) {
+        if (enabled && !pending.offer(PaymentCompletedEvent.of(payment))) {
+            dropped.increment();
+        }
+    }
+
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    // Sends what is queued, then returns
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (consumer != null) {
+            consumer.join();
+        }
+        flush();
+    }
+
+    // Sends everything queued so far on the calling thread
+    void flush() {
+        List<PaymentCompletedEvent> batch = new ArrayList<>(batchSize);
+        while (pending.drainTo(batch, batchSize) > 0) {
+            send(batch);
+            batch.clear();
+        }
+    }
+
+    private void consume() {
+        List<PaymentCompletedEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PaymentCompletedEvent first = pending.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, batchSize - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<PaymentCompletedEvent> batch) {
+        long now = System.nanoTime();
+        batch.forEach(event -> lagTimer.record(now - event.getPublishedNanos(), TimeUnit.NANOSECONDS));
+
+        try {
+            // 1. Phone numbers of the batch's customers in one query
+            Set<UUID> customerIds = new HashSet<>();
+            batch.forEach(event -> customerIds.add(event.getCustomerId()));
+            Map<UUID, String> phoneNumbers = new HashMap<>();
+            Iterable<Customer> customers = readYourWritesGuard.readAll(
+                    customerIds, () -> customerRepository.findAllById(customerIds));
+            customers.forEach(customer -> phoneNumbers.put(customer.getId(), customer.getPhoneNumber()));
+
+            // 2. A text per payment, customers that are gone get none
+            List<SmsMessage> messages = new ArrayList<>(batch.size());
+            for (PaymentCompletedEvent event : batch) {
+                String phoneNumber = phoneNumbers.get(event.getCustomerId());
+                if (phoneNumber == null) {
+                    failedCounter.increment();
+                    continue;
+                }
+                messages.add(new SmsMessage(phoneNumber, String.format("Payment of %s received", event.getAmount())));
+            }
+
+            // 3. Hand them to the sender
+            if (!messages.isEmpty()) {
+                try {
+                    smsSender.send(messages);
+                    sentCounter.increment(messages.size());
+                } catch (RuntimeException e) {
+                    failedCounter.increment(messages.size());
+                }
+            }
+        } catch (RuntimeException e) {
+            // losing texts is better than losing the consumer
+            failedCounter.increment(batch.size());
+        }
+    }
+
+    private static Counter smsCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("payment.notification.sms")
+                .description("Payment texts by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
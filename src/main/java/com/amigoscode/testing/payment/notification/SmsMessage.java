@@ -0,0 +1,28 @@
+package com.amigoscode.testing.payment.notification;
+
+public class SmsMessage {
+
+    private final String phoneNumber;
+    private final String text;
+
+    public SmsMessage(String phoneNumber, String text) {
+        this.phoneNumber = phoneNumber;
+        this.text = text;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return "SmsMessage{" +
+                "phoneNumber='" + phoneNumber + '\'' +
+                ", text='" + text + '\'' +
+                '}';
+    }
+}
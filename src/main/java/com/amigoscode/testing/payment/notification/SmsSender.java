@@ -0,0 +1,13 @@
+package com.amigoscode.testing.payment.notification;
+
+import java.util.List;
+
+/**
+ * Sends text messages, a batch at a time so a provider with a bulk endpoint can take
+ * them in one call. Called on the notification thread only, never while charging. A
+ * thrown exception counts the whole batch as failed, nothing is retried.
+ */
+public interface SmsSender {
+
+    void send(List<SmsMessage> messages);
+}
@@ -0,0 +1,127 @@
+package com.amigoscode.testing.payment.routing;
+
+import com.amigoscode.testing.payment.CardPaymentCharge;
+import com.amigoscode.testing.payment.CardPaymentCharger;
+import com.amigoscode.testing.payment.Currency;
+import com.amigoscode.testing.payment.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+
+/**
+ * Sends each charge to a CardPaymentCharger chosen by the currency of the amount. A
+ * currency can have several routes, each naming a charger bean, a weight and a limit on
+ * charges in flight. Charges are spread by weight. A route at its limit is skipped for
+ * the next one with room, and when every route is full the charge is rejected.
+ * <p>
+ * The routes for a currency are laid out once at startup as a wheel with one slot per
+ * unit of weight, indexed by currency ordinal. Picking a route is an array read and one
+ * random number, with no map lookup and no lock.
+ */
+@Primary
+@Service
+@EnableConfigurationProperties(ChargeRoutingProperties.class)
+public class CardPaymentChargerRegistry implements CardPaymentCharger {
+
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    // per Currency ordinal, empty when the currency has no routes
+    private final ChargeRoute[][] wheels = new ChargeRoute[CURRENCIES.length][];
+    private final List<ChargeRoute> routes = new ArrayList<>();
+    private final IntUnaryOperator randomIndex;
+
+    @Autowired
+    public CardPaymentChargerRegistry(ChargeRoutingProperties properties,
+                                      Map<String, CardPaymentCharger> chargers) {
+        this(properties.getRoutes(), chargers, bound -> ThreadLocalRandom.current().nextInt(bound), System::nanoTime);
+    }
+
+    CardPaymentChargerRegistry(Map<Currency, List<ChargeRoutingProperties.Route>> routeProperties,
+                               Map<String, CardPaymentCharger> chargers,
+                               IntUnaryOperator randomIndex,
+                               LongSupplier nanoTime) {
+        this.randomIndex = randomIndex;
+        for (Currency currency : CURRENCIES) {
+            List<ChargeRoute> currencyRoutes = new ArrayList<>();
+            for (ChargeRoutingProperties.Route route : routeProperties.getOrDefault(currency, List.of())) {
+                currencyRoutes.add(newRoute(currency, route, chargers, nanoTime));
+            }
+            routes.addAll(currencyRoutes);
+            wheels[currency.ordinal()] = wheel(currencyRoutes);
+        }
+    }
+
+    public boolean supports(Currency currency) {
+        return currency != null && wheels[currency.ordinal()].length > 0;
+    }
+
+    @Override
+    public CardPaymentCharge chargeCard(String cardSource, Money amount, String description) {
+        ChargeRoute[] wheel = wheels[amount.getCurrency().ordinal()];
+        if (wheel.length == 0)
+            throw new IllegalStateException(String.format("Currency [%s] not supported", amount.getCurrency()));
+
+        // 1. Pick a route by weight
+        int start = randomIndex.applyAsInt(wheel.length);
+
+        // 2. Walk on from there to the first route below its limit
+        for (int i = 0; i < wheel.length; i++) {
+            ChargeRoute route = wheel[(start + i) % wheel.length];
+            if (route.tryAcquire()) {
+                return route.charge(cardSource, amount, description);
+            }
+        }
+        throw new IllegalStateException(String.format(
+                "Cannot charge %s, every route is at its concurrency limit", amount.getCurrency()));
+    }
+
+    public List<ChargeRouteStats> getRouteStats() {
+        List<ChargeRouteStats> stats = new ArrayList<>(routes.size());
+        routes.forEach(route -> stats.add(route.stats()));
+        return stats;
+    }
+
+    private ChargeRoute newRoute(Currency currency,
+                                 ChargeRoutingProperties.Route route,
+                                 Map<String, CardPaymentCharger> chargers,
+                                 LongSupplier nanoTime) {
+        CardPaymentCharger charger = chargers.get(route.getCharger());
+        if (charger == null)
+            throw new IllegalStateException(String.format(
+                    "No CardPaymentCharger named [%s] for %s route, known chargers are %s",
+                    route.getCharger(), currency, chargers.keySet()));
+        if (route.getWeight() < 1 || route.getMaxConcurrency() < 1)
+            throw new IllegalStateException(String.format(
+                    "Route [%s] for %s needs a weight and max-concurrency of at least 1", route.getCharger(), currency));
+
+        return new ChargeRoute(currency, route.getCharger(), charger, route.getWeight(), route.getMaxConcurrency(), nanoTime);
+    }
+
+    // weights 60 and 40 give a wheel of 5 slots, 3 for one route and 2 for the other
+    private static ChargeRoute[] wheel(List<ChargeRoute> routes) {
+        int divisor = 0;
+        for (ChargeRoute route : routes) {
+            divisor = gcd(divisor, route.getWeight());
+        }
+
+        List<ChargeRoute> slots = new ArrayList<>();
+        for (ChargeRoute route : routes) {
+            for (int i = 0; i < route.getWeight() / divisor; i++) {
+                slots.add(route);
+            }
+        }
+        return slots.toArray(new ChargeRoute[0]);
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -0,0 +1,85 @@
+package com.amigoscode.testing.payment.routing;
+
+import com.amigoscode.testing.payment.CardPaymentCharge;
+import com.amigoscode.testing.payment.CardPaymentCharger;
+import com.amigoscode.testing.payment.Currency;
+import com.amigoscode.testing.payment.Money;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// One provider for one currency, with its own limit on charges in flight and its own latency figures
+class ChargeRoute {
+
+    private final Currency currency;
+    private final String chargerName;
+    private final CardPaymentCharger charger;
+    private final int weight;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final LongSupplier nanoTime;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+    ChargeRoute(Currency currency,
+                String chargerName,
+                CardPaymentCharger charger,
+                int weight,
+                int maxConcurrency,
+                LongSupplier nanoTime) {
+        this.currency = currency;
+        this.chargerName = chargerName;
+        this.charger = charger;
+        this.weight = weight;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+        this.nanoTime = nanoTime;
+    }
+
+    boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    // only after tryAcquire returned true, the permit is released here
+    CardPaymentCharge charge(String cardSource, Money amount, String description) {
+        long start = nanoTime.getAsLong();
+        boolean failed = true;
+        try {
+            CardPaymentCharge cardPaymentCharge = charger.chargeCard(cardSource, amount, description);
+            failed = false;
+            return cardPaymentCharge;
+        } finally {
+            long latency = nanoTime.getAsLong() - start;
+            calls.increment();
+            if (failed) {
+                failures.increment();
+            }
+            totalLatencyNanos.add(latency);
+            maxLatencyNanos.accumulate(latency);
+            permits.release();
+        }
+    }
+
+    int getWeight() {
+        return weight;
+    }
+
+    ChargeRouteStats stats() {
+        long calls = this.calls.sum();
+        return new ChargeRouteStats(
+                currency,
+                chargerName,
+                weight,
+                maxConcurrency,
+                maxConcurrency - permits.availablePermits(),
+                calls,
+                failures.sum(),
+                calls == 0 ? 0 : totalLatencyNanos.sum() / calls,
+                maxLatencyNanos.get());
+    }
+}
@@ -0,0 +1,87 @@
+package com.amigoscode.testing.payment.routing;
+
+import com.amigoscode.testing.payment.Currency;
+
+public class ChargeRouteStats {
+
+    private final Currency currency;
+    private final String charger;
+    private final int weight;
+    private final int maxConcurrency;
+    private final int inFlight;
+    private final long calls;
+    private final long failures;
+    private final long meanLatencyNanos;
+    private final long maxLatencyNanos;
+
+    public ChargeRouteStats(Currency currency,
+                            String charger,
+                            int weight,
+                            int maxConcurrency,
+                            int inFlight,
+                            long calls,
+                            long failures,
+                            long meanLatencyNanos,
+                            long maxLatencyNanos) {
+        this.currency = currency;
+        this.charger = charger;
+        this.weight = weight;
+        this.maxConcurrency = maxConcurrency;
+        this.inFlight = inFlight;
+        this.calls = calls;
+        this.failures = failures;
+        this.meanLatencyNanos = meanLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public String getCharger() {
+        return charger;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public long getMeanLatencyNanos() {
+        return meanLatencyNanos;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ChargeRouteStats{" +
+                "currency=" + currency +
+                ", charger='" + charger + '\'' +
+                ", weight=" + weight +
+                ", maxConcurrency=" + maxConcurrency +
+                ", inFlight=" + inFlight +
+                ", calls=" + calls +
+                ", failures=" + failures +
+                ", meanLatencyNanos=" + meanLatencyNanos +
+                ", maxLatencyNanos=" + maxLatencyNanos +
+                '}';
+    }
+}
@@ -0,0 +1,68 @@
+package com.amigoscode.testing.payment.routing;
+
+import com.amigoscode.testing.payment.Currency;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// payment.routing.routes.<CURRENCY>[i].charger / weight / max-concurrency
+@ConfigurationProperties(prefix = "payment.routing")
+public class ChargeRoutingProperties {
+
+    private Map<Currency, List<Route>> routes = new EnumMap<>(Currency.class);
+
+    public Map<Currency, List<Route>> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(Map<Currency, List<Route>> routes) {
+        this.routes = routes;
+    }
+
+    public static class Route {
+
+        // bean name of the CardPaymentCharger this route sends charges to
+        private String charger;
+
+        // share of the currency's charges, relative to the other routes for it
+        private int weight = 1;
+
+        // charges in flight on this route before it is skipped
+        private int maxConcurrency = 32;
+
+        public Route(String charger, int weight, int maxConcurrency) {
+            this.charger = charger;
+            this.weight = weight;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public Route() {
+        }
+
+        public String getCharger() {
+            return charger;
+        }
+
+        public void setCharger(String charger) {
+            this.charger = charger;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+    }
+}
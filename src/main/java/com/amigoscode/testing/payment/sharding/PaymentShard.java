@@ -0,0 +1,252 @@
+package com.amigoscode.testing.payment.sharding;
+
+import com.amigoscode.testing.payment.Currency;
+import com.amigoscode.testing.payment.Money;
+import com.amigoscode.testing.payment.Payment;
+import com.amigoscode.testing.payment.PaymentAggregateRow;
+import com.amigoscode.testing.payment.PaymentColumns;
+import com.amigoscode.testing.payment.PaymentSummary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * One of the databases payments are spread over, with the SQL run against its payment
+ * table. Ids are taken from the shard's sequence a block at a time and carry the shard
+ * index in their low {@link #SHARD_BITS} bits.
+ */
+public class PaymentShard {
+
+    static final int SHARD_BITS = 10;
+    static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+    // INCREMENT BY of payment_shard_id_sequence in payment-shard-schema.sql
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final String NEXT_ID_BLOCK = "SELECT NEXT VALUE FOR payment_shard_id_sequence";
+    private static final String INSERT =
+            "INSERT INTO payment (payment_id, customer_id, amount, currency, source, description, write_behind_key) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_BY_ID =
+            "SELECT payment_id, customer_id, amount, currency, source, description FROM payment WHERE payment_id = ?";
+    private static final String SELECT_PAGE =
+            "SELECT payment_id, amount, currency, description FROM payment " +
+                    "WHERE customer_id = ? ORDER BY payment_id DESC LIMIT ? OFFSET ?";
+    private static final String SELECT_PAGE_BEFORE =
+            "SELECT payment_id, amount, currency, description FROM payment " +
+                    "WHERE customer_id = ? AND payment_id < ? ORDER BY payment_id DESC LIMIT ? OFFSET ?";
+    private static final String AGGREGATE =
+            "SELECT customer_id, currency, COUNT(*), SUM(amount), MIN(amount), MAX(amount) " +
+                    "FROM payment GROUP BY customer_id, currency";
+    private static final String SELECT_WRITE_BEHIND_KEYS =
+            "SELECT write_behind_key FROM payment WHERE write_behind_key IN (%s)";
+
+    private final int index;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // the block of sequence values not handed out yet, nextId > lastId when it is used up
+    private long nextId = 1;
+    private long lastId;
+
+    PaymentShard(int index, DataSource dataSource) {
+        this.index = index;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    static int indexOf(long paymentId) {
+        return (int) (paymentId & (MAX_SHARDS - 1));
+    }
+
+    // all or none of the payments, in one jdbc batch
+    void insert(List<? extends Payment> payments) {
+        transactionTemplate.executeWithoutResult(status -> {
+            payments.forEach(payment -> payment.setPaymentId(nextPaymentId()));
+            jdbcTemplate.batchUpdate(INSERT, payments, payments.size(), (statement, payment) -> {
+                statement.setLong(1, payment.getPaymentId());
+                PaymentColumns.setCustomerId(statement, 2, payment.getCustomerId());
+                statement.setBigDecimal(3, BigDecimal.valueOf(payment.getAmountInMinorUnits(), Money.SCALE));
+                PaymentColumns.setCurrency(statement, 4, payment.getCurrency());
+                statement.setString(5, payment.getSource());
+                statement.setString(6, payment.getDescription());
+                PaymentColumns.setWriteBehindKey(statement, 7, payment.getWriteBehindKey());
+            });
+        });
+    }
+
+    Optional<Payment> findById(long paymentId) {
+        return jdbcTemplate.query(SELECT_BY_ID, (resultSet, row) -> payment(resultSet), paymentId)
+                .stream()
+                .findFirst();
+    }
+
+    List<PaymentSummary> findPage(UUID customerId, Long before, int limit, long offset) {
+        if (before == null) {
+            return jdbcTemplate.query(SELECT_PAGE, (resultSet, row) -> summary(resultSet),
+                    customerId, limit, offset);
+        }
+        return jdbcTemplate.query(SELECT_PAGE_BEFORE, (resultSet, row) -> summary(resultSet),
+                customerId, before, limit, offset);
+    }
+
+    List<PaymentAggregateRow> aggregateByCustomerAndCurrency() {
+        return jdbcTemplate.query(AGGREGATE, (resultSet, row) -> aggregateRow(resultSet));
+    }
+
+    List<UUID> findWriteBehindKeysIn(Collection<UUID> writeBehindKeys) {
+        if (writeBehindKeys.isEmpty()) {
+            return List.of();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(writeBehindKeys.size(), "?"));
+        return jdbcTemplate.query(String.format(SELECT_WRITE_BEHIND_KEYS, placeholders),
+                (resultSet, row) -> PaymentColumns.getWriteBehindKey(resultSet, 1),
+                writeBehindKeys.toArray());
+    }
+
+    private synchronized long nextPaymentId() {
+        if (nextId > lastId) {
+            nextId = jdbcTemplate.queryForObject(NEXT_ID_BLOCK, Long.class);
+            lastId = nextId + ID_BLOCK_SIZE - 1;
+        }
+        return (nextId++ << SHARD_BITS) | index;
+    }
+
+    private static Payment payment(ResultSet resultSet) throws SQLException {
+        Currency currency = PaymentColumns.getCurrency(resultSet, 4);
+        return new Payment(
+                resultSet.getLong(1),
+                PaymentColumns.getCustomerId(resultSet, 2),
+                Money.of(resultSet.getBigDecimal(3), currency),
+                resultSet.getString(5),
+                resultSet.getString(6));
+    }
+
+    private static PaymentSummary summary(ResultSet resultSet) throws SQLException {
+        Currency currency = PaymentColumns.getCurrency(resultSet, 3);
+        return new ShardPaymentSummary(
+                resultSet.getLong(1),
+                minorUnits(resultSet.getBigDecimal(2), currency),
+                currency,
+                resultSet.getString(4));
+    }
+
+    private static PaymentAggregateRow aggregateRow(ResultSet resultSet) throws SQLException {
+        Currency currency = PaymentColumns.getCurrency(resultSet, 2);
+        return new ShardPaymentAggregateRow(
+                PaymentColumns.getCustomerId(resultSet, 1),
+                currency,
+                resultSet.getLong(3),
+                minorUnits(resultSet.getBigDecimal(4), currency),
+                minorUnits(resultSet.getBigDecimal(5), currency),
+                minorUnits(resultSet.getBigDecimal(6), currency));
+    }
+
+    private static long minorUnits(BigDecimal amount, Currency currency) {
+        return Money.of(amount, currency).getMinorUnits();
+    }
+
+    private static class ShardPaymentSummary implements PaymentSummary {
+
+        private final Long paymentId;
+        private final long amount;
+        private final Currency currency;
+        private final String description;
+
+        ShardPaymentSummary(Long paymentId, long amount, Currency currency, String description) {
+            this.paymentId = paymentId;
+            this.amount = amount;
+            this.currency = currency;
+            this.description = description;
+        }
+
+        @Override
+        public Long getPaymentId() {
+            return paymentId;
+        }
+
+        @Override
+        public long getAmount() {
+            return amount;
+        }
+
+        @Override
+        public Currency getCurrency() {
+            return currency;
+        }
+
+        @Override
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private static class ShardPaymentAggregateRow implements PaymentAggregateRow {
+
+        private final UUID customerId;
+        private final Currency currency;
+        private final long count;
+        private final long total;
+        private final long min;
+        private final long max;
+
+        ShardPaymentAggregateRow(UUID customerId, Currency currency, long count, long total, long min, long max) {
+            this.customerId = customerId;
+            this.currency = currency;
+            this.count = count;
+            this.total = total;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public UUID getCustomerId() {
+            return customerId;
+        }
+
+        @Override
+        public Currency getCurrency() {
+            return currency;
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public long getTotal() {
+            return total;
+        }
+
+        @Override
+        public long getMin() {
+            return min;
+        }
+
+        @Override
+        public long getMax() {
+            return max;
+        }
+    }
+}
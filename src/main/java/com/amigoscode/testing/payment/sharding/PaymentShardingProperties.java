@@ -0,0 +1,95 @@
+package com.amigoscode.testing.payment.sharding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// payment.sharding.enabled / initialize-schema / shards[i].url / username / password / maximum-pool-size
+@ConfigurationProperties(prefix = "payment.sharding")
+public class PaymentShardingProperties {
+
+    private boolean enabled;
+
+    // create the payment table and id sequence on every shard that doesn't have them
+    private boolean initializeSchema = true;
+
+    // in order: a customer's shard is picked by index, so shards are only ever added at the end
+    private List<Shard> shards = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isInitializeSchema() {
+        return initializeSchema;
+    }
+
+    public void setInitializeSchema(boolean initializeSchema) {
+        this.initializeSchema = initializeSchema;
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public void setShards(List<Shard> shards) {
+        this.shards = shards;
+    }
+
+    public static class Shard {
+
+        private String url;
+
+        private String username = "sa";
+
+        private String password = "";
+
+        // connections in this shard's own pool
+        private int maximumPoolSize = 10;
+
+        public Shard(String url, int maximumPoolSize) {
+            this.url = url;
+            this.maximumPoolSize = maximumPoolSize;
+        }
+
+        public Shard() {
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.amigoscode.testing.payment.sharding;
+
+import com.amigoscode.testing.cache.CacheNames;
+import com.amigoscode.testing.concurrent.VirtualThreads;
+import com.amigoscode.testing.payment.Payment;
+import com.amigoscode.testing.payment.PaymentAggregateRow;
+import com.amigoscode.testing.payment.PaymentStore;
+import com.amigoscode.testing.payment.PaymentSummary;
+import com.amigoscode.testing.tracing.TraceContext;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Spreads payments over several databases by customer: all payments of a customer are on
+ * the shard picked by a hash of its customerId, and every shard has its own connection
+ * pool. A customer's payment history is read from its shard alone, and a payment id leads
+ * back to its shard by the index in its low bits. Queries over all customers, such as the
+ * aggregates rebuild and the export, run on every shard in parallel through
+ * {@link #scatter(Function)} and are combined by the caller.
+ * <p>
+ * Saving several payments is atomic per shard only. When one shard fails, the payments
+ * for the others stay saved, and saving them again stores them twice. The shard count
+ * can't change once payments are stored, as the hash would move customers between shards.
+ */
+@Primary
+@Component
+@ConditionalOnProperty(name = "payment.sharding.enabled", havingValue = "true")
+@EnableConfigurationProperties(PaymentShardingProperties.class)
+public class ShardedPaymentStore implements PaymentStore {
+
+    private static final String SCHEMA = "payment-shard-schema.sql";
+
+    private final List<PaymentShard> shards = new ArrayList<>();
+    private final List<DataSource> dataSources;
+    private final ExecutorService executor;
+
+    @Autowired
+    public ShardedPaymentStore(PaymentShardingProperties properties) {
+        this(pools(properties.getShards()), properties.isInitializeSchema());
+    }
+
+    ShardedPaymentStore(List<DataSource> dataSources, boolean initializeSchema) {
+        if (dataSources.isEmpty() || dataSources.size() > PaymentShard.MAX_SHARDS)
+            throw new IllegalStateException(String.format(
+                    "Payment sharding needs between 1 and %s shards, got %s", PaymentShard.MAX_SHARDS, dataSources.size()));
+
+        this.dataSources = dataSources;
+        for (int i = 0; i < dataSources.size(); i++) {
+            if (initializeSchema) {
+                new ResourceDatabasePopulator(new ClassPathResource(SCHEMA)).execute(dataSources.get(i));
+            }
+            shards.add(new PaymentShard(i, dataSources.get(i)));
+        }
+        this.executor = Executors.newFixedThreadPool(
+                dataSources.size(), VirtualThreads.threadFactory("payment-shard-", false));
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        executor.shutdownNow();
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof Closeable) {
+                ((Closeable) dataSource).close();
+            }
+        }
+    }
+
+    public List<PaymentShard> getShards() {
+        return shards;
+    }
+
+    public PaymentShard shardOf(UUID customerId) {
+        if (customerId == null)
+            throw new IllegalStateException("Payment has no customer id, it can't be given a shard");
+        return shards.get(Math.floorMod(customerId.hashCode(), shards.size()));
+    }
+
+    @Override
+    public <S extends Payment> S save(S payment) {
+        shardOf(payment.getCustomerId()).insert(List.of(payment));
+        return payment;
+    }
+
+    @Override
+    public <S extends Payment> Iterable<S> saveAll(Iterable<S> payments) {
+        List<List<S>> paymentsByShard = new ArrayList<>(shards.size());
+        shards.forEach(shard -> paymentsByShard.add(new ArrayList<>()));
+        payments.forEach(payment -> paymentsByShard.get(shardOf(payment.getCustomerId()).getIndex()).add(payment));
+
+        scatter(shard -> {
+            List<S> shardPayments = paymentsByShard.get(shard.getIndex());
+            if (!shardPayments.isEmpty()) {
+                shard.insert(shardPayments);
+            }
+            return null;
+        });
+        return payments;
+    }
+
+    @Override
+    @Cacheable(cacheNames = CacheNames.PAYMENTS, unless = "#result == null")
+    public Optional<Payment> findById(Long paymentId) {
+        int index = PaymentShard.indexOf(paymentId);
+        if (index >= shards.size()) {
+            return Optional.empty();
+        }
+        return shards.get(index).findById(paymentId);
+    }
+
+    @Override
+    public List<PaymentSummary> findByCustomerIdOrderByPaymentIdDesc(UUID customerId, Pageable pageable) {
+        return shardOf(customerId).findPage(customerId, null, pageable.getPageSize(), pageable.getOffset());
+    }
+
+    @Override
+    public List<PaymentSummary> findByCustomerIdAndPaymentIdLessThanOrderByPaymentIdDesc(UUID customerId,
+                                                                                          Long paymentId,
+                                                                                          Pageable pageable) {
+        return shardOf(customerId).findPage(customerId, paymentId, pageable.getPageSize(), pageable.getOffset());
+    }
+
+    // a customer is on one shard only, so the rows of different shards never need merging
+    @Override
+    public List<PaymentAggregateRow> aggregateByCustomerAndCurrency() {
+        List<PaymentAggregateRow> rows = new ArrayList<>();
+        scatter(PaymentShard::aggregateByCustomerAndCurrency).forEach(rows::addAll);
+        return rows;
+    }
+
+    // only asked when replaying the write-behind journal, so every shard is searched
+    @Override
+    public List<UUID> findWriteBehindKeysIn(Collection<UUID> writeBehindKeys) {
+        List<UUID> saved = new ArrayList<>();
+        scatter(shard -> shard.findWriteBehindKeysIn(writeBehindKeys)).forEach(saved::addAll);
+        return saved;
+    }
+
+    /**
+     * Runs the query on every shard at once and returns the results in shard order. Waits
+     * for all shards even when one fails, then throws the first failure.
+     */
+    public <T> List<T> scatter(Function<PaymentShard, T> query) {
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (PaymentShard shard : shards) {
+            futures.add(executor.submit(TraceContext.wrap(() -> query.apply(shard))));
+        }
+
+        List<T> results = new ArrayList<>(shards.size());
+        RuntimeException failure = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for payment shards", e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause()
+                            : new IllegalStateException(String.format("Payment shard [%s] failed", i), e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    private static List<DataSource> pools(List<PaymentShardingProperties.Shard> shards) {
+        List<DataSource> pools = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("payment-shard-" + i);
+            config.setJdbcUrl(shards.get(i).getUrl());
+            config.setUsername(shards.get(i).getUsername());
+            config.setPassword(shards.get(i).getPassword());
+            config.setMaximumPoolSize(shards.get(i).getMaximumPoolSize());
+            pools.add(new HikariDataSource(config));
+        }
+        return pools;
+    }
+}
@@ -0,0 +1,69 @@
+package com.amigoscode.testing.payment.stripe;
+
+import com.amigoscode.testing.concurrent.VirtualThreads;
+import com.amigoscode.testing.payment.AsyncCardPaymentCharger;
+import com.amigoscode.testing.payment.CardPaymentCharge;
+import com.amigoscode.testing.payment.CardPaymentCharger;
+import com.amigoscode.testing.payment.Money;
+import com.amigoscode.testing.tracing.TraceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the blocking stripe call on its own bounded pool so request threads are
+ * released while the charge is in flight. Once the pool and its queue are full
+ * new charges are rejected straight away instead of piling up. With virtual threads
+ * enabled the pool threads are virtual, so a much larger pool-size is affordable.
+ */
+@Service
+public class AsyncStripeService implements AsyncCardPaymentCharger {
+
+    private final CardPaymentCharger cardPaymentCharger;
+    private final ThreadPoolExecutor executor;
+    // runs each charge, and the stages chained on it, in the trace of the caller
+    private final Executor tracingExecutor;
+
+    @Autowired
+    public AsyncStripeService(CardPaymentCharger cardPaymentCharger,
+                              @Value("${payment.async.pool-size:16}") int poolSize,
+                              @Value("${payment.async.queue-capacity:100}") int queueCapacity,
+                              @Value("${app.virtual-threads.enabled:false}") boolean virtualThreads) {
+        this.cardPaymentCharger = cardPaymentCharger;
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                VirtualThreads.threadFactory("stripe-charge-", virtualThreads),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.tracingExecutor = TraceContext.wrap(executor);
+    }
+
+    @Override
+    public CompletableFuture<CardPaymentCharge> chargeCardAsync(String cardSource,
+                                                                Money amount,
+                                                                String description) {
+        try {
+            return CompletableFuture.supplyAsync(
+                    () -> cardPaymentCharger.chargeCard(cardSource, amount, description),
+                    tracingExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Cannot make stripe charge, too many charges in flight", e));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
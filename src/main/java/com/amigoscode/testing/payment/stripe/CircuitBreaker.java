@@ -0,0 +1,159 @@
+package com.amigoscode.testing.payment.stripe;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Sliding window over the outcomes of the last {@code windowSize} calls to the payment
+ * provider. Opens once at least {@code minimumCalls} are recorded and the failure rate
+ * reaches the threshold. After {@code openDuration} a single probe call is let through
+ * (half open): success closes the circuit, failure opens it for another round.
+ * <p>
+ * Latencies of successful calls go into a log2 bucketed histogram over the same window,
+ * which is what the adaptive timeout is derived from.
+ */
+class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final int BUCKETS = 64;
+    private static final byte FAILED = -1;
+
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final LongSupplier nanoTime;
+
+    // per slot: the latency bucket of a successful call, or FAILED
+    private final byte[] window;
+    private final long[] latencyBuckets = new long[BUCKETS];
+    private int next;
+    private int calls;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    CircuitBreaker(int windowSize,
+                   int minimumCalls,
+                   double failureRateThreshold,
+                   Duration openDuration,
+                   LongSupplier nanoTime) {
+        this.window = new byte[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    synchronized boolean tryAcquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nanoTime.getAsLong() - openedAt < openDurationNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess(long latencyNanos) {
+        if (state == State.HALF_OPEN) {
+            close();
+        }
+        record((byte) (63 - Long.numberOfLeadingZeros(Math.max(1, latencyNanos))));
+    }
+
+    synchronized void onFailure() {
+        record(FAILED);
+        if (state == State.HALF_OPEN
+                || (state == State.CLOSED && calls >= minimumCalls && failureRate() >= failureRateThreshold)) {
+            open();
+        }
+    }
+
+    // Hands back a half open probe that ended without an outcome, e.g. rejected locally
+    synchronized void onIgnored() {
+        probeInFlight = false;
+    }
+
+    /**
+     * Upper bound of the histogram bucket holding the given percentile of successful call
+     * latencies in the window, or -1 when there are none yet.
+     */
+    synchronized long latencyPercentileNanos(double percentile) {
+        long successes = calls - failures;
+        if (successes == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(percentile * successes);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += latencyBuckets[bucket];
+            if (seen >= rank) {
+                return bucket >= 62 ? Long.MAX_VALUE : 1L << (bucket + 1);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    synchronized double failureRate() {
+        return calls == 0 ? 0 : (double) failures / calls;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    private void record(byte outcome) {
+        if (calls == window.length) {
+            forget(window[next]);
+        } else {
+            calls++;
+        }
+        window[next] = outcome;
+        if (outcome == FAILED) {
+            failures++;
+        } else {
+            latencyBuckets[outcome]++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    private void forget(byte outcome) {
+        if (outcome == FAILED) {
+            failures--;
+        } else {
+            latencyBuckets[outcome]--;
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoTime.getAsLong();
+        probeInFlight = false;
+    }
+
+    // start from a clean window so the failures that opened the circuit don't reopen it
+    private void close() {
+        state = State.CLOSED;
+        probeInFlight = false;
+        Arrays.fill(latencyBuckets, 0);
+        next = 0;
+        calls = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,142 @@
+package com.amigoscode.testing.payment.stripe;
+
+import com.amigoscode.testing.concurrent.VirtualThreads;
+import com.amigoscode.testing.payment.CardPaymentCharge;
+import com.amigoscode.testing.payment.CardPaymentCharger;
+import com.amigoscode.testing.payment.Money;
+import com.amigoscode.testing.tracing.TraceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * Guards every stripe call with a circuit breaker and a timeout, so a slow or failing
+ * provider costs callers a fast IllegalStateException instead of a blocked thread.
+ * <p>
+ * The timeout adapts to the provider: it is a multiple of the recent p99 latency of
+ * successful calls, kept between the configured min and max. Calls run on a bounded
+ * pool so the caller can stop waiting; when every pool thread is stuck on stripe new
+ * calls are rejected rather than queued.
+ */
+@Service
+public class CircuitBreakingStripeService implements CardPaymentCharger {
+
+    private final CardPaymentCharger cardPaymentCharger;
+    private final CircuitBreaker circuitBreaker;
+    private final ExecutorService executor;
+    private final long minTimeoutNanos;
+    private final long maxTimeoutNanos;
+    private final double timeoutMultiplier;
+    private final LongSupplier nanoTime;
+
+    @Autowired
+    public CircuitBreakingStripeService(StripeService stripeService,
+                                        @Value("${payment.stripe.pool-size:32}") int poolSize,
+                                        @Value("${payment.stripe.timeout.min:500ms}") Duration minTimeout,
+                                        @Value("${payment.stripe.timeout.max:10s}") Duration maxTimeout,
+                                        @Value("${payment.stripe.timeout.p99-multiplier:3}") double timeoutMultiplier,
+                                        @Value("${payment.stripe.circuit-breaker.window-size:100}") int windowSize,
+                                        @Value("${payment.stripe.circuit-breaker.minimum-calls:20}") int minimumCalls,
+                                        @Value("${payment.stripe.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                                        @Value("${payment.stripe.circuit-breaker.open-duration:30s}") Duration openDuration,
+                                        @Value("${app.virtual-threads.enabled:false}") boolean virtualThreads) {
+        this(stripeService,
+                new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold, openDuration, System::nanoTime),
+                new ThreadPoolExecutor(
+                        poolSize,
+                        poolSize,
+                        60, TimeUnit.SECONDS,
+                        new SynchronousQueue<>(),
+                        VirtualThreads.threadFactory("stripe-call-", virtualThreads),
+                        new ThreadPoolExecutor.AbortPolicy()),
+                minTimeout,
+                maxTimeout,
+                timeoutMultiplier,
+                System::nanoTime);
+    }
+
+    CircuitBreakingStripeService(CardPaymentCharger cardPaymentCharger,
+                                 CircuitBreaker circuitBreaker,
+                                 ExecutorService executor,
+                                 Duration minTimeout,
+                                 Duration maxTimeout,
+                                 double timeoutMultiplier,
+                                 LongSupplier nanoTime) {
+        this.cardPaymentCharger = cardPaymentCharger;
+        this.circuitBreaker = circuitBreaker;
+        this.executor = executor;
+        this.minTimeoutNanos = minTimeout.toNanos();
+        this.maxTimeoutNanos = maxTimeout.toNanos();
+        this.timeoutMultiplier = timeoutMultiplier;
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public CardPaymentCharge chargeCard(String cardSource,
+                                        Money amount,
+                                        String description) {
+        // 1. Fail fast while the provider is known to be down
+        if (!circuitBreaker.tryAcquirePermission())
+            throw new IllegalStateException("Cannot make stripe charge, circuit is open");
+
+        // 2. Hand the blocking call to the pool so we can stop waiting for it
+        Future<CardPaymentCharge> charge;
+        try {
+            charge = executor.submit(TraceContext.wrap(() -> cardPaymentCharger.chargeCard(cardSource, amount, description)));
+        } catch (RejectedExecutionException e) {
+            circuitBreaker.onIgnored();
+            throw new IllegalStateException("Cannot make stripe charge, too many charges in flight", e);
+        }
+
+        // 3. Wait at most the adaptive timeout and record the outcome
+        long timeoutNanos = timeoutNanos();
+        long start = nanoTime.getAsLong();
+        try {
+            CardPaymentCharge cardPaymentCharge = charge.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            circuitBreaker.onSuccess(nanoTime.getAsLong() - start);
+            return cardPaymentCharge;
+        } catch (TimeoutException e) {
+            charge.cancel(true);
+            circuitBreaker.onFailure();
+            throw new IllegalStateException(String.format(
+                    "Cannot make stripe charge, no answer within %d ms", TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+        } catch (ExecutionException e) {
+            circuitBreaker.onFailure();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Cannot make stripe charge", e.getCause());
+        } catch (InterruptedException e) {
+            charge.cancel(true);
+            circuitBreaker.onIgnored();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cannot make stripe charge, interrupted", e);
+        }
+    }
+
+    long timeoutNanos() {
+        long p99 = circuitBreaker.latencyPercentileNanos(0.99);
+        if (p99 < 0) {
+            return maxTimeoutNanos;
+        }
+        long timeout = (long) Math.min(maxTimeoutNanos, p99 * timeoutMultiplier);
+        return Math.max(minTimeoutNanos, timeout);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -2,16 +2,18 @@ package com.amigoscode.testing.payment.stripe;
 
 import com.amigoscode.testing.payment.CardPaymentCharge;
 import com.amigoscode.testing.payment.CardPaymentCharger;
-import com.amigoscode.testing.payment.Currency;
+import com.amigoscode.testing.payment.Money;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Charge;
 import com.stripe.net.RequestOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class StripeService implements CardPaymentCharger {
@@ -21,28 +23,45 @@ public class StripeService implements CardPaymentCharger {
             .build();
 
     private final StripeApi stripeApi;
+    private final Timer successTimer;
+    private final Timer failureTimer;
 
     @Autowired
-    public StripeService(StripeApi stripeApi) {
+    public StripeService(StripeApi stripeApi, MeterRegistry meterRegistry) {
         this.stripeApi = stripeApi;
+        this.successTimer = createTimer(meterRegistry, "success");
+        this.failureTimer = createTimer(meterRegistry, "failure");
     }
 
     @Override
     public CardPaymentCharge chargeCard(String cardSource,
-                                        BigDecimal amount,
-                                        Currency currency,
+                                        Money amount,
                                         String description) {
+        // stripe takes the amount in minor units
         Map<String, Object> params = new HashMap<>();
-        params.put("amount", amount);
-        params.put("currency", currency);
+        params.put("amount", amount.getMinorUnits());
+        params.put("currency", amount.getCurrency());
         params.put("source", cardSource);
         params.put("description", description);
 
+        long start = System.nanoTime();
+        boolean paid = false;
         try {
             Charge charge = stripeApi.create(params, requestOptions);
-            return new CardPaymentCharge(charge.getPaid());
+            paid = charge.getPaid();
+            return new CardPaymentCharge(paid);
         } catch (StripeException e) {
             throw new IllegalStateException("Cannot make stripe charge", e);
+        } finally {
+            (paid ? successTimer : failureTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
+
+    private static Timer createTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("stripe.charge.create")
+                .description("Round trip of creating a charge with stripe")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 }
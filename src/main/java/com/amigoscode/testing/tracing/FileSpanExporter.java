@@ -0,0 +1,139 @@
+package com.amigoscode.testing.tracing;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Appends spans to a local file, one JSON object per line, with the OpenTelemetry field
+ * names (traceId, spanId, parentSpanId, startTimeUnixNano, ...).
+ * <p>
+ * Ending a span only offers it to a bounded queue, a background thread does the JSON and
+ * the file writes. When the writer falls behind, spans that don't fit in the queue are
+ * dropped and counted rather than slowing down the request.
+ */
+public class FileSpanExporter implements SpanExporter {
+
+    private static final int BATCH_SIZE = 512;
+
+    private final Path file;
+    private final BlockingQueue<Span> pending;
+    private final LongAdder dropped = new LongAdder();
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private volatile boolean running;
+    private Writer out;
+    private Thread writer;
+
+    public FileSpanExporter(Path file, int queueCapacity) {
+        this.file = file;
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    public void start() throws IOException {
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        out = Files.newBufferedWriter(
+                file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        running = true;
+        writer = new Thread(this::writeSpans, "span-exporter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void export(Span span) {
+        if (!pending.offer(span)) {
+            dropped.increment();
+        }
+    }
+
+    public long getDroppedSpans() {
+        return dropped.sum();
+    }
+
+    // Writes what is queued, then closes the file
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        // no interrupt, it would close the file channel under a write in progress
+        if (writer != null) {
+            writer.join();
+        }
+        if (out != null) {
+            List<Span> batch = new ArrayList<>(BATCH_SIZE);
+            while (pending.drainTo(batch, BATCH_SIZE) > 0) {
+                write(batch);
+                batch.clear();
+            }
+            out.close();
+        }
+    }
+
+    private void writeSpans() {
+        List<Span> batch = new ArrayList<>(BATCH_SIZE);
+        while (running) {
+            try {
+                Span first = pending.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, BATCH_SIZE - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                // losing spans is better than losing the writer
+                dropped.add(batch.size());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Span> batch) throws IOException {
+        for (Span span : batch) {
+            JsonGenerator json = jsonFactory.createGenerator(out);
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.writeStartObject();
+            json.writeStringField("traceId", span.getTraceId());
+            json.writeStringField("spanId", span.getSpanId());
+            if (span.getParentSpanId() != null) {
+                json.writeStringField("parentSpanId", span.getParentSpanId());
+            }
+            json.writeStringField("name", span.getName());
+            json.writeNumberField("startTimeUnixNano", span.getStartEpochNanos());
+            json.writeNumberField("endTimeUnixNano", span.getEndEpochNanos());
+            json.writeStringField("status", span.getError() == null ? "OK" : "ERROR");
+            if (span.getError() != null) {
+                json.writeStringField("error", span.getError());
+            }
+            if (!span.getAttributes().isEmpty()) {
+                json.writeObjectFieldStart("attributes");
+                for (Map.Entry<String, Object> attribute : span.getAttributes().entrySet()) {
+                    json.writeStringField(attribute.getKey(), String.valueOf(attribute.getValue()));
+                }
+                json.writeEndObject();
+            }
+            json.writeEndObject();
+            json.close();
+            out.write('\n');
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,150 @@
+package com.amigoscode.testing.tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A timed operation within a trace, current on its thread from {@link Tracer#startSpan}
+ * until {@link #end()}. Spans of traces that were not sampled record nothing, so callers
+ * can always set attributes and end them without checking.
+ */
+public final class Span {
+
+    static final Span NOOP = new Span(null, null, null, 0, null, 0, 0);
+
+    private final Tracer tracer;
+    private final SpanContext context;
+    private final SpanContext previous;
+    private final long parentSpanId;
+    private final long startEpochNanos;
+    private final long startNanoTime;
+    private String name;
+    private Map<String, Object> attributes;
+    private String error;
+    private boolean detached;
+    private long durationNanos = -1;
+
+    Span(Tracer tracer,
+         SpanContext context,
+         SpanContext previous,
+         long parentSpanId,
+         String name,
+         long startEpochNanos,
+         long startNanoTime) {
+        this.tracer = tracer;
+        this.context = context;
+        this.previous = previous;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.startEpochNanos = startEpochNanos;
+        this.startNanoTime = startNanoTime;
+    }
+
+    public boolean isRecording() {
+        return tracer != null && context.isSampled();
+    }
+
+    public Span setName(String name) {
+        if (isRecording()) {
+            this.name = name;
+        }
+        return this;
+    }
+
+    public Span setAttribute(String key, Object value) {
+        if (isRecording()) {
+            if (attributes == null) {
+                attributes = new LinkedHashMap<>();
+            }
+            attributes.put(key, value);
+        }
+        return this;
+    }
+
+    public Span recordError(Throwable throwable) {
+        if (isRecording()) {
+            error = throwable.getClass().getSimpleName() + ": " + throwable.getMessage();
+        }
+        return this;
+    }
+
+    /**
+     * Ends the span, makes its parent current again and hands the span to the exporter.
+     * Only the first call has any effect.
+     */
+    public void end() {
+        if (tracer == null || durationNanos >= 0) {
+            return;
+        }
+        if (!detached) {
+            TraceContext.set(previous);
+        }
+        if (!context.isSampled()) {
+            durationNanos = 0;
+            return;
+        }
+        durationNanos = System.nanoTime() - startNanoTime;
+        tracer.export(this);
+    }
+
+    /**
+     * Makes the parent current again on this thread while the span stays open, for a span
+     * that is ended on another thread, such as a request completing asynchronously.
+     */
+    void detach() {
+        if (tracer != null && !detached) {
+            detached = true;
+            TraceContext.set(previous);
+        }
+    }
+
+    public SpanContext getContext() {
+        return context;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTraceId() {
+        return context.getTraceId();
+    }
+
+    public String getSpanId() {
+        return context.getSpanId();
+    }
+
+    // null for the root span of a trace
+    public String getParentSpanId() {
+        return parentSpanId == 0 ? null : SpanContext.hex(parentSpanId);
+    }
+
+    public long getStartEpochNanos() {
+        return startEpochNanos;
+    }
+
+    public long getEndEpochNanos() {
+        return startEpochNanos + durationNanos;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public Map<String, Object> getAttributes() {
+        return attributes == null ? Collections.emptyMap() : Collections.unmodifiableMap(attributes);
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        if (context == null) {
+            return "noop";
+        }
+        return String.format("%s %s/%s %dns", name, getTraceId(), getSpanId(), durationNanos);
+    }
+}
@@ -0,0 +1,107 @@
+package com.amigoscode.testing.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Trace id, span id and sampled flag of a span, laid out as in the W3C trace context
+ * spec used by OpenTelemetry: a 128 bit trace id, a 64 bit span id, and a
+ * {@code traceparent} header of the form {@code 00-<trace id>-<span id>-<flags>}.
+ */
+public final class SpanContext {
+
+    public static final String TRACEPARENT = "traceparent";
+
+    private static final int TRACEPARENT_LENGTH = 55;
+
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long spanId;
+    private final boolean sampled;
+
+    SpanContext(long traceIdHigh, long traceIdLow, long spanId, boolean sampled) {
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = spanId;
+        this.sampled = sampled;
+    }
+
+    static SpanContext newRoot(boolean sampled, long traceIdHigh, long traceIdLow) {
+        return new SpanContext(traceIdHigh, traceIdLow, randomNonZero(), sampled);
+    }
+
+    SpanContext newChild() {
+        return new SpanContext(traceIdHigh, traceIdLow, randomNonZero(), sampled);
+    }
+
+    /**
+     * The context carried by a {@code traceparent} header, or null when the header is
+     * missing or malformed so the caller starts a new trace.
+     */
+    public static SpanContext fromTraceparent(String traceparent) {
+        if (traceparent == null
+                || traceparent.length() != TRACEPARENT_LENGTH
+                || !traceparent.startsWith("00-")
+                || traceparent.charAt(35) != '-'
+                || traceparent.charAt(52) != '-') {
+            return null;
+        }
+        try {
+            long traceIdHigh = Long.parseUnsignedLong(traceparent.substring(3, 19), 16);
+            long traceIdLow = Long.parseUnsignedLong(traceparent.substring(19, 35), 16);
+            long spanId = Long.parseUnsignedLong(traceparent.substring(36, 52), 16);
+            int flags = Integer.parseInt(traceparent.substring(53, 55), 16);
+            if ((traceIdHigh == 0 && traceIdLow == 0) || spanId == 0) {
+                return null;
+            }
+            return new SpanContext(traceIdHigh, traceIdLow, spanId, (flags & 1) == 1);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public String toTraceparent() {
+        return "00-" + getTraceId() + "-" + getSpanId() + (sampled ? "-01" : "-00");
+    }
+
+    public String getTraceId() {
+        return hex(traceIdHigh) + hex(traceIdLow);
+    }
+
+    public String getSpanId() {
+        return hex(spanId);
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    long getTraceIdHigh() {
+        return traceIdHigh;
+    }
+
+    long getTraceIdLow() {
+        return traceIdLow;
+    }
+
+    long getSpanIdValue() {
+        return spanId;
+    }
+
+    static long randomNonZero() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    static String hex(long value) {
+        String hex = Long.toHexString(value);
+        return hex.length() == 16 ? hex : "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    @Override
+    public String toString() {
+        return toTraceparent();
+    }
+}
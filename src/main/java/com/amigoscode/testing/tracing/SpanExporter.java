@@ -0,0 +1,10 @@
+package com.amigoscode.testing.tracing;
+
+/**
+ * Receives every sampled span once it has ended. Called on the thread that ended the
+ * span, so implementations must be quick and must not throw.
+ */
+public interface SpanExporter {
+
+    void export(Span span);
+}
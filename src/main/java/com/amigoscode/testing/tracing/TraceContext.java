@@ -0,0 +1,69 @@
+package com.amigoscode.testing.tracing;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * The span context current on this thread. Work handed to another thread only sees it
+ * when wrapped here, so spans started on a pool thread join the trace that submitted
+ * the work instead of starting a new one.
+ */
+public final class TraceContext {
+
+    private static final ThreadLocal<SpanContext> CURRENT = new ThreadLocal<>();
+
+    private TraceContext() {
+    }
+
+    public static SpanContext current() {
+        return CURRENT.get();
+    }
+
+    static void set(SpanContext context) {
+        if (context == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(context);
+        }
+    }
+
+    public static Runnable wrap(Runnable runnable) {
+        SpanContext context = CURRENT.get();
+        if (context == null) {
+            return runnable;
+        }
+        return () -> {
+            SpanContext previous = CURRENT.get();
+            CURRENT.set(context);
+            try {
+                runnable.run();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    public static <T> Callable<T> wrap(Callable<T> callable) {
+        SpanContext context = CURRENT.get();
+        if (context == null) {
+            return callable;
+        }
+        return () -> {
+            SpanContext previous = CURRENT.get();
+            CURRENT.set(context);
+            try {
+                return callable.call();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    /**
+     * Executor that runs each task in the context current when the task was submitted.
+     * Use it for CompletableFuture stages so the dependent stages run in it too.
+     */
+    public static Executor wrap(Executor executor) {
+        return runnable -> executor.execute(wrap(runnable));
+    }
+}
@@ -0,0 +1,103 @@
+package com.amigoscode.testing.tracing;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Starts spans and decides which traces are sampled.
+ * <p>
+ * The decision is taken once, when a trace starts, and every span in the trace follows
+ * it, including spans on other threads and in other services that receive the
+ * traceparent header. A new trace is sampled when its trace id falls in the lowest
+ * sample-ratio of the id range, the same rule as OpenTelemetry's ratio sampler, so
+ * services with the same ratio keep the same traces. Spans of a trace that was not
+ * sampled are not timed or exported, and below its root they are a shared no-op span,
+ * so an unsampled request costs a few thread local reads.
+ */
+@Component
+public class Tracer {
+
+    private final SpanExporter spanExporter;
+    private final boolean enabled;
+    private final double sampleRatio;
+    private final long sampleThreshold;
+    // wall clock at nanoTime zero, so span start times cost one nanoTime read
+    private final long epochOffsetNanos;
+
+    @Autowired
+    public Tracer(SpanExporter spanExporter,
+                  @Value("${tracing.enabled:true}") boolean enabled,
+                  @Value("${tracing.sampler.ratio:0.01}") double sampleRatio) {
+        if (sampleRatio < 0 || sampleRatio > 1)
+            throw new IllegalStateException(String.format(
+                    "Sample ratio [%s] must be between 0 and 1", sampleRatio));
+
+        this.spanExporter = spanExporter;
+        this.enabled = enabled;
+        this.sampleRatio = sampleRatio;
+        this.sampleThreshold = (long) (sampleRatio * Long.MAX_VALUE);
+        this.epochOffsetNanos = System.currentTimeMillis() * 1_000_000 - System.nanoTime();
+    }
+
+    /**
+     * Starts a span as a child of the span current on this thread, or as the root of a new
+     * trace when there is none, and makes it current until it ends.
+     */
+    public Span startSpan(String name) {
+        if (!enabled) {
+            return Span.NOOP;
+        }
+        SpanContext parent = TraceContext.current();
+        if (parent == null) {
+            return startRootSpan(name, null);
+        }
+        if (!parent.isSampled()) {
+            return Span.NOOP;
+        }
+        return start(name, parent.newChild(), parent, parent.getSpanIdValue());
+    }
+
+    /**
+     * Starts the first span of this service in a trace: a child of the remote parent taken
+     * from a traceparent header, keeping its sampling decision, or a new trace when the
+     * remote parent is null.
+     */
+    public Span startRootSpan(String name, SpanContext remoteParent) {
+        if (!enabled) {
+            return Span.NOOP;
+        }
+        SpanContext previous = TraceContext.current();
+        if (remoteParent != null) {
+            return start(name, remoteParent.newChild(), previous, remoteParent.getSpanIdValue());
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long traceIdHigh = random.nextLong();
+        long traceIdLow = random.nextLong();
+        return start(name, SpanContext.newRoot(isSampled(traceIdLow), traceIdHigh, traceIdLow), previous, 0);
+    }
+
+    public double getSampleRatio() {
+        return sampleRatio;
+    }
+
+    void export(Span span) {
+        spanExporter.export(span);
+    }
+
+    private Span start(String name, SpanContext context, SpanContext previous, long parentSpanId) {
+        TraceContext.set(context);
+        if (!context.isSampled()) {
+            // still current, so spans below it know the trace is not sampled
+            return new Span(this, context, previous, parentSpanId, name, 0, 0);
+        }
+        long startNanoTime = System.nanoTime();
+        return new Span(this, context, previous, parentSpanId, name, epochOffsetNanos + startNanoTime, startNanoTime);
+    }
+
+    private boolean isSampled(long traceIdLow) {
+        return sampleRatio >= 1 || (traceIdLow >>> 1) < sampleThreshold;
+    }
+}
@@ -0,0 +1,65 @@
+package com.amigoscode.testing.tracing;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Spans around controller methods, repository calls and card charges.
+ * <p>
+ * Ordered first so a repository span wraps the transaction the repository opens, and
+ * includes the Hibernate flush and commit. Each charger a charge passes through gets
+ * its own span, so the routing and circuit breaker overhead shows up apart from the
+ * stripe call itself.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TracingAspect {
+
+    private final Tracer tracer;
+
+    @Autowired
+    public TracingAspect(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Around("within(@org.springframework.web.bind.annotation.RestController *)")
+    public Object traceController(ProceedingJoinPoint joinPoint) throws Throwable {
+        return trace(joinPoint, joinPoint.getSignature().getDeclaringType().getSimpleName());
+    }
+
+    @Around("execution(* com.amigoscode.testing.customer.CustomerRepository+.*(..))")
+    public Object traceCustomerRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return trace(joinPoint, "CustomerRepository");
+    }
+
+    @Around("execution(* com.amigoscode.testing.payment.PaymentRepository+.*(..))")
+    public Object tracePaymentRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return trace(joinPoint, "PaymentRepository");
+    }
+
+    @Around("execution(* com.amigoscode.testing.payment.CardPaymentCharger.chargeCard(..))")
+    public Object traceChargeCard(ProceedingJoinPoint joinPoint) throws Throwable {
+        return trace(joinPoint, joinPoint.getTarget().getClass().getSimpleName());
+    }
+
+    private Object trace(ProceedingJoinPoint joinPoint, String type) throws Throwable {
+        Span span = tracer.startSpan(type);
+        if (span.isRecording()) {
+            span.setName(type + "." + joinPoint.getSignature().getName());
+        }
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            span.recordError(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.amigoscode.testing.tracing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * Where sampled spans go: {@code tracing.exporter=memory} (the default) keeps the most
+ * recent ones in memory, {@code tracing.exporter=file} appends them to a JSON lines file.
+ */
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.exporter", havingValue = "memory", matchIfMissing = true)
+    public InMemorySpanExporter inMemorySpanExporter(@Value("${tracing.memory.capacity:1000}") int capacity) {
+        return new InMemorySpanExporter(capacity);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(name = "tracing.exporter", havingValue = "file")
+    public FileSpanExporter fileSpanExporter(@Value("${tracing.file.path:traces/spans.jsonl}") String path,
+                                             @Value("${tracing.file.queue-capacity:10000}") int queueCapacity) {
+        return new FileSpanExporter(Paths.get(path), queueCapacity);
+    }
+}
@@ -0,0 +1,94 @@
+package com.amigoscode.testing.tracing;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Root span of every request, from the first filter until the response is written, so
+ * it includes Jackson and everything else around the controller span. Continues the
+ * trace of an incoming traceparent header and returns the request's own traceparent.
+ * A request that goes async (a CompletableFuture from the controller) keeps its span
+ * open until the async part completes.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TracingFilter extends OncePerRequestFilter {
+
+    private final Tracer tracer;
+
+    @Autowired
+    public TracingFilter(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Span span = tracer.startRootSpan(
+                request.getMethod(),
+                SpanContext.fromTraceparent(request.getHeader(SpanContext.TRACEPARENT)));
+        if (span.getContext() != null) {
+            response.setHeader(SpanContext.TRACEPARENT, span.getContext().toTraceparent());
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            span.recordError(e);
+            endSpan(span, request, response);
+            throw e;
+        }
+
+        if (request.isAsyncStarted()) {
+            span.detach();
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    endSpan(span, request, response);
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                    span.setAttribute("http.timeout", true);
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                    if (event.getThrowable() != null) {
+                        span.recordError(event.getThrowable());
+                    }
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        } else {
+            endSpan(span, request, response);
+        }
+    }
+
+    private static void endSpan(Span span, HttpServletRequest request, HttpServletResponse response) {
+        if (span.isRecording()) {
+            // the route template, not the path, so all requests to an endpoint share a name
+            Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            span.setName(request.getMethod() + " " + (route != null ? route : request.getRequestURI()))
+                    .setAttribute("http.method", request.getMethod())
+                    .setAttribute("http.status_code", response.getStatus());
+        }
+        span.end();
+    }
+}
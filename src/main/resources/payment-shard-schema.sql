@@ -0,0 +1,16 @@
+-- The payment table on every payment shard, in the layout hibernate gives the payment table
+-- of the main database. INCREMENT BY matches the block of ids PaymentShard takes per call.
+CREATE SEQUENCE IF NOT EXISTS payment_shard_id_sequence START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS payment (
+    payment_id       BIGINT NOT NULL PRIMARY KEY,
+    customer_id      BINARY(16),
+    amount           DECIMAL(19, 2),
+    currency         INTEGER,
+    source           VARCHAR(255),
+    description      VARCHAR(255),
+    write_behind_key BINARY(16)
+);
+
+CREATE INDEX IF NOT EXISTS payment_customer_id_payment_id_idx ON payment (customer_id, payment_id);
+CREATE UNIQUE INDEX IF NOT EXISTS payment_write_behind_key_uk ON payment (write_behind_key);
@@ -0,0 +1,113 @@
+package com.amigoscode.testing.cache;
+
+import com.amigoscode.testing.customer.Customer;
+import com.amigoscode.testing.customer.CustomerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.javax.persistence.validation.mode=none"
+})
+@Import({CacheConfig.class, CacheConfigTest.SharedCacheConfig.class})
+class CacheConfigTest {
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private TwoLevelCacheManager cacheManager;
+
+    @Autowired
+    @Qualifier("sharedCacheManager")
+    private CacheManager sharedCacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // the context and its caches outlive each test's rolled back rows
+    @AfterEach
+    void tearDown() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    void isShouldReadCustomerThroughBothCacheLevels() {
+        //Given
+        UUID id = UUID.randomUUID();
+        customerRepository.save(new Customer(id, "Zoe", "07700 900000"));
+        double localHits = localHits();
+
+        //When
+        Customer loaded = customerRepository.findById(id).orElseThrow();
+        Customer cached = customerRepository.findById(id).orElseThrow();
+
+        //Then
+        assertThat(cached).isSameAs(loaded);
+        assertThat(sharedCacheManager.getCache(CacheNames.CUSTOMERS).get(id).get()).isSameAs(loaded);
+        assertThat(localHits()).isEqualTo(localHits + 1);
+    }
+
+    @Test
+    void isShouldNotCacheCustomerThatDoesNotExist() {
+        //Given
+        UUID id = UUID.randomUUID();
+        assertThat(customerRepository.findById(id)).isNotPresent();
+
+        //When
+        customerRepository.save(new Customer(id, "Zoe", "07700 900000"));
+
+        //Then
+        assertThat(customerRepository.findById(id)).isPresent();
+    }
+
+    @Test
+    void isShouldCacheCustomerByPhoneNumberKey() {
+        //Given
+        customerRepository.save(new Customer(UUID.randomUUID(), "Zoe", "07700 900000"));
+
+        //When
+        Customer customer = customerRepository.selectCustomerByPhoneNumberKey(447700900000L).orElseThrow();
+
+        //Then
+        assertThat(cacheManager.getCache(CacheNames.CUSTOMERS_BY_PHONE_NUMBER_KEY).get(447700900000L).get())
+                .isSameAs(customer);
+    }
+
+    private double localHits() {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", CacheNames.CUSTOMERS)
+                .tag("level", "local")
+                .tag("result", "hit")
+                .functionCounter()
+                .count();
+    }
+
+    // the embedded stand-in for a shared cache such as redis
+    @TestConfiguration
+    static class SharedCacheConfig {
+
+        @Bean
+        CacheManager sharedCacheManager() {
+            return new ConcurrentMapCacheManager();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.amigoscode.testing.cache;
+
+import com.amigoscode.testing.customer.Customer;
+import com.amigoscode.testing.customer.CustomerRepository;
+import com.amigoscode.testing.payment.Currency;
+import com.amigoscode.testing.payment.Money;
+import com.amigoscode.testing.payment.Payment;
+import com.amigoscode.testing.payment.PaymentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// entities reach the second-level cache when their transaction commits, so no test transaction
+@DataJpaTest(properties = {
+        "spring.jpa.properties.javax.persistence.validation.mode=none",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({CacheConfig.class, SecondLevelCacheTest.MeterRegistryConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheTest {
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private TwoLevelCacheManager cacheManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAll();
+        paymentRepository.deleteAll();
+        entityManagerFactory.getCache().evictAll();
+        clearReadThroughCaches();
+    }
+
+    @Test
+    void isShouldReadSavedCustomerWithoutQuerying() {
+        //Given
+        UUID id = UUID.randomUUID();
+        customerRepository.save(new Customer(id, "Zoe", "07700 900000"));
+        statistics.clear();
+
+        //When
+        Customer customer = entityManager.find(Customer.class, id);
+
+        //Then
+        assertThat(customer.getName()).isEqualTo("Zoe");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics(CacheNames.CUSTOMER_ENTITIES).getHitCount())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets")
+                .tag("cache", CacheNames.CUSTOMER_ENTITIES)
+                .tag("level", "local")
+                .tag("result", "hit")
+                .functionCounter()
+                .count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void isShouldAnswerRepeatedPhoneNumberLookupFromQueryCache() {
+        //Given
+        customerRepository.save(new Customer(UUID.randomUUID(), "Zoe", "07700 900000"));
+        customerRepository.selectCustomerByPhoneNumberKey(447700900000L);
+        clearReadThroughCaches();
+        statistics.clear();
+
+        //When
+        Customer customer = customerRepository.selectCustomerByPhoneNumberKey(447700900000L).orElseThrow();
+
+        //Then
+        assertThat(customer.getName()).isEqualTo("Zoe");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void isShouldNotServeCachedLookupAfterCustomerTableChanged() {
+        //Given
+        assertThat(customerRepository.selectCustomerByPhoneNumberKey(447700900000L)).isNotPresent();
+
+        //When
+        customerRepository.save(new Customer(UUID.randomUUID(), "Zoe", "07700 900000"));
+
+        //Then
+        assertThat(customerRepository.selectCustomerByPhoneNumberKey(447700900000L)).isPresent();
+    }
+
+    @Test
+    void isShouldReadSavedPaymentWithoutQuerying() {
+        //Given
+        Payment payment = paymentRepository.save(new Payment(
+                null, UUID.randomUUID(), Money.parse("10.00", Currency.USD), "card123", "Donation"));
+        statistics.clear();
+
+        //When
+        Payment loaded = entityManager.find(Payment.class, payment.getPaymentId());
+
+        //Then
+        assertThat(loaded.getDescription()).isEqualTo("Donation");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics(CacheNames.PAYMENT_ENTITIES).getHitCount())
+                .isEqualTo(1);
+    }
+
+    private void clearReadThroughCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @TestConfiguration
+    static class MeterRegistryConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
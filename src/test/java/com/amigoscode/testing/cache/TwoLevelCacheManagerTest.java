@@ -0,0 +1,156 @@
+package com.amigoscode.testing.cache;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TwoLevelCacheManagerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = nanos::get;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConcurrentMapCacheManager sharedCacheManager;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sharedCacheManager = new ConcurrentMapCacheManager();
+    }
+
+    @Test
+    void isShouldAnswerFromMemoryThenFromSharedCache() {
+        //Given
+        Cache underTest = cache(new TwoLevelCacheProperties.Spec(10, 0, Duration.ofMinutes(10)), sharedCacheManager);
+        underTest.put("zoe", "Zoe");
+
+        //When
+        Object fromMemory = underTest.get("zoe").get();
+        // ... dropped from memory, another instance put it in the shared cache
+        ((TwoLevelCache) underTest).getNativeCache().invalidateAll();
+        Object fromShared = underTest.get("zoe").get();
+        Object fromMemoryAgain = underTest.get("zoe").get();
+
+        //Then
+        assertThat(fromMemory).isEqualTo("Zoe");
+        assertThat(fromShared).isEqualTo("Zoe");
+        assertThat(fromMemoryAgain).isEqualTo("Zoe");
+        assertThat(gets("local", "hit")).isEqualTo(2);
+        assertThat(gets("local", "miss")).isEqualTo(1);
+        assertThat(gets("shared", "hit")).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.hit.ratio").tag("cache", "customers").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void isShouldEvictFromBothLevels() {
+        //Given
+        Cache underTest = cache(new TwoLevelCacheProperties.Spec(10, 0, Duration.ofMinutes(10)), sharedCacheManager);
+        underTest.put("zoe", "Zoe");
+
+        //When
+        underTest.evict("zoe");
+
+        //Then
+        assertThat(underTest.get("zoe")).isNull();
+        assertThat(sharedCacheManager.getCache("customers").get("zoe")).isNull();
+        assertThat(gets("shared", "miss")).isEqualTo(1);
+    }
+
+    @Test
+    void isShouldLoadOnceAndShareLoadedValue() {
+        //Given
+        Cache underTest = cache(new TwoLevelCacheProperties.Spec(10, 0, Duration.ofMinutes(10)), sharedCacheManager);
+        AtomicLong loads = new AtomicLong();
+
+        //When
+        underTest.get("zoe", () -> "Zoe" + loads.incrementAndGet());
+        String value = underTest.get("zoe", () -> "Zoe" + loads.incrementAndGet());
+
+        //Then
+        assertThat(value).isEqualTo("Zoe1");
+        assertThat(loads).hasValue(1);
+        assertThat(sharedCacheManager.getCache("customers").get("zoe").get()).isEqualTo("Zoe1");
+    }
+
+    @Test
+    void isShouldExpireFromMemoryAfterTtl() {
+        //Given
+        Cache underTest = cache(new TwoLevelCacheProperties.Spec(10, 0, Duration.ofMinutes(10)), null);
+        underTest.put("zoe", "Zoe");
+
+        //When
+        nanos.addAndGet(Duration.ofMinutes(10).toNanos());
+
+        //Then
+        assertThat(underTest.get("zoe")).isNull();
+        assertThat(evictions()).isEqualTo(1);
+        // ... no shared cache, no shared reads to count
+        assertThat(meterRegistry.find("cache.gets").tag("level", "shared").functionCounter()).isNull();
+    }
+
+    @Test
+    void isShouldEvictByWeight() {
+        //Given
+        Cache underTest = cache(new TwoLevelCacheProperties.Spec(0, 10, Duration.ofMinutes(10)), null);
+
+        //When
+        underTest.put("zoe", "Zoe");
+        nanos.incrementAndGet();
+        underTest.put("marta", "Marta");
+        nanos.incrementAndGet();
+        underTest.put("ali", "Ali");
+
+        //Then
+        assertThat(evictions()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.eviction.weight").tag("cache", "customers").functionCounter().count())
+                .isEqualTo(3);
+        assertThat(meterRegistry.get("cache.size").tag("cache", "customers").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void isShouldNotStartWhenWeightedCacheHasNoWeigher() {
+        //Given
+        TwoLevelCacheManager underTest = new TwoLevelCacheManager(
+                Map.of("payments", new TwoLevelCacheProperties.Spec(0, 10, Duration.ofMinutes(10))),
+                Map.of(), null, meterRegistry, ticker, Runnable::run);
+
+        //When
+        //Then
+        assertThatThrownBy(underTest::afterPropertiesSet)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Cache [payments] has a maximum weight but no weigher");
+    }
+
+    private Cache cache(TwoLevelCacheProperties.Spec spec, ConcurrentMapCacheManager shared) {
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(
+                Map.of("customers", spec),
+                // ... one unit of weight per character
+                Map.of("customers", (key, value) -> ((String) value).length()),
+                shared, meterRegistry, ticker, Runnable::run);
+        cacheManager.afterPropertiesSet();
+        return cacheManager.getCache("customers");
+    }
+
+    private double gets(String level, String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", "customers")
+                .tag("level", level)
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+
+    private double evictions() {
+        return meterRegistry.get("cache.evictions").tag("cache", "customers").functionCounter().count();
+    }
+}
@@ -0,0 +1,165 @@
+package com.amigoscode.testing.customer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.times;
+
+class CustomerBulkRegistrationServiceTest {
+
+    @Mock
+    private CustomerRepository customerRepository;
+    @Mock
+    private CustomerPhoneNumberIndex customerPhoneNumberIndex;
+    @Mock
+    private CustomerExistenceCache customerExistenceCache;
+    @Mock
+    private CustomerRegistrationService customerRegistrationService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private CustomerBulkRegistrationService underTest;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        PhoneNumberNormalizer phoneNumberNormalizer = new PhoneNumberNormalizer("44");
+        underTest = new CustomerBulkRegistrationService(
+                customerRepository, customerPhoneNumberIndex, customerExistenceCache, customerRegistrationService,
+                phoneNumberNormalizer, new CustomerValidator(phoneNumberNormalizer, new String[0]), objectMapper, 2);
+    }
+
+    @Test
+    void isShouldRegisterNdjsonRecordsInChunksAndReportEachRecord() throws IOException {
+        //Given
+        String body = "{\"customer\":{\"name\":\"Zoe\",\"phoneNumber\":\"111\"}}\n" +
+                "{\"customer\":{\"name\":\"Marta\",\"phoneNumber\":\"222\"}}\n" +
+                "{\"customer\":{\"name\":\"Ali\",\"phoneNumber\":\"111\"}}\n" +
+                "{\"customer\":{\"name\":\"Abel\"}}\n" +
+                "{\"customer\":{\"name\":\"Ali\",\"phoneNumber\":\"not a number\"}}\n";
+
+        // ... 222 already belongs to Marta, and by the second chunk 111 is in the index as Zoe's
+        Customer marta = new Customer(UUID.randomUUID(), "Marta", "222");
+        Customer zoe = new Customer(UUID.randomUUID(), "Zoe", "111");
+        given(customerPhoneNumberIndex.findByPhoneNumberKeys(anyCollection()))
+                .willReturn(Map.of(222L, marta))
+                .willReturn(Map.of(111L, zoe));
+
+        //When
+        List<JsonNode> results = register(body);
+
+        //Then
+        assertThat(results).hasSize(5);
+        assertThat(results.get(0).get("status").asText()).isEqualTo("REGISTERED");
+        assertThat(results.get(1).get("status").asText()).isEqualTo("ALREADY_REGISTERED");
+        assertThat(results.get(1).get("customerId").asText()).isEqualTo(marta.getId().toString());
+        // ... same number again in a later chunk but with another name
+        assertThat(results.get(2).get("status").asText()).isEqualTo("PHONE_NUMBER_TAKEN");
+        assertThat(results.get(3).get("status").asText()).isEqualTo("INVALID");
+        assertThat(results.get(3).get("index").asLong()).isEqualTo(3);
+        assertThat(results.get(4).get("status").asText()).isEqualTo("INVALID");
+
+        // ... one lookup per chunk with valid numbers, the last chunk has none
+        then(customerPhoneNumberIndex).should(times(2)).findByPhoneNumberKeys(anyCollection());
+
+        // ... only Zoe is inserted
+        ArgumentCaptor<List<Customer>> customersCaptor = ArgumentCaptor.forClass(List.class);
+        then(customerRepository).should(times(1)).insertAll(customersCaptor.capture());
+        assertThat(customersCaptor.getValue())
+                .extracting(Customer::getName)
+                .containsExactly("Zoe");
+        assertThat(customersCaptor.getValue().get(0).getId()).isNotNull();
+        then(customerPhoneNumberIndex).should().put(customersCaptor.getValue().get(0));
+        then(customerRegistrationService).should().onSaved(customersCaptor.getValue().get(0));
+    }
+
+    @Test
+    void isShouldAcceptJsonArrayBody() throws IOException {
+        //Given
+        String body = "[{\"customer\":{\"name\":\"Zoe\",\"phoneNumber\":\"111\"}}," +
+                "{\"customer\":{\"name\":\"Marta\",\"phoneNumber\":\"222\"}}," +
+                "{\"customer\":{\"name\":\"Ali\",\"phoneNumber\":\"333\"}}]";
+        given(customerPhoneNumberIndex.findByPhoneNumberKeys(anyCollection())).willReturn(Map.of());
+
+        //When
+        List<JsonNode> results = register(body);
+
+        //Then
+        assertThat(results).extracting(r -> r.get("status").asText())
+                .containsExactly("REGISTERED", "REGISTERED", "REGISTERED");
+        then(customerRepository).should(times(2)).insertAll(any());
+    }
+
+    @Test
+    void isShouldFallBackToSingleRegistrationWhenChunkInsertHitsUniqueConstraint() throws IOException {
+        //Given
+        String body = "{\"customer\":{\"name\":\"Zoe\",\"phoneNumber\":\"111\"}}\n" +
+                "{\"customer\":{\"name\":\"Ali\",\"phoneNumber\":\"222\"}}\n";
+        given(customerPhoneNumberIndex.findByPhoneNumberKeys(anyCollection())).willReturn(Map.of());
+
+        // ... 222 was registered by someone else in the meantime
+        willThrow(new DataIntegrityViolationException("unique constraint"))
+                .given(customerRepository).insertAll(any());
+        willThrow(new IllegalStateException("Phone number [222] is taken"))
+                .given(customerRegistrationService)
+                .registerNewCustomer(argThat(r -> r.getCustomer().getPhoneNumber().equals("222")));
+
+        //When
+        List<JsonNode> results = register(body);
+
+        //Then
+        assertThat(results).extracting(r -> r.get("status").asText())
+                .containsExactly("REGISTERED", "PHONE_NUMBER_TAKEN");
+        then(customerRegistrationService).should(times(2)).registerNewCustomer(any());
+    }
+
+    @Test
+    void isShouldAnswerRecordOfWrongShapeInJsonArrayAndCarryOn() throws IOException {
+        //Given
+        String body = "[{\"customer\":{\"name\":\"Zoe\",\"phoneNumber\":\"111\"}}," +
+                "{\"customer\":[1, 2]}," +
+                "{\"customer\":{\"name\":\"Ali\",\"phoneNumber\":\"333\"}}]";
+        given(customerPhoneNumberIndex.findByPhoneNumberKeys(anyCollection())).willReturn(Map.of());
+
+        //When
+        List<JsonNode> results = register(body);
+
+        //Then
+        assertThat(results).extracting(r -> r.get("status").asText())
+                .containsExactly("REGISTERED", "INVALID", "REGISTERED");
+        assertThat(results.get(1).get("index").asLong()).isEqualTo(1);
+    }
+
+    private List<JsonNode> register(String body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        underTest.registerNewCustomers(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+
+        List<JsonNode> results = new ArrayList<>();
+        objectMapper.readerFor(JsonNode.class)
+                .<JsonNode>readValues(out.toByteArray())
+                .forEachRemaining(results::add);
+        return results;
+    }
+}
@@ -0,0 +1,71 @@
+package com.amigoscode.testing.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerExistenceCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CustomerExistenceCache underTest =
+            new CustomerExistenceCache(meterRegistry, 100, Duration.ofMinutes(10), nanos::get);
+
+    @Test
+    void isShouldKnowMarkedCustomerAndCountHitsAndMisses() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+
+        //When
+        boolean knownBefore = underTest.isKnown(customerId);
+        underTest.markKnown(customerId);
+        boolean knownAfter = underTest.isKnown(customerId);
+
+        //Then
+        assertThat(knownBefore).isFalse();
+        assertThat(knownAfter).isTrue();
+        // ... published like every other in-memory cache
+        assertThat(gets("hit")).isEqualTo(1);
+        assertThat(gets("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void isShouldForgetCustomerAfterTtl() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        underTest.markKnown(customerId);
+
+        //When
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        //Then
+        assertThat(underTest.isKnown(customerId)).isFalse();
+    }
+
+    @Test
+    void isShouldForgetInvalidatedCustomer() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        underTest.markKnown(customerId);
+
+        //When
+        underTest.invalidate(customerId);
+
+        //Then
+        assertThat(underTest.isKnown(customerId)).isFalse();
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", "customer-existence")
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+}
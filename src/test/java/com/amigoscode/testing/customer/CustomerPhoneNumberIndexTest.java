@@ -0,0 +1,91 @@
+package com.amigoscode.testing.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+
+class CustomerPhoneNumberIndexTest {
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    private CustomerPhoneNumberIndex underTest;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        underTest = new CustomerPhoneNumberIndex(customerRepository, new PhoneNumberNormalizer("44"), true);
+    }
+
+    @Test
+    void isShouldAnswerFromMemoryOnceLoaded() {
+        //Given
+        Customer customer = new Customer(UUID.randomUUID(), "Zoe", "12345");
+        given(customerRepository.findAll()).willReturn(List.of(customer));
+
+        //When
+        underTest.load();
+
+        //Then
+        assertThat(underTest.findByPhoneNumber("12345")).contains(customer);
+        assertThat(underTest.findByPhoneNumber("00000")).isNotPresent();
+        then(customerRepository).should(never()).selectCustomerByPhoneNumberKey(anyLong());
+    }
+
+    @Test
+    void isShouldFindNumberWrittenInAnotherFormat() {
+        //Given
+        Customer customer = new Customer(UUID.randomUUID(), "Zoe", "+44 7700 900000");
+        given(customerRepository.findAll()).willReturn(List.of(customer));
+
+        //When
+        underTest.load();
+
+        //Then
+        assertThat(underTest.findByPhoneNumber("07700-900000")).contains(customer);
+        assertThat(underTest.findByPhoneNumberKeys(List.of(447700900000L, 44000L)))
+                .containsOnly(entry(447700900000L, customer));
+    }
+
+    @Test
+    void isShouldKnowCustomersPutAfterLoading() {
+        //Given
+        given(customerRepository.findAll()).willReturn(List.of());
+        underTest.load();
+
+        Customer customer = new Customer(UUID.randomUUID(), "Zoe", "12345");
+
+        //When
+        underTest.put(customer);
+
+        //Then
+        assertThat(underTest.findByPhoneNumber("12345")).contains(customer);
+    }
+
+    @Test
+    void isShouldGoToDatabaseWhenDisabled() {
+        //Given
+        underTest = new CustomerPhoneNumberIndex(customerRepository, new PhoneNumberNormalizer("44"), false);
+        Customer customer = new Customer(UUID.randomUUID(), "Zoe", "12345");
+        given(customerRepository.selectCustomerByPhoneNumberKey(12345L)).willReturn(Optional.of(customer));
+
+        //When
+        underTest.load();
+
+        //Then
+        assertThat(underTest.findByPhoneNumber("12345")).contains(customer);
+        then(customerRepository).should(never()).findAll();
+    }
+}
@@ -0,0 +1,90 @@
+package com.amigoscode.testing.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// each backfill chunk commits on its own, so no test transaction around it
+@DataJpaTest(properties = {
+        "spring.jpa.properties.javax.persistence.validation.mode=none"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CustomerPhoneNumberKeyBackfillTest {
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAll();
+    }
+
+    @Test
+    void isShouldSetKeyOfCustomersStoredBeforeItExisted() {
+        //Given
+        UUID zoe = insertWithoutKey(1, "Zoe", "07700 900001");
+        UUID marta = insertWithoutKey(2, "Marta", "+44 7700 900002");
+        UUID ali = insertWithoutKey(3, "Ali", "0044 7700 900003");
+        CustomerPhoneNumberKeyBackfill underTest = new CustomerPhoneNumberKeyBackfill(
+                customerRepository, new PhoneNumberNormalizer("44"), transactionManager, meterRegistry, true, 2);
+
+        //When
+        underTest.backfill();
+
+        //Then
+        assertThat(customerRepository.findById(zoe).orElseThrow().getPhoneNumberKey()).isEqualTo(447700900001L);
+        assertThat(customerRepository.findById(marta).orElseThrow().getPhoneNumberKey()).isEqualTo(447700900002L);
+        assertThat(customerRepository.findById(ali).orElseThrow().getPhoneNumberKey()).isEqualTo(447700900003L);
+    }
+
+    @Test
+    void isShouldLeaveConflictingAndInvalidNumbersUnkeyedAndCountThem() {
+        //Given
+        UUID zoe = insertWithoutKey(1, "Zoe", "07700 900001");
+        // ... same number as Zoe written another way
+        UUID marta = insertWithoutKey(2, "Marta", "+44 7700 900001");
+        UUID ali = insertWithoutKey(3, "Ali", "unknown");
+        UUID abel = insertWithoutKey(4, "Abel", "07700 900004");
+        CustomerPhoneNumberKeyBackfill underTest = new CustomerPhoneNumberKeyBackfill(
+                customerRepository, new PhoneNumberNormalizer("44"), transactionManager, meterRegistry, true, 2);
+
+        //When
+        underTest.backfill();
+
+        //Then
+        assertThat(customerRepository.findById(zoe).orElseThrow().getPhoneNumberKey()).isEqualTo(447700900001L);
+        assertThat(customerRepository.findById(marta).orElseThrow().getPhoneNumberKey()).isNull();
+        assertThat(customerRepository.findById(ali).orElseThrow().getPhoneNumberKey()).isNull();
+        assertThat(customerRepository.findById(abel).orElseThrow().getPhoneNumberKey()).isEqualTo(447700900004L);
+        assertThat(skipped("taken")).isEqualTo(1);
+        assertThat(skipped("invalid")).isEqualTo(1);
+    }
+
+    private double skipped(String reason) {
+        return meterRegistry.get("customer.phone-number-key.backfill.skipped").tag("reason", reason).gauge().value();
+    }
+
+    private UUID insertWithoutKey(int n, String name, String phoneNumber) {
+        UUID id = UUID.fromString(String.format("00000000-0000-0000-0000-%012d", n));
+        jdbcTemplate.update("insert into customer (id, name, phone_number) values (?, ?, ?)", id, name, phoneNumber);
+        return id;
+    }
+}
@@ -0,0 +1,88 @@
+package com.amigoscode.testing.customer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CustomerRegistrationControllerTest {
+
+    @Mock
+    private CustomerRepository customerRepository;
+    @Mock
+    private CustomerPhoneNumberIndex customerPhoneNumberIndex;
+    @Mock
+    private CustomerExistenceCache customerExistenceCache;
+    @Mock
+    private CustomerRegistrationService customerRegistrationService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        PhoneNumberNormalizer phoneNumberNormalizer = new PhoneNumberNormalizer("44");
+        CustomerBulkRegistrationService customerBulkRegistrationService = new CustomerBulkRegistrationService(
+                customerRepository, customerPhoneNumberIndex, customerExistenceCache, customerRegistrationService,
+                phoneNumberNormalizer, new CustomerValidator(phoneNumberNormalizer, new String[0]), objectMapper, 500);
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new CustomerRegistrationController(
+                        customerRegistrationService, customerBulkRegistrationService))
+                .build();
+    }
+
+    @Test
+    void isShouldRegisterRecordsAroundMalformedNdjsonLine() throws Exception {
+        //Given
+        String body = "{\"customer\":{\"name\":\"Zoe\",\"phoneNumber\":\"111\"}}\n" +
+                "{\"customer\":{\"name\":\"Marta\",\"phoneNu\n" +
+                "{\"customer\":{\"name\":\"Ali\",\"phoneNumber\":\"333\"}}\n";
+        given(customerPhoneNumberIndex.findByPhoneNumberKeys(anyCollection())).willReturn(Map.of());
+
+        //When
+        MvcResult result = mockMvc.perform(post("/api/v1/customer-registration/bulk")
+                .contentType("application/x-ndjson")
+                .content(body))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        //Then
+        List<JsonNode> results = new ArrayList<>();
+        objectMapper.readerFor(JsonNode.class)
+                .<JsonNode>readValues(result.getResponse().getContentAsByteArray())
+                .forEachRemaining(results::add);
+        assertThat(results).extracting(r -> r.get("index").asLong())
+                .containsExactly(0L, 1L, 2L);
+        assertThat(results).extracting(r -> r.get("status").asText())
+                .containsExactly("REGISTERED", "INVALID", "REGISTERED");
+        assertThat(results.get(1).get("message").asText())
+                .startsWith("Record is not a valid registration request");
+
+        // ... both readable records are saved
+        ArgumentCaptor<List<Customer>> customersCaptor = ArgumentCaptor.forClass(List.class);
+        then(customerRepository).should(times(2)).insertAll(customersCaptor.capture());
+        List<Customer> inserted = new ArrayList<>();
+        customersCaptor.getAllValues().forEach(inserted::addAll);
+        assertThat(inserted).extracting(Customer::getName).containsExactly("Zoe", "Ali");
+    }
+}
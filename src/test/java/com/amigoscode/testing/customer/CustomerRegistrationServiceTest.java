@@ -1,13 +1,19 @@
 package com.amigoscode.testing.customer;
 
+import com.amigoscode.testing.datasource.DataSourceRouting;
+import com.amigoscode.testing.datasource.ReadYourWritesGuard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.time.Duration;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -22,19 +28,31 @@ import static org.mockito.Mockito.times;
 @ExtendWith(MockitoExtension.class)
 class CustomerRegistrationServiceTest {
 
-    @InjectMocks
     private CustomerRegistrationService underTest;
 
+    private SimpleMeterRegistry meterRegistry;
+
     @Mock
     private CustomerRepository customerRepository;
 
+    @Mock
+    private CustomerPhoneNumberIndex customerPhoneNumberIndex;
+
+    @Mock
+    private CustomerExistenceCache customerExistenceCache;
+
     @Captor
     private ArgumentCaptor<Customer> customerArgumentCaptor;
 
-//    @BeforeEach
-//    void setUp() {
-//        underTest = new CustomerRegistrationService(customerRepository);
-//    }
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        PhoneNumberNormalizer phoneNumberNormalizer = new PhoneNumberNormalizer("44");
+        underTest = new CustomerRegistrationService(customerRepository, customerPhoneNumberIndex, customerExistenceCache,
+                phoneNumberNormalizer, new CustomerValidator(phoneNumberNormalizer, new String[0]),
+                new ReadYourWritesGuard(true, Duration.ofSeconds(5), 100),
+                new ConcurrentMapCacheManager(), meterRegistry);
+    }
 
     @Test
     void isShouldSaveNewCustomer() {
@@ -43,7 +61,7 @@ class CustomerRegistrationServiceTest {
         Customer customer = new Customer(UUID.randomUUID(), "Zoe", phoneNumber);
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(customer);
 
-        given(customerRepository.selectCustomerByPhoneNumber(phoneNumber))
+        given(customerPhoneNumberIndex.findByPhoneNumber(phoneNumber))
                 .willReturn(Optional.empty());
 
         //When
@@ -55,6 +73,13 @@ class CustomerRegistrationServiceTest {
         Customer savedCustomer = customerArgumentCaptor.getValue();
 
         assertThat(savedCustomer).isEqualToComparingFieldByField(customer);
+
+        // ... the index knows about the new number
+        then(customerPhoneNumberIndex).should().put(customer);
+        then(customerExistenceCache).should().markKnown(customer.getId());
+
+        // ... and the phone number lookup is timed
+        assertThat(meterRegistry.get("customer.phone.number.lookup").timer().count()).isEqualTo(1);
     }
 
     @Test
@@ -64,7 +89,7 @@ class CustomerRegistrationServiceTest {
         Customer customer = new Customer(null, "Zoe", phoneNumber);
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(customer);
 
-        given(customerRepository.selectCustomerByPhoneNumber(phoneNumber))
+        given(customerPhoneNumberIndex.findByPhoneNumber(phoneNumber))
                 .willReturn(Optional.empty());
 
         //When
@@ -87,7 +112,7 @@ class CustomerRegistrationServiceTest {
         Customer customer = new Customer(id, "Zoe", phoneNumber);
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(customer);
 
-        given(customerRepository.selectCustomerByPhoneNumber(phoneNumber))
+        given(customerPhoneNumberIndex.findByPhoneNumber(phoneNumber))
                 .willReturn(Optional.of(customer));
 
         //When
@@ -107,7 +132,7 @@ class CustomerRegistrationServiceTest {
 
         Customer customer = new Customer(UUID.randomUUID(), "Marta", phoneNumber);
 
-        given(customerRepository.selectCustomerByPhoneNumber(phoneNumber))
+        given(customerPhoneNumberIndex.findByPhoneNumber(phoneNumber))
                 .willReturn(Optional.of(customer));
 
         //When
@@ -119,4 +144,75 @@ class CustomerRegistrationServiceTest {
         //Finally
         then(customerRepository).should(never()).save(any(Customer.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void isShouldThrowWhenCustomerBreaksRegistrationRules() {
+        //Given
+        PhoneNumberNormalizer phoneNumberNormalizer = new PhoneNumberNormalizer("44");
+        underTest = new CustomerRegistrationService(customerRepository, customerPhoneNumberIndex, customerExistenceCache,
+                phoneNumberNormalizer, new CustomerValidator(phoneNumberNormalizer, new String[]{"+44 7700 900000"}),
+                new ReadYourWritesGuard(true, Duration.ofSeconds(5), 100),
+                new ConcurrentMapCacheManager(), meterRegistry);
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                new Customer(null, "Zoe", "07700 900000"));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.registerNewCustomer(request))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Phone number [07700 900000] is banned");
+
+        //Finally
+        then(customerPhoneNumberIndex).should(never()).findByPhoneNumber(any());
+        then(customerRepository).should(never()).save(any(Customer.class));
+    }
+
+    @Test
+    void isShouldThrowWhenNumberWasTakenBehindTheIndexBack() {
+        //Given
+        String phoneNumber = "12345";
+        Customer customerRequest = new Customer(null, "Zoe", phoneNumber);
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(customerRequest);
+
+        Customer customer = new Customer(UUID.randomUUID(), "Marta", phoneNumber);
+
+        // ... index does not know the number yet but the unique constraint does
+        given(customerPhoneNumberIndex.findByPhoneNumber(phoneNumber)).willReturn(Optional.empty());
+        given(customerRepository.save(customerRequest))
+                .willThrow(new DataIntegrityViolationException("unique constraint"));
+        given(customerRepository.selectCustomerByPhoneNumberKey(12345L))
+                .willReturn(Optional.of(customer));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.registerNewCustomer(request))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(String.format("Phone number [%s] is taken", phoneNumber));
+
+        //Finally
+        then(customerPhoneNumberIndex).should().put(customer);
+    }
+
+    @Test
+    void isShouldReadJustRegisteredCustomerFromPrimary() {
+        //Given
+        String phoneNumber = "12345";
+        Customer customer = new Customer(UUID.randomUUID(), "Zoe", phoneNumber);
+        Customer otherCustomer = new Customer(UUID.randomUUID(), "Marta", "54321");
+
+        given(customerPhoneNumberIndex.findByPhoneNumber(phoneNumber)).willReturn(Optional.empty());
+        // ... the replica has not caught up with either customer yet
+        given(customerRepository.findById(any(UUID.class))).willAnswer(invocation -> DataSourceRouting.isPrimaryForced()
+                ? Optional.of(invocation.getArgument(0).equals(customer.getId()) ? customer : otherCustomer)
+                : Optional.empty());
+
+        //When
+        underTest.registerNewCustomer(new CustomerRegistrationRequest(customer));
+
+        //Then
+        assertThat(underTest.getCustomer(customer.getId())).isEqualTo(customer);
+        assertThatThrownBy(() -> underTest.getCustomer(otherCustomer.getId()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("not found");
+    }
+}
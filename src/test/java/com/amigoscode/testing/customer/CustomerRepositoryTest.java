@@ -3,8 +3,12 @@ package com.amigoscode.testing.customer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 
+import javax.persistence.PersistenceException;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -19,37 +23,56 @@ class CustomerRepositoryTest {
     @Autowired
     private CustomerRepository underTest;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
     @Test
-    void isShouldSelectCustomerByPhoneNumber() {
+    void isShouldSelectCustomerByPhoneNumberKey() {
         //Given
         UUID id = UUID.randomUUID();
-        String phoneNumber = "0000";
-        Customer customer = new Customer(id, "Abel", phoneNumber);
+        Customer customer = new Customer(id, "Abel", "07700 900000");
 
         //When
         underTest.save(customer);
 
         //Then
-        Optional<Customer> optionalCustomer = underTest.selectCustomerByPhoneNumber(phoneNumber);
+        Optional<Customer> optionalCustomer = underTest.selectCustomerByPhoneNumberKey(447700900000L);
         assertThat(optionalCustomer)
                 .isPresent()
                 .hasValueSatisfying(c -> {
-                    assertThat(c).isEqualToComparingFieldByField(customer);
+                    assertThat(c.getId()).isEqualTo(id);
+                    assertThat(c.getName()).isEqualTo("Abel");
+                    assertThat(c.getPhoneNumber()).isEqualTo("07700 900000");
                 });
     }
 
     @Test
-    void isNotShouldSelectCustomerByPhoneNumberWhenNumberDoesNotExist() {
+    void isNotShouldSelectCustomerByPhoneNumberKeyWhenNumberDoesNotExist() {
         //Given
-        String phoneNumber = "0000";
+        long phoneNumberKey = 44000L;
 
         //When
-        Optional<Customer> optionalCustomer = underTest.selectCustomerByPhoneNumber(phoneNumber);
+        Optional<Customer> optionalCustomer = underTest.selectCustomerByPhoneNumberKey(phoneNumberKey);
 
         //Then
         assertThat(optionalCustomer).isNotPresent();
     }
 
+    @Test
+    void itShouldNotSaveCustomerWhenSameNumberIsTakenInAnotherFormat() {
+        // Given
+        underTest.save(new Customer(UUID.randomUUID(), "Abel", "+44 7700 900000"));
+        Customer customer = new Customer(UUID.randomUUID(), "Alex", "07700-900000");
+
+        // When
+        // Then
+        assertThatThrownBy(() -> {
+            underTest.save(customer);
+            entityManager.flush();
+        }).isInstanceOf(PersistenceException.class)
+                .hasStackTraceContaining("CUSTOMER_PHONE_NUMBER_KEY_UK");
+    }
+
     @Test
     void isShouldSaveCustomer() {
         //Given
@@ -66,7 +89,8 @@ class CustomerRepositoryTest {
 //                    assertThat(c.getId()).isEqualTo(id);
 //                    assertThat(c.getName()).isEqualTo("Abel");
 //                    assertThat(c.getPhoneNumber()).isEqualTo("0000");
-                    assertThat(c).isEqualToComparingFieldByField(customer);
+                    assertThat(c).isEqualToIgnoringGivenFields(customer, "phoneNumberKey");
+                    assertThat(c.getPhoneNumberKey()).isEqualTo(44000L);
                 });
     }
 
@@ -98,5 +122,47 @@ class CustomerRepositoryTest {
 
     }
 
+    @Test
+    void isShouldInsertCustomersAndFindThemByPhoneNumbers() {
+        // Given
+        Customer abel = new Customer(UUID.randomUUID(), "Abel", "0000");
+        Customer zoe = new Customer(UUID.randomUUID(), "Zoe", "1111");
 
+        // When
+        underTest.insertAll(List.of(abel, zoe));
+
+        // Then
+        List<Customer> customers = underTest.selectCustomersByPhoneNumberKeyIn(List.of(44000L, 1111L, 2222L));
+        assertThat(customers)
+                .extracting(Customer::getId)
+                .containsExactlyInAnyOrder(abel.getId(), zoe.getId());
+    }
+
+    @Test
+    void isShouldSelectIdsWithoutPhoneNumberKeyInIdOrder() {
+        // Given
+        Customer keyed = new Customer(UUID.randomUUID(), "Abel", "0000");
+        underTest.save(keyed);
+        UUID first = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        UUID second = UUID.fromString("00000000-0000-0000-0000-000000000002");
+        UUID third = UUID.fromString("00000000-0000-0000-0000-000000000003");
+        entityManager.flush();
+        // ... rows stored before the key existed
+        for (UUID id : List.of(third, first, second)) {
+            entityManager.getEntityManager()
+                    .createNativeQuery("insert into customer (id, name, phone_number) values (?, ?, ?)")
+                    .setParameter(1, id)
+                    .setParameter(2, "Zoe")
+                    .setParameter(3, id.toString())
+                    .executeUpdate();
+        }
+
+        // When
+        List<UUID> firstPage = underTest.selectIdsWithoutPhoneNumberKey(PageRequest.of(0, 2));
+        List<UUID> nextPage = underTest.selectIdsWithoutPhoneNumberKeyAfter(second, PageRequest.of(0, 2));
+
+        // Then
+        assertThat(firstPage).containsExactly(first, second);
+        assertThat(nextPage).containsExactly(third);
+    }
 }
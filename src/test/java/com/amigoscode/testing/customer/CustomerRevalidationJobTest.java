@@ -0,0 +1,146 @@
+package com.amigoscode.testing.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// workers save from their own threads, so no test transaction around the job
+@DataJpaTest(properties = {
+        "spring.jpa.properties.javax.persistence.validation.mode=none"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CustomerRevalidationJobTest {
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private CustomerValidationFailureRepository failureRepository;
+
+    @Autowired
+    private CustomerRevalidationCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CustomerRevalidationJob underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        PhoneNumberNormalizer phoneNumberNormalizer = new PhoneNumberNormalizer("44");
+        underTest = new CustomerRevalidationJob(customerRepository, failureRepository, checkpointRepository,
+                new CustomerValidator(phoneNumberNormalizer, new String[]{"07700 900003"}), meterRegistry,
+                2, 2, Clock.fixed(Instant.parse("2020-05-01T10:00:00Z"), ZoneOffset.UTC));
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAll();
+        failureRepository.deleteAll();
+        checkpointRepository.deleteAll();
+    }
+
+    @Test
+    void isShouldCheckEveryCustomerInRangesAndRecordFailures() {
+        //Given
+        for (int n = 1; n <= 7; n++) {
+            insert(n, "Customer " + n, String.format("07700 90000%d", n));
+        }
+        // ... stored before the rules existed
+        UUID unnamed = insert(8, " ", "07700 900008");
+
+        //When
+        CustomerRevalidationReport report = underTest.run();
+
+        //Then
+        assertThat(report.getChecked()).isEqualTo(8);
+        assertThat(report.getInvalid()).isEqualTo(2);
+        assertThat(report.isResumed()).isFalse();
+
+        assertThat(failureRepository.findAll())
+                .extracting(CustomerValidationFailure::getCustomerId, CustomerValidationFailure::getProblem)
+                .containsExactlyInAnyOrder(
+                        tuple(id(3), "Phone number [07700 900003] is banned"),
+                        tuple(unnamed, "Customer name is required"));
+
+        CustomerRevalidationCheckpoint checkpoint = checkpointRepository.findById(CustomerRevalidationJob.JOB).orElseThrow();
+        assertThat(checkpoint.isCompleted()).isTrue();
+        assertThat(checkpoint.getLastCustomerId()).isEqualTo(unnamed);
+        assertThat(checkpoint.getChecked()).isEqualTo(8);
+
+        assertThat(meterRegistry.get("customer.revalidation.checked").tag("outcome", "valid").counter().count())
+                .isEqualTo(6);
+        assertThat(meterRegistry.get("customer.revalidation.checked").tag("outcome", "invalid").counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void isShouldResumeUnfinishedPassAfterCheckpoint() {
+        //Given
+        for (int n = 1; n <= 5; n++) {
+            insert(n, "Customer " + n, String.format("07700 90000%d", n));
+        }
+        // ... a pass stopped after checking the first three customers, one of them invalid
+        CustomerRevalidationCheckpoint checkpoint = new CustomerRevalidationCheckpoint(
+                CustomerRevalidationJob.JOB, Instant.parse("2020-05-01T09:00:00Z"));
+        checkpoint.advance(id(3), 3, 1, Instant.parse("2020-05-01T09:01:00Z"));
+        checkpointRepository.save(checkpoint);
+        failureRepository.save(new CustomerValidationFailure(id(3), "Phone number [07700 900003] is banned",
+                Instant.parse("2020-05-01T09:01:00Z")));
+
+        //When
+        CustomerRevalidationReport report = underTest.run();
+
+        //Then
+        assertThat(report.getChecked()).isEqualTo(2);
+        assertThat(report.isResumed()).isTrue();
+        // ... failures found before the resume are kept
+        assertThat(failureRepository.count()).isEqualTo(1);
+
+        CustomerRevalidationCheckpoint completed = checkpointRepository.findById(CustomerRevalidationJob.JOB).orElseThrow();
+        assertThat(completed.isCompleted()).isTrue();
+        assertThat(completed.getChecked()).isEqualTo(5);
+        assertThat(completed.getInvalid()).isEqualTo(1);
+    }
+
+    @Test
+    void isShouldStartNewPassOnceLastOneCompleted() {
+        //Given
+        insert(1, "Customer 1", "07700 900001");
+        underTest.run();
+
+        //When
+        CustomerRevalidationReport report = underTest.run();
+
+        //Then
+        assertThat(report.getChecked()).isEqualTo(1);
+        assertThat(report.isResumed()).isFalse();
+    }
+
+    private UUID insert(int n, String name, String phoneNumber) {
+        UUID id = id(n);
+        jdbcTemplate.update("insert into customer (id, name, phone_number) values (?, ?, ?)", id, name, phoneNumber);
+        return id;
+    }
+
+    private static UUID id(int n) {
+        return UUID.fromString(String.format("00000000-0000-0000-0000-%012d", n));
+    }
+}
@@ -0,0 +1,53 @@
+package com.amigoscode.testing.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerValidatorTest {
+
+    private final CustomerValidator underTest = new CustomerValidator(
+            new PhoneNumberNormalizer("44"), new String[]{"+44 7700 900666"});
+
+    @Test
+    void isShouldAcceptValidCustomer() {
+        //Given
+        Customer customer = new Customer(UUID.randomUUID(), "Zoe", "07700 900000");
+
+        //When
+        //Then
+        assertThat(underTest.validate(customer)).isNotPresent();
+    }
+
+    @Test
+    void isShouldRejectCustomerWithoutName() {
+        //Given
+        Customer customer = new Customer(UUID.randomUUID(), " ", "07700 900000");
+
+        //When
+        //Then
+        assertThat(underTest.validate(customer)).contains("Customer name is required");
+    }
+
+    @Test
+    void isShouldRejectPhoneNumberThatIsNotValid() {
+        //Given
+        Customer customer = new Customer(UUID.randomUUID(), "Zoe", "call me");
+
+        //When
+        //Then
+        assertThat(underTest.validate(customer)).contains("Phone number [call me] is not valid");
+    }
+
+    @Test
+    void isShouldRejectBannedNumberInAnyFormat() {
+        //Given
+        Customer customer = new Customer(UUID.randomUUID(), "Zoe", "0044 7700-900666");
+
+        //When
+        //Then
+        assertThat(underTest.validate(customer)).contains("Phone number [0044 7700-900666] is banned");
+    }
+}
@@ -0,0 +1,61 @@
+package com.amigoscode.testing.customer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PhoneNumberNormalizerTest {
+
+    private final PhoneNumberNormalizer underTest = new PhoneNumberNormalizer("44");
+
+    @Test
+    void isShouldGiveSameKeyToNumberWrittenInDifferentFormats() {
+        //Given
+        //When
+        //Then
+        assertThat(underTest.toKey("+44 7700 900000")).isEqualTo(447700900000L);
+        assertThat(underTest.toKey("0044 7700-900000")).isEqualTo(447700900000L);
+        assertThat(underTest.toKey("(07700) 900.000")).isEqualTo(447700900000L);
+        assertThat(underTest.toKey("447700900000")).isEqualTo(447700900000L);
+    }
+
+    @Test
+    void isShouldDropBracketedTrunkPrefixAfterCountryCode() {
+        //Given
+        //When
+        //Then
+        assertThat(underTest.toKey("+44 (0)7700 900123")).isEqualTo(447700900123L);
+        assertThat(underTest.toKey("0044 (0) 7700 900123")).isEqualTo(447700900123L);
+        // ... a bracketed 0 without a country code is the national prefix itself
+        assertThat(underTest.toKey("(0)7700 900123")).isEqualTo(447700900123L);
+    }
+
+    @Test
+    void isShouldAddDefaultCountryCodeToNationalNumber() {
+        //Given
+        PhoneNumberNormalizer underTest = new PhoneNumberNormalizer("48");
+
+        //When
+        long key = underTest.toKey("0600 100 200");
+
+        //Then
+        assertThat(key).isEqualTo(48600100200L);
+    }
+
+    @Test
+    void isShouldRejectNumberThatIsNotValid() {
+        //Given
+        //When
+        //Then
+        assertThat(underTest.isValid("not a number")).isFalse();
+        assertThat(underTest.isValid("44+7700")).isFalse();
+        assertThat(underTest.isValid("+0700")).isFalse();
+        assertThat(underTest.isValid("+")).isFalse();
+        assertThat(underTest.isValid("1234567890123456789")).isFalse();
+        assertThat(underTest.isValid(null)).isFalse();
+        assertThatThrownBy(() -> underTest.toKey("07700 abc"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Phone number [07700 abc] is not valid");
+    }
+}
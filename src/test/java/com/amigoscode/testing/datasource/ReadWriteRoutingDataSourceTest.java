@@ -0,0 +1,140 @@
+package com.amigoscode.testing.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replica0Connection = mock(Connection.class);
+    private final Connection replica1Connection = mock(Connection.class);
+
+    private DataSource primary;
+    private DataSource replica0;
+    private DataSource replica1;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = dataSource(primaryConnection);
+        replica0 = dataSource(replica0Connection);
+        replica1 = dataSource(replica1Connection);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void isShouldUsePrimaryOutsideReadOnlyTransactions() throws SQLException {
+        //Given
+        ReadWriteRoutingDataSource underTest = new ReadWriteRoutingDataSource(
+                primary, List.of(replica0, replica1), ReplicaBalancing.ROUND_ROBIN);
+        underTest.enableReplicas();
+
+        //When
+        //Then
+        assertThat(underTest.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void isShouldUsePrimaryForReadOnlyTransactionsThatDidNotAskForReplica() throws SQLException {
+        //Given
+        ReadWriteRoutingDataSource underTest = new ReadWriteRoutingDataSource(
+                primary, List.of(replica0, replica1), ReplicaBalancing.ROUND_ROBIN);
+        underTest.enableReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //When
+        //Then
+        assertThat(underTest.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void isShouldSpreadReadOnlyTransactionsOverReplicasInTurn() throws SQLException {
+        //Given
+        ReadWriteRoutingDataSource underTest = new ReadWriteRoutingDataSource(
+                primary, List.of(replica0, replica1), ReplicaBalancing.ROUND_ROBIN);
+        underTest.enableReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //When
+        //Then
+        assertThat(onReplica(underTest)).isSameAs(replica0Connection);
+        assertThat(onReplica(underTest)).isSameAs(replica1Connection);
+        assertThat(onReplica(underTest)).isSameAs(replica0Connection);
+    }
+
+    @Test
+    void isShouldPickLeastLoadedReplica() throws SQLException {
+        //Given
+        Map<DataSource, Integer> connectionsInUse = Map.of(replica0, 3, replica1, 1);
+        ReadWriteRoutingDataSource underTest = new ReadWriteRoutingDataSource(
+                primary, List.of(replica0, replica1), ReplicaBalancing.LEAST_LOADED, connectionsInUse::get);
+        underTest.enableReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //When
+        //Then
+        assertThat(onReplica(underTest)).isSameAs(replica1Connection);
+        assertThat(onReplica(underTest)).isSameAs(replica1Connection);
+    }
+
+    @Test
+    void isShouldUsePrimaryWhenForced() throws SQLException {
+        //Given
+        ReadWriteRoutingDataSource underTest = new ReadWriteRoutingDataSource(
+                primary, List.of(replica0, replica1), ReplicaBalancing.ROUND_ROBIN);
+        underTest.enableReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //When
+        // ... a replica read nested in a forced one stays on the primary
+        Connection connection = DataSourceRouting.onPrimary(() -> onReplica(underTest));
+
+        //Then
+        assertThat(connection).isSameAs(primaryConnection);
+        assertThat(DataSourceRouting.isPrimaryForced()).isFalse();
+        assertThat(DataSourceRouting.isReplicaAllowed()).isFalse();
+    }
+
+    @Test
+    void isShouldUsePrimaryUntilReplicasAreEnabled() throws SQLException {
+        //Given
+        ReadWriteRoutingDataSource underTest = new ReadWriteRoutingDataSource(
+                primary, List.of(replica0, replica1), ReplicaBalancing.ROUND_ROBIN);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //When
+        //Then
+        assertThat(onReplica(underTest)).isSameAs(primaryConnection);
+    }
+
+    private static Connection onReplica(DataSource dataSource) {
+        return DataSourceRouting.onReplica(() -> {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static DataSource dataSource(Connection connection) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        given(dataSource.getConnection()).willReturn(connection);
+        return dataSource;
+    }
+}
@@ -0,0 +1,105 @@
+package com.amigoscode.testing.datasource;
+
+import com.amigoscode.testing.customer.Customer;
+import com.amigoscode.testing.customer.CustomerRegistrationRequest;
+import com.amigoscode.testing.customer.CustomerRegistrationService;
+import com.amigoscode.testing.customer.CustomerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Two H2 databases, the replica catching up with the primary's customer table only when told to
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "datasource.routing.enabled=true",
+        "datasource.routing.replicas[0].url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+        "datasource.routing.read-your-writes.window=1m",
+        "customer.phone-number-index.enabled=false",
+        "cache.hibernate.enabled=false"
+})
+class ReadWriteRoutingTest {
+
+    @Autowired
+    private CustomerRegistrationService customerRegistrationService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final JdbcTemplate replica = new JdbcTemplate(
+            new DriverManagerDataSource("jdbc:h2:mem:routing-replica", "sa", ""));
+
+    @BeforeEach
+    void setUp() {
+        replica.execute("create linked table if not exists primary_customer" +
+                "('org.h2.Driver', 'jdbc:h2:mem:routing-primary', 'sa', '', 'CUSTOMER')");
+        replica.execute("create table if not exists customer as select * from primary_customer with no data");
+        replicate();
+    }
+
+    @Test
+    void isShouldReadJustRegisteredCustomerFromPrimary() {
+        //Given
+        Customer customer = new Customer(UUID.randomUUID(), "Zoe", "07700 900001");
+
+        //When
+        customerRegistrationService.registerNewCustomer(new CustomerRegistrationRequest(customer));
+
+        //Then
+        assertThat(countOnReplica(customer.getId())).isZero();
+        assertThat(customerRegistrationService.getCustomer(customer.getId()).getName()).isEqualTo("Zoe");
+    }
+
+    @Test
+    void isShouldReadFromReplica() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        // ... written straight to the primary, behind the guard's back
+        jdbcTemplate.update("insert into customer (id, name, phone_number, phone_number_key) values (?, ?, ?, ?)",
+                customerId, "Marta", "07700 900002", 447700900002L);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> customerRegistrationService.getCustomer(customerId))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("not found");
+
+        replicate();
+        assertThat(customerRegistrationService.getCustomer(customerId).getName()).isEqualTo("Marta");
+    }
+
+    @Test
+    void isShouldReadFromPrimaryWhenReplicaIsNotAskedFor() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        jdbcTemplate.update("insert into customer (id, name, phone_number, phone_number_key) values (?, ?, ?, ?)",
+                customerId, "Ali", "07700 900003", 447700900003L);
+
+        //When
+        // ... a read-only repository transaction, but not one of the lookups that opt in to replicas
+        boolean found = customerRepository.findById(customerId).isPresent();
+
+        //Then
+        assertThat(found).isTrue();
+        assertThat(countOnReplica(customerId)).isZero();
+    }
+
+    private void replicate() {
+        replica.execute("delete from customer");
+        replica.execute("insert into customer select * from primary_customer");
+    }
+
+    private int countOnReplica(UUID customerId) {
+        return replica.queryForObject("select count(*) from customer where id = ?", Integer.class, customerId);
+    }
+}
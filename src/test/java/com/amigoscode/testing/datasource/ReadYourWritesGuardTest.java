@@ -0,0 +1,58 @@
+package com.amigoscode.testing.datasource;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadYourWritesGuardTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void isShouldReadJustWrittenKeyFromPrimary() {
+        //Given
+        ReadYourWritesGuard underTest = new ReadYourWritesGuard(true, Duration.ofSeconds(5), 100, nanos::get);
+        UUID customerId = UUID.randomUUID();
+        underTest.recordWrite(customerId);
+
+        //When
+        //Then
+        assertThat(underTest.read(customerId, DataSourceRouting::isPrimaryForced)).isTrue();
+        assertThat(underTest.read(UUID.randomUUID(), DataSourceRouting::isPrimaryForced)).isFalse();
+        assertThat(underTest.readAll(List.of(UUID.randomUUID(), customerId), DataSourceRouting::isPrimaryForced)).isTrue();
+        // ... any other key may be read from a replica
+        assertThat(underTest.read(UUID.randomUUID(), DataSourceRouting::isReplicaAllowed)).isTrue();
+        assertThat(underTest.read(customerId, DataSourceRouting::isReplicaAllowed)).isFalse();
+    }
+
+    @Test
+    void isShouldReadFromReplicasOnceWindowHasPassed() {
+        //Given
+        ReadYourWritesGuard underTest = new ReadYourWritesGuard(true, Duration.ofSeconds(5), 100, nanos::get);
+        UUID customerId = UUID.randomUUID();
+        underTest.recordWrite(customerId);
+
+        //When
+        nanos.addAndGet(Duration.ofSeconds(6).toNanos());
+
+        //Then
+        assertThat(underTest.read(customerId, DataSourceRouting::isPrimaryForced)).isFalse();
+    }
+
+    @Test
+    void isShouldNotRouteWhenReplicasAreNotUsed() {
+        //Given
+        ReadYourWritesGuard underTest = new ReadYourWritesGuard(false, Duration.ofSeconds(5), 100, nanos::get);
+        UUID customerId = UUID.randomUUID();
+        underTest.recordWrite(customerId);
+
+        //When
+        //Then
+        assertThat(underTest.read(customerId, DataSourceRouting::isPrimaryForced)).isFalse();
+    }
+}
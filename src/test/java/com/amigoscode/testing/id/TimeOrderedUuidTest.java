@@ -0,0 +1,71 @@
+package com.amigoscode.testing.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeOrderedUuidTest {
+
+    private final AtomicLong millis = new AtomicLong(1_585_735_200_000L);
+
+    private final TimeOrderedUuid underTest = new TimeOrderedUuid(millis::get);
+
+    @Test
+    void isShouldBeVersion7WithTimestampInHighBits() {
+        //Given
+        //When
+        UUID uuid = underTest.next();
+
+        //Then
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+        assertThat(uuid.getMostSignificantBits() >>> 16).isEqualTo(millis.get());
+    }
+
+    @Test
+    void isShouldIncreaseWithinSameMillisecond() {
+        //Given
+        List<UUID> uuids = new ArrayList<>();
+
+        //When
+        for (int i = 0; i < 10_000; i++) {
+            uuids.add(underTest.next());
+        }
+
+        //Then
+        assertThat(uuids).isSorted();
+        assertThat(uuids).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void isShouldNotGoBackwardsWhenClockDoes() {
+        //Given
+        UUID before = underTest.next();
+
+        //When
+        millis.addAndGet(-1_000);
+        UUID after = underTest.next();
+
+        //Then
+        assertThat(after).isGreaterThan(before);
+    }
+
+    @Test
+    void isShouldSortByCreationTime() {
+        //Given
+        UUID earlier = underTest.next();
+
+        //When
+        millis.addAndGet(1);
+        UUID later = underTest.next();
+
+        //Then
+        assertThat(later.getMostSignificantBits() >>> 16).isEqualTo(millis.get());
+        assertThat(later).isGreaterThan(earlier);
+    }
+}
@@ -0,0 +1,189 @@
+package com.amigoscode.testing.load;
+
+import com.amigoscode.testing.customer.CustomerRepository;
+import com.amigoscode.testing.customer.PhoneNumberNormalizer;
+import com.amigoscode.testing.payment.stripe.StripeApi;
+import com.stripe.model.Charge;
+import com.stripe.net.RequestOptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the registration and payment endpoints over http against a stub stripe api
+ * and publishes throughput and p99 latency as test report entries. Subclasses pick the threading mode,
+ * every pool, queue and route limit is sized to the client count here so nothing else differs; run with
+ * {@code -Dloadtest=true}, tune with {@code loadtest.requests}, {@code loadtest.concurrency}
+ * and {@code loadtest.stripe-latency-ms}.
+ */
+abstract class PaymentLoadHarness {
+
+    private static final int REQUESTS = Integer.getInteger("loadtest.requests", 5_000);
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 200);
+    private static final long STRIPE_LATENCY_MS = Long.getLong("loadtest.stripe-latency-ms", 50);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    // one charge in flight per client, whichever thread model carries it
+    @DynamicPropertySource
+    static void sizeLimitsToClients(DynamicPropertyRegistry registry) {
+        registry.add("payment.async.pool-size", () -> CONCURRENCY);
+        registry.add("payment.async.queue-capacity", () -> CONCURRENCY);
+        registry.add("payment.stripe.pool-size", () -> CONCURRENCY);
+        // an indexed route overrides the whole list, so restate the charger alongside the limit
+        registry.add("payment.routing.routes.USD[0].charger", () -> "circuitBreakingStripeService");
+        registry.add("payment.routing.routes.USD[0].weight", () -> 1);
+        registry.add("payment.routing.routes.USD[0].max-concurrency", () -> CONCURRENCY);
+    }
+
+    @Test
+    void measureRegistrationAndPaymentThroughput(TestReporter testReporter) throws Exception {
+        LoadResult registrations = run(i -> {
+            String body = String.format(
+                    "{\"customer\":{\"name\":\"Load %d\",\"phoneNumber\":\"%s\"}}",
+                    i, phoneNumber(i));
+            return HttpRequest.newBuilder(uri("/api/v1/customer-registration"))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        });
+        report(testReporter, "registration", registrations);
+
+        // ids are assigned by the server
+        UUID[] customerIds = new UUID[REQUESTS];
+        PhoneNumberNormalizer phoneNumberNormalizer = new PhoneNumberNormalizer("44");
+        for (int i = 0; i < REQUESTS; i++) {
+            customerIds[i] = customerRepository
+                    .selectCustomerByPhoneNumberKey(phoneNumberNormalizer.toKey(phoneNumber(i)))
+                    .orElseThrow()
+                    .getId();
+        }
+
+        LoadResult payments = run(i -> {
+            String body = "{\"payment\":{\"amount\":10.00,\"currency\":\"USD\"," +
+                    "\"source\":\"card123\",\"description\":\"load\"}}";
+            return HttpRequest.newBuilder(uri("/api/v1/payment/" + customerIds[i]))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        });
+        report(testReporter, "payment", payments);
+
+        assertThat(registrations.failures).isZero();
+        assertThat(payments.failures).isZero();
+    }
+
+    private LoadResult run(IntFunction<HttpRequest> requestFactory) throws InterruptedException {
+        long[] latencies = new long[REQUESTS];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        long start = System.nanoTime();
+        for (int c = 0; c < CONCURRENCY; c++) {
+            clients.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < REQUESTS) {
+                    HttpRequest request = requestFactory.apply(i);
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) failures.incrementAndGet();
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[i] = System.nanoTime() - sent;
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(10, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        return new LoadResult(
+                REQUESTS / (elapsed / 1e9),
+                latencies[(int) Math.ceil(REQUESTS * 0.99) - 1],
+                failures.get());
+    }
+
+    private void report(TestReporter testReporter, String name, LoadResult result) {
+        testReporter.publishEntry(name, String.format(
+                "%.1f req/s, p99 %.2f ms, %d failures (%d requests, %d clients, stripe %d ms)",
+                result.throughput, result.p99Nanos / 1e6, result.failures,
+                REQUESTS, CONCURRENCY, STRIPE_LATENCY_MS));
+    }
+
+    private static String phoneNumber(int i) {
+        return String.format("07700%06d", i);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static class LoadResult {
+        private final double throughput;
+        private final long p99Nanos;
+        private final int failures;
+
+        private LoadResult(double throughput, long p99Nanos, int failures) {
+            this.throughput = throughput;
+            this.p99Nanos = p99Nanos;
+            this.failures = failures;
+        }
+    }
+
+    @TestConfiguration
+    static class StubStripeConfig {
+
+        // Stands in for the network round trip to stripe
+        @Bean
+        @Primary
+        StripeApi stubStripeApi() {
+            return new StripeApi() {
+                @Override
+                public Charge create(Map<String, Object> params, RequestOptions options) {
+                    try {
+                        Thread.sleep(STRIPE_LATENCY_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    Charge charge = new Charge();
+                    charge.setPaid(true);
+                    return charge;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.amigoscode.testing.load;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "app.virtual-threads.enabled=false"
+})
+@Import(PaymentLoadHarness.StubStripeConfig.class)
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class PlatformThreadsPaymentLoadTest extends PaymentLoadHarness {
+}
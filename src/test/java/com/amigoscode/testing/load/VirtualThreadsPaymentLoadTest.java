@@ -0,0 +1,16 @@
+package com.amigoscode.testing.load;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+// Needs a Java 21+ runtime, startup fails fast on older JVMs
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "app.virtual-threads.enabled=true"
+})
+@Import(PaymentLoadHarness.StubStripeConfig.class)
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class VirtualThreadsPaymentLoadTest extends PaymentLoadHarness {
+}
@@ -0,0 +1,215 @@
+package com.amigoscode.testing.payment;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+class IdempotencyKeyStoreTest {
+
+    private static final Instant NOW = Instant.parse("2020-04-01T10:00:00Z");
+
+    @Mock
+    private IdempotentChargeRepository idempotentChargeRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger charges = new AtomicInteger();
+    private final AtomicInteger records = new AtomicInteger();
+
+    private IdempotencyKeyStore underTest;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        underTest = newStore(false);
+    }
+
+    @Test
+    void isShouldRunFirstAttemptOnlyOnce() {
+        //Given
+        CompletableFuture<CardPaymentCharge> first = underTest.execute("key-1", this::charge, this::record);
+
+        //When
+        CompletableFuture<CardPaymentCharge> retry = underTest.execute("key-1", this::charge, this::record);
+
+        //Then
+        assertThat(retry.join()).isSameAs(first.join());
+        assertThat(charges).hasValue(1);
+        assertThat(records).hasValue(1);
+    }
+
+    @Test
+    void isShouldForgetFailedAttemptSoItCanBeRetried() {
+        //Given
+        CompletableFuture<CardPaymentCharge> failed = underTest.execute("key-1",
+                () -> CompletableFuture.failedFuture(new IllegalStateException("stripe down")), this::record);
+
+        //When
+        CompletableFuture<CardPaymentCharge> retry = underTest.execute("key-1", this::charge, this::record);
+
+        //Then
+        assertThat(failed).hasFailedWithThrowableThat()
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("stripe down");
+        assertThat(retry.join().isCardDebited()).isTrue();
+        assertThat(charges).hasValue(1);
+    }
+
+    @Test
+    void isShouldKeepChargeAndRecordAgainWhenRecordFails() {
+        //Given
+        CompletableFuture<CardPaymentCharge> failed = underTest.execute("key-1", this::charge,
+                cardPaymentCharge -> CompletableFuture.failedFuture(new IllegalStateException("insert failed")));
+
+        //When
+        CompletableFuture<CardPaymentCharge> retry = underTest.execute("key-1", this::charge, this::record);
+
+        //Then
+        assertThat(failed).hasFailedWithThrowableThat()
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("insert failed");
+        assertThat(retry.join().isCardDebited()).isTrue();
+        assertThat(charges).hasValue(1);
+        assertThat(records).hasValue(1);
+    }
+
+    @Test
+    void isShouldChargeAgainAfterTtl() {
+        //Given
+        underTest.execute("key-1", this::charge, this::record).join();
+
+        //When
+        nanos.addAndGet(Duration.ofHours(25).toNanos());
+        underTest.execute("key-1", this::charge, this::record).join();
+
+        //Then
+        assertThat(charges).hasValue(2);
+    }
+
+    @Test
+    void isShouldAnswerFromTableWhenPersistent() {
+        //Given
+        underTest = newStore(true);
+        given(idempotentChargeRepository.findById("key-1")).willReturn(Optional.of(
+                new IdempotentCharge("key-1", true, true, NOW.minus(Duration.ofHours(1)))));
+
+        //When
+        CardPaymentCharge cardPaymentCharge = underTest.execute("key-1", this::charge, this::record).join();
+
+        //Then
+        assertThat(cardPaymentCharge.isCardDebited()).isTrue();
+        assertThat(charges).hasValue(0);
+        assertThat(records).hasValue(0);
+    }
+
+    @Test
+    void isShouldRecordWithoutChargingWhenTableHasUnrecordedCharge() {
+        //Given
+        underTest = newStore(true);
+        given(idempotentChargeRepository.findById("key-1")).willReturn(Optional.of(
+                new IdempotentCharge("key-1", true, false, NOW.minus(Duration.ofHours(1)))));
+
+        //When
+        CardPaymentCharge cardPaymentCharge = underTest.execute("key-1", this::charge, this::record).join();
+
+        //Then
+        assertThat(cardPaymentCharge.isCardDebited()).isTrue();
+        assertThat(charges).hasValue(0);
+        assertThat(records).hasValue(1);
+    }
+
+    @Test
+    void isShouldStoreOutcomeInTableWhenPersistent() {
+        //Given
+        underTest = newStore(true);
+        given(idempotentChargeRepository.findById("key-1")).willReturn(Optional.empty());
+
+        //When
+        underTest.execute("key-1", this::charge, this::record).join();
+
+        //Then
+        // ... once when charged, again when recorded
+        ArgumentCaptor<IdempotentCharge> idempotentChargeArgumentCaptor =
+                ArgumentCaptor.forClass(IdempotentCharge.class);
+        then(idempotentChargeRepository).should(times(2)).save(idempotentChargeArgumentCaptor.capture());
+
+        IdempotentCharge charged = idempotentChargeArgumentCaptor.getAllValues().get(0);
+        assertThat(charged.getIdempotencyKey()).isEqualTo("key-1");
+        assertThat(charged.isCardDebited()).isTrue();
+        assertThat(charged.isRecorded()).isFalse();
+        assertThat(charged.getCreatedAt()).isEqualTo(NOW);
+        assertThat(idempotentChargeArgumentCaptor.getAllValues().get(1).isRecorded()).isTrue();
+    }
+
+    @Test
+    void isShouldCountFailedStoreAndStillAnswerRetryFromMemory() {
+        //Given
+        underTest = newStore(true);
+        given(idempotentChargeRepository.findById("key-1")).willReturn(Optional.empty());
+        given(idempotentChargeRepository.save(any(IdempotentCharge.class)))
+                .willThrow(new IllegalStateException("database down"));
+
+        //When
+        CardPaymentCharge first = underTest.execute("key-1", this::charge, this::record).join();
+        CardPaymentCharge retry = underTest.execute("key-1", this::charge, this::record).join();
+
+        //Then
+        assertThat(retry).isSameAs(first);
+        assertThat(charges).hasValue(1);
+        // ... once when charged, again when recorded
+        assertThat(meterRegistry.get("payment.idempotency.store.failures").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void isShouldIgnoreExpiredRowInTable() {
+        //Given
+        underTest = newStore(true);
+        given(idempotentChargeRepository.findById("key-1")).willReturn(Optional.of(
+                new IdempotentCharge("key-1", true, true, NOW.minus(Duration.ofHours(25)))));
+
+        //When
+        underTest.execute("key-1", this::charge, this::record).join();
+
+        //Then
+        assertThat(charges).hasValue(1);
+    }
+
+    private CompletableFuture<CardPaymentCharge> charge() {
+        charges.incrementAndGet();
+        return CompletableFuture.completedFuture(new CardPaymentCharge(true));
+    }
+
+    private CompletableFuture<Void> record(CardPaymentCharge cardPaymentCharge) {
+        records.incrementAndGet();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private IdempotencyKeyStore newStore(boolean persistent) {
+        return new IdempotencyKeyStore(
+                idempotentChargeRepository,
+                100,
+                Duration.ofHours(24),
+                persistent,
+                meterRegistry,
+                nanos::get,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,52 @@
+package com.amigoscode.testing.payment;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MinorUnitsJsonTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void isShouldReadPaymentRequestAmountAsMoney() throws Exception {
+        //Given
+        String json = "{\"payment\":{\"amount\":100.50,\"currency\":\"GBP\"," +
+                "\"source\":\"card123xx\",\"description\":\"Donation\"}}";
+
+        //When
+        PaymentRequest paymentRequest = objectMapper.readValue(json, PaymentRequest.class);
+
+        //Then
+        assertThat(paymentRequest.getPayment().getAmount()).isEqualTo(Money.parse("100.50", Currency.GBP));
+    }
+
+    @Test
+    void isShouldWritePaymentAmountAsDecimalAndReadItBack() throws Exception {
+        //Given
+        Payment payment = new Payment(1L, null, Money.parse("7.05", Currency.USD), "card123xx", "Donation");
+
+        //When
+        String json = objectMapper.writeValueAsString(payment);
+
+        //Then
+        assertThat(json).contains("\"amount\":7.05").contains("\"currency\":\"USD\"")
+                .doesNotContain("amountInMinorUnits");
+        assertThat(objectMapper.readValue(json, Payment.class).getAmount()).isEqualTo(payment.getAmount());
+    }
+
+    @Test
+    void isShouldRejectAmountWithMoreThanTwoDecimalPlaces() {
+        //Given
+        String json = "{\"payment\":{\"amount\":1.005,\"currency\":\"USD\"}}";
+
+        //When
+        //Then
+        assertThatThrownBy(() -> objectMapper.readValue(json, PaymentRequest.class))
+                .isInstanceOf(JsonMappingException.class)
+                .hasMessageContaining("at most 2 decimal places");
+    }
+}
@@ -0,0 +1,95 @@
+package com.amigoscode.testing.payment;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+    @Test
+    void isShouldParseDecimalIntoMinorUnits() {
+        //Given
+        //When
+        //Then
+        assertThat(Money.parse("100.00", Currency.USD).getMinorUnits()).isEqualTo(10000);
+        assertThat(Money.parse("100.5", Currency.USD).getMinorUnits()).isEqualTo(10050);
+        assertThat(Money.parse("100", Currency.USD).getMinorUnits()).isEqualTo(10000);
+        assertThat(Money.parse(".05", Currency.USD).getMinorUnits()).isEqualTo(5);
+        assertThat(Money.parse("-2.50", Currency.USD).getMinorUnits()).isEqualTo(-250);
+        assertThat(Money.parse("10.500", Currency.USD).getMinorUnits()).isEqualTo(1050);
+    }
+
+    @Test
+    void isShouldNotParseAmountWithMoreThanTwoDecimalPlaces() {
+        //Given
+        //When
+        //Then
+        assertThatThrownBy(() -> Money.parse("10.505", Currency.USD))
+                .isInstanceOf(NumberFormatException.class)
+                .hasMessageContaining("Amount [10.505] is not a decimal with at most 2 decimal places");
+    }
+
+    @Test
+    void isShouldNotParseSomethingThatIsNotADecimal() {
+        //Given
+        //When
+        //Then
+        assertThatThrownBy(() -> Money.parse("1e2", Currency.USD)).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("-", Currency.USD)).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("", Currency.USD)).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("99999999999999999999", Currency.USD))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void isShouldParseSliceOfBuffer() {
+        //Given
+        char[] buffer = "{\"amount\":12.34}".toCharArray();
+
+        //When
+        long minorUnits = Money.parseMinorUnits(buffer, 10, 5);
+
+        //Then
+        assertThat(minorUnits).isEqualTo(1234);
+    }
+
+    @Test
+    void isShouldConvertToAndFromBigDecimal() {
+        //Given
+        Money money = Money.of(new BigDecimal("12.3"), Currency.GBP);
+
+        //When
+        //Then
+        assertThat(money.getMinorUnits()).isEqualTo(1230);
+        assertThat(money.toBigDecimal()).isEqualTo(new BigDecimal("12.30"));
+        assertThatThrownBy(() -> Money.of(new BigDecimal("12.345"), Currency.GBP))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void isShouldAddOnlySameCurrency() {
+        //Given
+        Money money = Money.parse("1.50", Currency.USD);
+
+        //When
+        //Then
+        assertThat(money.plus(Money.parse("2.75", Currency.USD))).isEqualTo(Money.parse("4.25", Currency.USD));
+        assertThatThrownBy(() -> money.plus(Money.parse("1.00", Currency.GBP)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Cannot add GBP to USD");
+    }
+
+    @Test
+    void isShouldFormatWithTwoDecimalPlaces() {
+        //Given
+        //When
+        //Then
+        assertThat(Money.format(10000)).isEqualTo("100.00");
+        assertThat(Money.format(5)).isEqualTo("0.05");
+        assertThat(Money.format(-105)).isEqualTo("-1.05");
+        assertThat(Money.parse("7.5", Currency.EUR)).hasToString("7.50 EUR");
+    }
+}
@@ -0,0 +1,207 @@
+package com.amigoscode.testing.payment;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+class PaymentAggregatesTest {
+
+    private static final Instant NOW = Instant.parse("2020-05-01T10:00:00Z");
+
+    @Mock
+    private PaymentStore paymentStore;
+    @Mock
+    private PaymentAggregateCheckpointRepository checkpointRepository;
+
+    private PaymentAggregates underTest;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        underTest = new PaymentAggregates(paymentStore, checkpointRepository, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void isShouldKeepCountTotalMinAndMaxPerCustomerAndCurrency() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        underTest.record(payment(customerId, "10.00", Currency.USD));
+        underTest.record(payment(customerId, "2.50", Currency.USD));
+        underTest.record(payment(customerId, "7.25", Currency.GBP));
+
+        // ... someone else's payment
+        underTest.record(payment(UUID.randomUUID(), "100.00", Currency.USD));
+
+        //When
+        List<PaymentAggregate> aggregates = underTest.getCustomerAggregates(customerId);
+
+        //Then
+        assertThat(aggregates).hasSize(2);
+        assertAggregate(aggregates.get(0), Currency.USD, 2, "12.50", "2.50", "10.00");
+        assertAggregate(aggregates.get(1), Currency.GBP, 1, "7.25", "7.25", "7.25");
+    }
+
+    @Test
+    void isShouldKeepTotalsPerCurrencyAcrossCustomers() {
+        //Given
+        underTest.record(payment(UUID.randomUUID(), "10.00", Currency.USD));
+        underTest.record(payment(UUID.randomUUID(), "30.00", Currency.USD));
+
+        //When
+        List<PaymentAggregate> aggregates = underTest.getCurrencyAggregates();
+
+        //Then
+        assertThat(aggregates).hasSize(Currency.values().length);
+        assertAggregate(aggregates.get(0), Currency.USD, 2, "40.00", "10.00", "30.00");
+        assertThat(aggregates.get(2).getCount()).isZero();
+        assertThat(aggregates.get(2).getTotal()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(aggregates.get(2).getMin()).isNull();
+    }
+
+    @Test
+    void isShouldReturnNoAggregatesForCustomerWithoutPayments() {
+        //Given
+        //When
+        //Then
+        assertThat(underTest.getCustomerAggregates(UUID.randomUUID())).isEmpty();
+    }
+
+    @Test
+    void isShouldRebuildFromPaymentTable() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        UUID otherCustomerId = UUID.randomUUID();
+        List<PaymentAggregateRow> rows = List.of(
+                row(customerId, Currency.USD, 3, "30.00", "5.00", "15.00"),
+                row(otherCustomerId, Currency.USD, 1, "1.00", "1.00", "1.00"));
+        given(paymentStore.aggregateByCustomerAndCurrency()).willReturn(rows);
+
+        //When
+        underTest.rebuild();
+        underTest.record(payment(customerId, "20.00", Currency.USD));
+
+        //Then
+        assertAggregate(underTest.getCustomerAggregates(customerId).get(0), Currency.USD, 4, "50.00", "5.00", "20.00");
+        assertAggregate(underTest.getCurrencyAggregates().get(0), Currency.USD, 5, "51.00", "1.00", "20.00");
+    }
+
+    @Test
+    void isShouldCheckpointOnlyCustomersChangedSinceLastCheckpoint() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        UUID otherCustomerId = UUID.randomUUID();
+        underTest.record(payment(customerId, "10.00", Currency.USD));
+        underTest.checkpoint();
+
+        underTest.record(payment(otherCustomerId, "5.00", Currency.GBP));
+
+        //When
+        underTest.checkpoint();
+
+        //Then
+        ArgumentCaptor<Iterable<PaymentAggregateCheckpoint>> checkpointsArgumentCaptor =
+                ArgumentCaptor.forClass(Iterable.class);
+        then(checkpointRepository).should(times(2)).saveAll(checkpointsArgumentCaptor.capture());
+
+        List<PaymentAggregateCheckpoint> checkpoints = new ArrayList<>();
+        checkpointsArgumentCaptor.getAllValues().get(1).forEach(checkpoints::add);
+        assertThat(checkpoints).hasSize(1);
+        PaymentAggregateCheckpoint checkpoint = checkpoints.get(0);
+        assertThat(checkpoint.getKey()).isEqualTo(new PaymentAggregateKey(otherCustomerId, Currency.GBP));
+        assertThat(checkpoint.getCount()).isEqualTo(1);
+        assertThat(checkpoint.getTotal()).isEqualByComparingTo("5.00");
+        assertThat(checkpoint.getCheckpointedAt()).isEqualTo(NOW);
+    }
+
+    @Test
+    void isShouldNotWriteCheckpointWhenNothingChanged() {
+        //Given
+        //When
+        underTest.checkpoint();
+
+        //Then
+        then(checkpointRepository).should(never()).saveAll(anyIterable());
+    }
+
+    @Test
+    void isShouldRetryCheckpointWhenSaveFails() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        underTest.record(payment(customerId, "10.00", Currency.USD));
+        given(checkpointRepository.saveAll(anyIterable()))
+                .willThrow(new IllegalStateException("database down"))
+                .willReturn(List.of());
+        assertThatThrownBy(() -> underTest.checkpoint()).hasMessage("database down");
+
+        //When
+        underTest.checkpoint();
+
+        //Then
+        then(checkpointRepository).should(times(2)).saveAll(anyIterable());
+    }
+
+    @Test
+    void isShouldNotLoseConcurrentPayments() throws InterruptedException {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        //When
+        for (int i = 0; i < 4_000; i++) {
+            String amount = i % 2 == 0 ? "1.00" : "3.00";
+            executor.execute(() -> underTest.record(payment(customerId, amount, Currency.USD)));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        //Then
+        assertAggregate(underTest.getCustomerAggregates(customerId).get(0), Currency.USD, 4_000, "8000.00", "1.00", "3.00");
+    }
+
+    private static Payment payment(UUID customerId, String amount, Currency currency) {
+        return new Payment(null, customerId, Money.parse(amount, currency), "card123xx", "Donation");
+    }
+
+    private static PaymentAggregateRow row(UUID customerId, Currency currency, long count,
+                                           String total, String min, String max) {
+        PaymentAggregateRow row = mock(PaymentAggregateRow.class);
+        given(row.getCustomerId()).willReturn(customerId);
+        given(row.getCurrency()).willReturn(currency);
+        given(row.getCount()).willReturn(count);
+        given(row.getTotal()).willReturn(Money.parse(total, currency).getMinorUnits());
+        given(row.getMin()).willReturn(Money.parse(min, currency).getMinorUnits());
+        given(row.getMax()).willReturn(Money.parse(max, currency).getMinorUnits());
+        return row;
+    }
+
+    private static void assertAggregate(PaymentAggregate aggregate, Currency currency, long count,
+                                        String total, String min, String max) {
+        assertThat(aggregate.getCurrency()).isEqualTo(currency);
+        assertThat(aggregate.getCount()).isEqualTo(count);
+        assertThat(aggregate.getTotal()).isEqualByComparingTo(total);
+        assertThat(aggregate.getMin()).isEqualByComparingTo(min);
+        assertThat(aggregate.getMax()).isEqualByComparingTo(max);
+    }
+}
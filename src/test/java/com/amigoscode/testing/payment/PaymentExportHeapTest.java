@@ -0,0 +1,100 @@
+package com.amigoscode.testing.payment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exports a table of millions of generated payments and samples the live heap (after a
+ * full gc) at each quarter of the export. Run with {@code -Dexporttest=true}, size with
+ * {@code exporttest.rows}; give the jvm enough heap to hold the in-memory table itself.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.javax.persistence.validation.mode=none"
+})
+// the application's own datasource, so the export streams only if application.properties makes it
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PaymentExportService.class)
+@EnabledIfSystemProperty(named = "exporttest", matches = "true")
+class PaymentExportHeapTest {
+
+    private static final int ROWS = Integer.getInteger("exporttest.rows", 2_000_000);
+    private static final long MAX_HEAP_GROWTH = 32 * 1024 * 1024;
+
+    @Autowired
+    private PaymentExportService underTest;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    @Test
+    void isShouldExportMillionsOfRowsWithFlatHeap(TestReporter testReporter) throws IOException {
+        //Given
+        jdbcTemplate.update("INSERT INTO payment (payment_id, customer_id, amount, currency, source, description) " +
+                "SELECT X, RANDOM_UUID(), 10.00, 0, 'card123', 'Donation' FROM SYSTEM_RANGE(1, ?)", ROWS);
+        long baseline = liveHeap();
+
+        //When
+        HeapSamplingOutputStream outputStream = new HeapSamplingOutputStream(ROWS / 4);
+        underTest.exportPayments(PaymentExportFormat.NDJSON, outputStream);
+
+        //Then
+        testReporter.publishEntry("heap", String.format("%d rows, live heap before %d MB, during %s MB",
+                outputStream.lines, baseline >> 20, outputStream.samplesInMegabytes()));
+        assertThat(outputStream.lines).isEqualTo(ROWS);
+        assertThat(outputStream.samples).hasSizeGreaterThanOrEqualTo(3)
+                .allSatisfy(sample -> assertThat(sample - baseline).isLessThan(MAX_HEAP_GROWTH));
+    }
+
+    private long liveHeap() {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    // Discards the export, counting lines and taking a heap sample every sampleEvery lines
+    private class HeapSamplingOutputStream extends OutputStream {
+        private final int sampleEvery;
+        private final List<Long> samples = new ArrayList<>();
+        private long lines;
+
+        private HeapSamplingOutputStream(int sampleEvery) {
+            this.sampleEvery = sampleEvery;
+        }
+
+        @Override
+        public void write(int b) {
+            if (b == '\n' && ++lines % sampleEvery == 0) {
+                samples.add(liveHeap());
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        private List<Long> samplesInMegabytes() {
+            List<Long> megabytes = new ArrayList<>();
+            samples.forEach(sample -> megabytes.add(sample >> 20));
+            return megabytes;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.amigoscode.testing.payment;
+
+import com.amigoscode.testing.payment.sharding.PaymentShardingProperties;
+import com.amigoscode.testing.payment.sharding.ShardedPaymentStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.javax.persistence.validation.mode=none"
+})
+@Import(PaymentExportService.class)
+class PaymentExportServiceTest {
+
+    @Autowired
+    private PaymentExportService underTest;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void isShouldExportPaymentsAsCsv() throws IOException {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        Payment first = entityManager.persistAndFlush(
+                new Payment(null, customerId, Money.parse("10.00", Currency.USD), "card123", "Donation"));
+        Payment second = entityManager.persistAndFlush(
+                new Payment(null, customerId, Money.parse("2.50", Currency.GBP), "card123", "Tea, \"large\""));
+        entityManager.clear();
+
+        //When
+        String csv = export(PaymentExportFormat.CSV);
+
+        //Then
+        assertThat(csv).isEqualTo(
+                "paymentId,customerId,amount,currency,source,description\n" +
+                        first.getPaymentId() + "," + customerId + ",10.00,USD,card123,Donation\n" +
+                        second.getPaymentId() + "," + customerId + ",2.50,GBP,card123,\"Tea, \"\"large\"\"\"\n");
+    }
+
+    @Test
+    void isShouldExportPaymentsAsNdjson() throws IOException {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        Payment payment = entityManager.persistAndFlush(
+                new Payment(null, customerId, Money.parse("10.00", Currency.EUR), "card123", "Donation"));
+        entityManager.clear();
+
+        //When
+        String ndjson = export(PaymentExportFormat.NDJSON);
+
+        //Then
+        assertThat(ndjson).isEqualTo(
+                "{\"paymentId\":" + payment.getPaymentId() + ",\"customerId\":\"" + customerId + "\"," +
+                        "\"amount\":10.00,\"currency\":\"EUR\",\"source\":\"card123\",\"description\":\"Donation\"}\n");
+    }
+
+    @Test
+    void isShouldReadColumnsAsHibernateStoresThem() throws IOException {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        List<Payment> payments = new ArrayList<>();
+        for (Currency currency : Currency.values()) {
+            payments.add(entityManager.persistAndFlush(
+                    new Payment(null, customerId, Money.parse("1.00", currency), "card123", "Donation")));
+        }
+        entityManager.clear();
+
+        //When
+        String csv = export(PaymentExportFormat.CSV);
+
+        //Then
+        StringBuilder expected = new StringBuilder("paymentId,customerId,amount,currency,source,description\n");
+        for (Payment payment : payments) {
+            // ... currency is stored by ordinal, which the shards and the export rely on
+            Number stored = (Number) entityManager.getEntityManager()
+                    .createNativeQuery("SELECT currency FROM payment WHERE payment_id = ?1")
+                    .setParameter(1, payment.getPaymentId())
+                    .getSingleResult();
+            assertThat(stored.intValue()).isEqualTo(payment.getCurrency().ordinal());
+            expected.append(payment.getPaymentId()).append(',').append(customerId)
+                    .append(",1.00,").append(payment.getCurrency()).append(",card123,Donation\n");
+        }
+        assertThat(csv).isEqualTo(expected.toString());
+    }
+
+    @Test
+    void isShouldMergeShardsInPaymentIdOrder() throws IOException {
+        //Given
+        PaymentShardingProperties properties = new PaymentShardingProperties();
+        for (int i = 0; i < 3; i++) {
+            properties.getShards().add(new PaymentShardingProperties.Shard(
+                    "jdbc:h2:mem:export-shard-" + i + "-" + UUID.randomUUID(), 2));
+        }
+        ShardedPaymentStore shardedPaymentStore = new ShardedPaymentStore(properties);
+        try {
+            List<Payment> payments = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                payments.add(new Payment(null, UUID.randomUUID(), Money.parse("1.00", Currency.USD), "card123", "Donation"));
+            }
+            shardedPaymentStore.saveAll(payments);
+            // ... fetch size 2, so every shard is read in several round trips
+            PaymentExportService shardedExport = new PaymentExportService(null, shardedPaymentStore, 2);
+
+            //When
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            shardedExport.exportPayments(PaymentExportFormat.CSV, outputStream);
+
+            //Then
+            StringBuilder expected = new StringBuilder("paymentId,customerId,amount,currency,source,description\n");
+            payments.stream()
+                    .sorted(Comparator.comparing(Payment::getPaymentId))
+                    .forEach(payment -> expected.append(payment.getPaymentId()).append(',')
+                            .append(payment.getCustomerId()).append(",1.00,USD,card123,Donation\n"));
+            assertThat(outputStream.toString(StandardCharsets.UTF_8)).isEqualTo(expected.toString());
+        } finally {
+            shardedPaymentStore.close();
+        }
+    }
+
+    private String export(PaymentExportFormat format) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        underTest.exportPayments(format, outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+}
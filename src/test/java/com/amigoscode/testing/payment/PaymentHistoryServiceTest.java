@@ -0,0 +1,113 @@
+package com.amigoscode.testing.payment;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+
+class PaymentHistoryServiceTest {
+
+    @Mock
+    private PaymentStore paymentStore;
+
+    private PaymentHistoryService underTest;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        underTest = new PaymentHistoryService(paymentStore);
+    }
+
+    @Test
+    void isShouldReturnFirstPageWithCursorWhenPageIsFull() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        given(paymentStore.findByCustomerIdOrderByPaymentIdDesc(customerId, PageRequest.of(0, 2)))
+                .willReturn(List.of(summary(9L), summary(7L)));
+
+        //When
+        PaymentHistoryPage page = underTest.getPaymentHistory(customerId, null, 2);
+
+        //Then
+        assertThat(page.getPayments()).extracting(PaymentSummary::getPaymentId).containsExactly(9L, 7L);
+        assertThat(page.getNextBefore()).isEqualTo(7L);
+    }
+
+    @Test
+    void isShouldSeekPastCursorAndEndWhenPageIsShort() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        given(paymentStore.findByCustomerIdAndPaymentIdLessThanOrderByPaymentIdDesc(
+                customerId, 7L, PageRequest.of(0, 2)))
+                .willReturn(List.of(summary(3L)));
+
+        //When
+        PaymentHistoryPage page = underTest.getPaymentHistory(customerId, 7L, 2);
+
+        //Then
+        assertThat(page.getPayments()).extracting(PaymentSummary::getPaymentId).containsExactly(3L);
+        assertThat(page.getNextBefore()).isNull();
+    }
+
+    @Test
+    void isShouldThrowWhenLimitIsTooLarge() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getPaymentHistory(customerId, null, 101))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Limit [101] must be between 1 and 100");
+        then(paymentStore).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void isShouldNotReturnPaymentOfAnotherCustomer() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        Payment payment = new Payment(7L, UUID.randomUUID(), Money.parse("10.00", Currency.USD), "card123", "Donation");
+        given(paymentStore.findById(7L)).willReturn(Optional.of(payment));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getPayment(customerId, 7L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(String.format("Payment [7] of customer [%s] not found", customerId));
+        assertThat(underTest.getPayment(payment.getCustomerId(), 7L)).isSameAs(payment);
+    }
+
+    private static PaymentSummary summary(Long paymentId) {
+        return new PaymentSummary() {
+            @Override
+            public Long getPaymentId() {
+                return paymentId;
+            }
+
+            @Override
+            public long getAmount() {
+                return 1000;
+            }
+
+            @Override
+            public Currency getCurrency() {
+                return Currency.USD;
+            }
+
+            @Override
+            public String getDescription() {
+                return "Donation";
+            }
+        };
+    }
+}
@@ -1,10 +1,17 @@
 package com.amigoscode.testing.payment;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 
-import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -25,17 +32,119 @@ class PaymentRepositoryTest {
         Payment payment = new Payment(
                 1L,
                 UUID.randomUUID(),
-                new BigDecimal("10.00"),
-                Currency.USD,
+                Money.parse("10.00", Currency.USD),
                 "card123",
                 "Donation");
         //When
-        underTest.save(payment);
+        // ... the id comes from payment_id_sequence, whatever the payment carried
+        Payment savedPayment = underTest.save(payment);
 
         //Then
-        Optional<Payment> paymentOptional = underTest.findById(payment.getPaymentId());
+        assertThat(savedPayment).isEqualToIgnoringGivenFields(payment, "paymentId");
+        Optional<Payment> paymentOptional = underTest.findById(savedPayment.getPaymentId());
         assertThat(paymentOptional).isPresent()
                 .hasValueSatisfying( p ->
-                        assertThat(p).isEqualToComparingFieldByField(payment));
+                        assertThat(p).isEqualToComparingFieldByField(savedPayment));
     }
-}
\ No newline at end of file
+
+    @Test
+    void isShouldPageCustomerPaymentsNewestFirstByKeyset() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        Payment first = underTest.save(new Payment(null, customerId, Money.parse("1.00", Currency.USD), "card123", "first"));
+        Payment second = underTest.save(new Payment(null, customerId, Money.parse("2.00", Currency.USD), "card123", "second"));
+        Payment third = underTest.save(new Payment(null, customerId, Money.parse("3.00", Currency.GBP), "card123", "third"));
+
+        // ... someone else's payment
+        underTest.save(new Payment(null, UUID.randomUUID(), Money.parse("4.00", Currency.USD), "card456", "other"));
+
+        //When
+        List<PaymentSummary> firstPage =
+                underTest.findByCustomerIdOrderByPaymentIdDesc(customerId, PageRequest.of(0, 2));
+        List<PaymentSummary> secondPage = underTest.findByCustomerIdAndPaymentIdLessThanOrderByPaymentIdDesc(
+                customerId, firstPage.get(1).getPaymentId(), PageRequest.of(0, 2));
+
+        //Then
+        assertThat(firstPage).extracting(PaymentSummary::getPaymentId)
+                .containsExactly(third.getPaymentId(), second.getPaymentId());
+        assertThat(firstPage.get(0).getCurrency()).isEqualTo(Currency.GBP);
+        assertThat(firstPage.get(0).getDescription()).isEqualTo("third");
+        assertThat(secondPage).extracting(PaymentSummary::getPaymentId)
+                .containsExactly(first.getPaymentId());
+        // ... in minor units
+        assertThat(secondPage.get(0).getAmount()).isEqualTo(100);
+    }
+
+    @Test
+    void isShouldAggregatePaymentsPerCustomerAndCurrency() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        underTest.save(new Payment(null, customerId, Money.parse("10.00", Currency.USD), "card123", "first"));
+        underTest.save(new Payment(null, customerId, Money.parse("2.50", Currency.USD), "card123", "second"));
+        underTest.save(new Payment(null, customerId, Money.parse("7.00", Currency.GBP), "card123", "third"));
+
+        //When
+        List<PaymentAggregateRow> rows = underTest.aggregateByCustomerAndCurrency();
+
+        //Then
+        assertThat(rows)
+                .filteredOn(row -> row.getCustomerId().equals(customerId))
+                .hasSize(2)
+                .anySatisfy(row -> {
+                    assertThat(row.getCurrency()).isEqualTo(Currency.USD);
+                    assertThat(row.getCount()).isEqualTo(2);
+                    assertThat(row.getTotal()).isEqualTo(1250);
+                    assertThat(row.getMin()).isEqualTo(250);
+                    assertThat(row.getMax()).isEqualTo(1000);
+                })
+                .anySatisfy(row -> {
+                    assertThat(row.getCurrency()).isEqualTo(Currency.GBP);
+                    assertThat(row.getCount()).isEqualTo(1);
+                    assertThat(row.getTotal()).isEqualTo(700);
+                });
+    }
+
+    @Test
+    void isShouldNotStoreReplayedPaymentTwice(@TempDir Path journalDirectory) throws Exception {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        PaymentWriteBehindQueue writeBehindQueue = writeBehindQueue(journalDirectory);
+        writeBehindQueue.recover();
+        writeBehindQueue.enqueue(new Payment(null, customerId, Money.parse("10.00", Currency.USD), "card123", "first"));
+        writeBehindQueue.enqueue(new Payment(null, customerId, Money.parse("2.50", Currency.USD), "card123", "second"));
+        writeBehindQueue.stop();
+
+        // ... the previous run saved the segment and died before its checkpoint
+        Files.writeString(journalDirectory.resolve("payments.checkpoint"), "0");
+
+        //When
+        PaymentWriteBehindQueue restarted = writeBehindQueue(journalDirectory);
+        restarted.recover();
+        restarted.flush();
+
+        //Then
+        assertThat(underTest.aggregateByCustomerAndCurrency())
+                .filteredOn(row -> row.getCustomerId().equals(customerId))
+                .hasSize(1)
+                .allSatisfy(row -> {
+                    assertThat(row.getCount()).isEqualTo(2);
+                    assertThat(row.getTotal()).isEqualTo(1250);
+                });
+        assertThat(Files.readString(journalDirectory.resolve("payments.checkpoint"))).isEqualTo("2");
+    }
+
+    private PaymentWriteBehindQueue writeBehindQueue(Path journalDirectory) {
+        return new PaymentWriteBehindQueue(
+                underTest,
+                new ObjectMapper(),
+                new SimpleMeterRegistry(),
+                true,
+                journalDirectory.toString(),
+                10,
+                Duration.ofMillis(20),
+                false,
+                10,
+                3,
+                10);
+    }
+}
@@ -1,38 +1,83 @@
 package com.amigoscode.testing.payment;
 
+import com.amigoscode.testing.cache.CacheNames;
 import com.amigoscode.testing.customer.Customer;
+import com.amigoscode.testing.customer.CustomerExistenceCache;
 import com.amigoscode.testing.customer.CustomerRepository;
+import com.amigoscode.testing.datasource.ReadYourWritesGuard;
+import com.amigoscode.testing.payment.notification.PaymentNotificationQueue;
+import com.amigoscode.testing.payment.routing.CardPaymentChargerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.mockito.MockitoAnnotations;
 
-import java.math.BigDecimal;
-import java.util.Optional;
+import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 
 class PaymentServiceTest {
 
     @Mock
     private CustomerRepository customerRepository;
     @Mock
-    private PaymentRepository paymentRepository;
+    private CustomerExistenceCache customerExistenceCache;
     @Mock
-    private CardPaymentCharger cardPaymentCharger;
+    private PaymentStore paymentStore;
+    @Mock
+    private CardPaymentChargerRegistry cardPaymentChargerRegistry;
+    @Mock
+    private AsyncCardPaymentCharger asyncCardPaymentCharger;
+    @Mock
+    private IdempotentChargeRepository idempotentChargeRepository;
+    @Mock
+    private PaymentWriteBehindQueue paymentWriteBehindQueue;
+    @Mock
+    private PaymentAggregates paymentAggregates;
+    @Mock
+    private PaymentNotificationQueue paymentNotificationQueue;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ConcurrentMapCacheManager cacheManager;
+
+    private PaymentBatchExecutor paymentBatchExecutor;
 
     private PaymentService underTest;
 
     @BeforeEach
     void setup() {
         MockitoAnnotations.initMocks(this);
-        underTest = new PaymentService(customerRepository, paymentRepository, cardPaymentCharger);
+        meterRegistry = new SimpleMeterRegistry();
+        IdempotencyKeyStore idempotencyKeyStore =
+                new IdempotencyKeyStore(idempotentChargeRepository, 100, Duration.ofHours(24), false, meterRegistry);
+        // ... providers are routed for USD and GBP only
+        given(cardPaymentChargerRegistry.supports(Currency.USD)).willReturn(true);
+        given(cardPaymentChargerRegistry.supports(Currency.GBP)).willReturn(true);
+        cacheManager = new ConcurrentMapCacheManager();
+        paymentBatchExecutor = new PaymentBatchExecutor(2, false);
+        underTest = new PaymentService(customerRepository, customerExistenceCache, new ReadYourWritesGuard(false, Duration.ofSeconds(5), 100), paymentStore, cardPaymentChargerRegistry, asyncCardPaymentCharger, idempotencyKeyStore, paymentWriteBehindQueue, paymentAggregates, paymentNotificationQueue, new PaymentMetrics(meterRegistry), cacheManager, paymentBatchExecutor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        paymentBatchExecutor.shutdown();
     }
 
     @Test
@@ -41,25 +86,23 @@ class PaymentServiceTest {
         UUID customerId = UUID.randomUUID();
 
         //... customer exist
-        given(customerRepository.findById(customerId)).willReturn(Optional.of(mock(Customer.class)));
+        given(customerRepository.existsById(customerId)).willReturn(true);
 
         // ... Payment request
         PaymentRequest paymentRequest = new PaymentRequest(
                 new Payment(
                         null,
                         customerId,
-                        new BigDecimal("100.00"),
-                        Currency.USD,
+                        Money.parse("100.00", Currency.USD),
                         "card123xx",
                         "Donation"
                 )
         );
 
         // ... Card is charged successfully
-        given(cardPaymentCharger.chargeCard(
+        given(cardPaymentChargerRegistry.chargeCard(
                 paymentRequest.getPayment().getSource(),
                 paymentRequest.getPayment().getAmount(),
-                paymentRequest.getPayment().getCurrency(),
                 paymentRequest.getPayment().getDescription()
         )).willReturn(new CardPaymentCharge(true));
 
@@ -69,12 +112,70 @@ class PaymentServiceTest {
         //Then
         ArgumentCaptor<Payment> paymentArgumentCaptor = ArgumentCaptor.forClass(Payment.class);
 
-        then(paymentRepository).should().save(paymentArgumentCaptor.capture());
+        then(paymentStore).should().save(paymentArgumentCaptor.capture());
 
         Payment savedPaymentValue = paymentArgumentCaptor.getValue();
         assertThat(savedPaymentValue).isEqualToIgnoringGivenFields(paymentRequest.getPayment(), "customerId");
 
         assertThat(savedPaymentValue.getCustomerId()).isEqualTo(customerId);
+        then(paymentAggregates).should().record(savedPaymentValue);
+        then(paymentNotificationQueue).should().publish(savedPaymentValue);
+
+        // ... every step is timed and the charge counted as a success
+        assertThat(stepCount("customer_lookup")).isEqualTo(1);
+        assertThat(stepCount("currency_check")).isEqualTo(1);
+        assertThat(stepCount("card_charge")).isEqualTo(1);
+        assertThat(stepCount("save")).isEqualTo(1);
+        assertThat(chargeCount(Currency.USD, "success")).isEqualTo(1);
+        assertThat(chargeCount(Currency.USD, "failure")).isZero();
+    }
+
+    @Test
+    void isShouldEvictSavedPaymentFromCache() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
+        PaymentRequest paymentRequest = new PaymentRequest(
+                new Payment(null, customerId, Money.parse("100.00", Currency.USD), "card123xx", "Donation"));
+        given(cardPaymentChargerRegistry.chargeCard(any(), any(), any())).willReturn(new CardPaymentCharge(true));
+
+        // ... the id the insert assigns has a cached entry
+        given(paymentStore.save(paymentRequest.getPayment())).willAnswer(invocation -> {
+            Payment payment = invocation.getArgument(0);
+            payment.setPaymentId(7L);
+            return payment;
+        });
+        cacheManager.getCache(CacheNames.PAYMENTS).put(7L, new Payment());
+
+        //When
+        underTest.chargeCard(customerId, paymentRequest);
+
+        //Then
+        assertThat(cacheManager.getCache(CacheNames.PAYMENTS).get(7L)).isNull();
+    }
+
+    @Test
+    void isShouldCountChargeAsFailedWhenChargerThrows() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
+
+        PaymentRequest paymentRequest = new PaymentRequest(
+                new Payment(null, customerId, Money.parse("100.00", Currency.GBP), "card123xx", "Donation"));
+
+        // ... the provider is down
+        given(cardPaymentChargerRegistry.chargeCard(any(), any(), any()))
+                .willThrow(new IllegalStateException("Cannot make stripe charge"));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.chargeCard(customerId, paymentRequest))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Cannot make stripe charge");
+
+        assertThat(stepCount("card_charge")).isEqualTo(1);
+        assertThat(stepCount("save")).isZero();
+        assertThat(chargeCount(Currency.GBP, "failure")).isEqualTo(1);
     }
 
     @Test
@@ -83,25 +184,23 @@ class PaymentServiceTest {
         UUID customerId = UUID.randomUUID();
 
         //... customer exist
-        given(customerRepository.findById(customerId)).willReturn(Optional.of(mock(Customer.class)));
+        given(customerRepository.existsById(customerId)).willReturn(true);
 
         // ... Payment request
         PaymentRequest paymentRequest = new PaymentRequest(
                 new Payment(
                         null,
                         customerId,
-                        new BigDecimal("100.00"),
-                        Currency.USD,
+                        Money.parse("100.00", Currency.USD),
                         "card123xx",
                         "Donation"
                 )
         );
 
         // ... Card is not charged successfully
-        given(cardPaymentCharger.chargeCard(
+        given(cardPaymentChargerRegistry.chargeCard(
                 paymentRequest.getPayment().getSource(),
                 paymentRequest.getPayment().getAmount(),
-                paymentRequest.getPayment().getCurrency(),
                 paymentRequest.getPayment().getDescription()
         )).willReturn(new CardPaymentCharge(false));
 
@@ -111,8 +210,11 @@ class PaymentServiceTest {
                 .hasMessageContaining(String.format("Card not debited for customer %s", customerId))
                 .isInstanceOf(IllegalStateException.class);
 
-        // ... No interactions with paymentRepository
-        then(paymentRepository).shouldHaveNoInteractions();
+        // ... No interactions with paymentStore
+        then(paymentStore).shouldHaveNoInteractions();
+        then(paymentAggregates).shouldHaveNoInteractions();
+        then(paymentNotificationQueue).shouldHaveNoInteractions();
+        assertThat(chargeCount(Currency.USD, "failure")).isEqualTo(1);
     }
 
     @Test
@@ -121,15 +223,14 @@ class PaymentServiceTest {
         UUID customerId = UUID.randomUUID();
 
         //... customer exist
-        given(customerRepository.findById(customerId)).willReturn(Optional.of(mock(Customer.class)));
+        given(customerRepository.existsById(customerId)).willReturn(true);
 
         // ... Payment request
         PaymentRequest paymentRequest = new PaymentRequest(
                 new Payment(
                         null,
                         customerId,
-                        new BigDecimal("100.00"),
-                        Currency.EUR,
+                        Money.parse("100.00", Currency.EUR),
                         "card123xx",
                         "Donation"
                 )
@@ -143,13 +244,33 @@ class PaymentServiceTest {
 
     }
 
+    @Test
+    void isShouldNotChargeCardAndThrowWhenAmountIsNotPositive() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+
+        //... customer exist
+        given(customerRepository.existsById(customerId)).willReturn(true);
+
+        // ... Payment request
+        PaymentRequest paymentRequest = new PaymentRequest(
+                new Payment(null, customerId, Money.parse("0.00", Currency.USD), "card123xx", "Donation"));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.chargeCard(customerId, paymentRequest))
+                .hasMessageContaining("Amount [0.00 USD] must be positive")
+                .isInstanceOf(IllegalStateException.class);
+        then(cardPaymentChargerRegistry).should(never()).chargeCard(any(), any(), any());
+    }
+
     @Test
     void isShouldNotChargeAndThrowWhenCustomerNotFound() {
         //Given
         UUID customerId = UUID.randomUUID();
 
         //... customer not found in db
-        given(customerRepository.findById(customerId)).willReturn(Optional.empty());
+        given(customerRepository.existsById(customerId)).willReturn(false);
 
         //When
         assertThatThrownBy(() -> underTest.chargeCard(customerId, mock(PaymentRequest.class)))
@@ -157,14 +278,405 @@ class PaymentServiceTest {
                 .isInstanceOf(IllegalStateException.class);
 
         //Then
-        // ... No interactions with cardPaymentCharger
-        then(cardPaymentCharger).shouldHaveNoInteractions();
-        // ... No interactions with paymentRepository
-        then(paymentRepository).shouldHaveNoInteractions();
+        // ... No card is charged
+        then(cardPaymentChargerRegistry).should(never()).chargeCard(any(), any(), any());
+        // ... No interactions with paymentStore
+        then(paymentStore).shouldHaveNoInteractions();
     }
-}
 
+    @Test
+    void isShouldChargeBatchAndReturnResultPerItem() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        UUID unknownCustomerId = UUID.randomUUID();
+
+        //... only the first customer exists
+        given(customerRepository.findAllById(anyIterable()))
+                .willReturn(List.of(new Customer(customerId, "Zoe", "12345")));
+
+        // ... Payment requests
+        Payment debited = new Payment(null, null, Money.parse("100.00", Currency.USD), "card123xx", "Donation");
+        Payment declined = new Payment(null, null, Money.parse("50.00", Currency.GBP), "card456xx", "Donation");
+        Payment unsupported = new Payment(null, null, Money.parse("10.00", Currency.EUR), "card123xx", "Donation");
+        Payment noCustomer = new Payment(null, null, Money.parse("10.00", Currency.USD), "card789xx", "Donation");
+
+        // ... Only the first card is charged successfully
+        given(cardPaymentChargerRegistry.chargeCard(eq("card123xx"), eq(Money.parse("100.00", Currency.USD)), eq("Donation")))
+                .willReturn(new CardPaymentCharge(true));
+        given(cardPaymentChargerRegistry.chargeCard(eq("card456xx"), eq(Money.parse("50.00", Currency.GBP)), eq("Donation")))
+                .willReturn(new CardPaymentCharge(false));
+
+        //When
+        List<PaymentBatchResult> results = underTest.chargeCards(List.of(
+                new PaymentBatchItem(customerId, new PaymentRequest(debited)),
+                new PaymentBatchItem(customerId, new PaymentRequest(declined)),
+                new PaymentBatchItem(customerId, new PaymentRequest(unsupported)),
+                new PaymentBatchItem(unknownCustomerId, new PaymentRequest(noCustomer))));
+
+        //Then
+        assertThat(results).hasSize(4);
+        assertThat(results.get(0).isCharged()).isTrue();
+        assertThat(results.get(0).getPayment().getCustomerId()).isEqualTo(customerId);
+        assertThat(results.get(1).getFailureReason())
+                .isEqualTo(String.format("Card not debited for customer %s", customerId));
+        assertThat(results.get(2).getFailureReason()).isEqualTo("Currency [EUR] not supported");
+        assertThat(results.get(3).getFailureReason())
+                .isEqualTo(String.format("Customer with id [%s] not found!", unknownCustomerId));
+
+        // ... customers are checked once for the whole batch
+        then(customerRepository).should().findAllById(anyIterable());
+        then(customerRepository).should(never()).existsById(customerId);
+
+        // ... only the debited payment is inserted
+        ArgumentCaptor<Iterable<Payment>> paymentsArgumentCaptor = ArgumentCaptor.forClass(Iterable.class);
+        then(paymentStore).should().saveAll(paymentsArgumentCaptor.capture());
+        assertThat(paymentsArgumentCaptor.getValue()).containsExactly(debited);
+
+        // ... and only the debited payment is added to the aggregates
+        then(paymentAggregates).should().record(debited);
+        then(paymentAggregates).shouldHaveNoMoreInteractions();
+        then(paymentNotificationQueue).should().publish(debited);
+        then(paymentNotificationQueue).shouldHaveNoMoreInteractions();
+
+        // ... only the two cards that reached the charger are counted
+        assertThat(chargeCount(Currency.USD, "success")).isEqualTo(1);
+        assertThat(chargeCount(Currency.GBP, "failure")).isEqualTo(1);
+        assertThat(chargeCount(Currency.EUR, "failure")).isZero();
+        assertThat(stepCount("card_charge")).isEqualTo(2);
+    }
+
+    @Test
+    void isShouldSaveChargedPaymentsWhenChargerThrowsMidBatch() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+
+        //... customer exists
+        given(customerRepository.findAllById(anyIterable()))
+                .willReturn(List.of(new Customer(customerId, "Zoe", "12345")));
+
+        Payment first = new Payment(null, null, Money.parse("100.00", Currency.USD), "card123xx", "Donation");
+        Payment broken = new Payment(null, null, Money.parse("50.00", Currency.USD), "card456xx", "Donation");
+        Payment last = new Payment(null, null, Money.parse("10.00", Currency.USD), "card789xx", "Donation");
+
+        // ... the charger blows up on the second card with an unchecked exception
+        given(cardPaymentChargerRegistry.chargeCard(eq("card123xx"), any(), any()))
+                .willReturn(new CardPaymentCharge(true));
+        given(cardPaymentChargerRegistry.chargeCard(eq("card456xx"), any(), any()))
+                .willThrow(new IllegalArgumentException("Stripe response unreadable"));
+        given(cardPaymentChargerRegistry.chargeCard(eq("card789xx"), any(), any()))
+                .willReturn(new CardPaymentCharge(true));
+
+        //When
+        List<PaymentBatchResult> results = underTest.chargeCards(List.of(
+                new PaymentBatchItem(customerId, new PaymentRequest(first)),
+                new PaymentBatchItem(customerId, new PaymentRequest(broken)),
+                new PaymentBatchItem(customerId, new PaymentRequest(last))));
+
+        //Then
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).isCharged()).isTrue();
+        assertThat(results.get(1).isCharged()).isFalse();
+        assertThat(results.get(1).getFailureReason()).isEqualTo("Stripe response unreadable");
+        assertThat(results.get(2).isCharged()).isTrue();
+
+        // ... both charged payments are still inserted
+        ArgumentCaptor<Iterable<Payment>> paymentsArgumentCaptor = ArgumentCaptor.forClass(Iterable.class);
+        then(paymentStore).should().saveAll(paymentsArgumentCaptor.capture());
+        assertThat(paymentsArgumentCaptor.getValue()).containsExactly(first, last);
+    }
+
+    @Test
+    void isShouldNotInsertAnythingWhenNoCardInBatchIsDebited() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+
+        //... customer not found in db
+        given(customerRepository.findAllById(anyIterable())).willReturn(List.of());
+
+        Payment payment = new Payment(null, null, Money.parse("100.00", Currency.USD), "card123xx", "Donation");
+
+        //When
+        List<PaymentBatchResult> results = underTest.chargeCards(List.of(
+                new PaymentBatchItem(customerId, new PaymentRequest(payment))));
+
+        //Then
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).isCharged()).isFalse();
+        then(cardPaymentChargerRegistry).should(never()).chargeCard(any(), any(), any());
+        then(paymentStore).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void isShouldChargeCardAsynchronouslyAndSavePaymentWhenChargeCompletes() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+
+        //... customer exist
+        given(customerRepository.existsById(customerId)).willReturn(true);
+
+        // ... Payment request
+        PaymentRequest paymentRequest = new PaymentRequest(
+                new Payment(null, null, Money.parse("100.00", Currency.USD), "card123xx", "Donation"));
+
+        // ... Charge is still in flight
+        CompletableFuture<CardPaymentCharge> charge = new CompletableFuture<>();
+        given(asyncCardPaymentCharger.chargeCardAsync(
+                paymentRequest.getPayment().getSource(),
+                paymentRequest.getPayment().getAmount(),
+                paymentRequest.getPayment().getDescription()
+        )).willReturn(charge);
+
+        //When
+        CompletableFuture<Void> result = underTest.chargeCardAsync(customerId, paymentRequest);
+
+        //Then
+        // ... nothing saved until the card is debited
+        assertThat(result).isNotDone();
+        then(paymentStore).shouldHaveNoInteractions();
+        assertThat(stepCount("card_charge")).isZero();
+
+        charge.complete(new CardPaymentCharge(true));
+        assertThat(stepCount("card_charge")).isEqualTo(1);
+        assertThat(chargeCount(Currency.USD, "success")).isEqualTo(1);
+
+        assertThat(result).isCompleted();
+        then(paymentStore).should().save(paymentRequest.getPayment());
+        assertThat(paymentRequest.getPayment().getCustomerId()).isEqualTo(customerId);
+    }
+
+    @Test
+    void isShouldCompleteExceptionallyWhenAsyncChargeIsNotDebited() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+
+        //... customer exist
+        given(customerRepository.existsById(customerId)).willReturn(true);
+
+        PaymentRequest paymentRequest = new PaymentRequest(
+                new Payment(null, null, Money.parse("100.00", Currency.USD), "card123xx", "Donation"));
+
+        // ... Card is not charged successfully
+        given(asyncCardPaymentCharger.chargeCardAsync(
+                paymentRequest.getPayment().getSource(),
+                paymentRequest.getPayment().getAmount(),
+                paymentRequest.getPayment().getDescription()
+        )).willReturn(CompletableFuture.completedFuture(new CardPaymentCharge(false)));
+
+        //When
+        CompletableFuture<Void> result = underTest.chargeCardAsync(customerId, paymentRequest);
+
+        //Then
+        assertThat(result).hasFailedWithThrowableThat()
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(String.format("Card not debited for customer %s", customerId));
+        then(paymentStore).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void isShouldSkipCustomerLookupForKnownCustomer() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+
+        //... customer was seen before
+        given(customerExistenceCache.isKnown(customerId)).willReturn(true);
+
+        PaymentRequest paymentRequest = new PaymentRequest(
+                new Payment(null, null, Money.parse("100.00", Currency.USD), "card123xx", "Donation"));
+        given(cardPaymentChargerRegistry.chargeCard(
+                paymentRequest.getPayment().getSource(),
+                paymentRequest.getPayment().getAmount(),
+                paymentRequest.getPayment().getDescription()
+        )).willReturn(new CardPaymentCharge(true));
+
+        //When
+        underTest.chargeCard(customerId, paymentRequest);
+
+        //Then
+        then(customerRepository).shouldHaveNoInteractions();
+        then(paymentStore).should().save(paymentRequest.getPayment());
+    }
+
+    @Test
+    void isShouldRememberCustomerFoundInDatabase() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
+
+        PaymentRequest paymentRequest = new PaymentRequest(
+                new Payment(null, null, Money.parse("100.00", Currency.USD), "card123xx", "Donation"));
+        given(cardPaymentChargerRegistry.chargeCard(
+                paymentRequest.getPayment().getSource(),
+                paymentRequest.getPayment().getAmount(),
+                paymentRequest.getPayment().getDescription()
+        )).willReturn(new CardPaymentCharge(true));
+
+        //When
+        underTest.chargeCard(customerId, paymentRequest);
+
+        //Then
+        then(customerExistenceCache).should().markKnown(customerId);
+    }
+
+    @Test
+    void isShouldChargeOnceAndReturnStoredChargeWhenIdempotencyKeyIsRepeated() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
 
+        PaymentRequest paymentRequest = new PaymentRequest(
+                new Payment(null, null, Money.parse("100.00", Currency.USD), "card123xx", "Donation"));
+        given(cardPaymentChargerRegistry.chargeCard(
+                paymentRequest.getPayment().getSource(),
+                paymentRequest.getPayment().getAmount(),
+                paymentRequest.getPayment().getDescription()
+        )).willReturn(new CardPaymentCharge(true));
 
+        //When
+        CardPaymentCharge first = underTest.chargeCard(customerId, paymentRequest, "key-1");
+        CardPaymentCharge retry = underTest.chargeCard(customerId, paymentRequest, "key-1");
 
+        //Then
+        assertThat(retry).isSameAs(first);
+        then(cardPaymentChargerRegistry).should().chargeCard(
+                paymentRequest.getPayment().getSource(),
+                paymentRequest.getPayment().getAmount(),
+                paymentRequest.getPayment().getDescription());
+        then(paymentStore).should().save(paymentRequest.getPayment());
+    }
 
+    @Test
+    void isShouldInsertWithoutChargingAgainWhenRetryingKeyWhoseInsertFailed() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
+
+        PaymentRequest paymentRequest = new PaymentRequest(
+                new Payment(null, null, Money.parse("100.00", Currency.USD), "card123xx", "Donation"));
+        given(cardPaymentChargerRegistry.chargeCard(
+                paymentRequest.getPayment().getSource(),
+                paymentRequest.getPayment().getAmount(),
+                paymentRequest.getPayment().getDescription()
+        )).willReturn(new CardPaymentCharge(true));
+
+        // ... Card debited, then the insert fails once
+        given(paymentStore.save(paymentRequest.getPayment()))
+                .willThrow(new IllegalStateException("insert failed"))
+                .willReturn(paymentRequest.getPayment());
+
+        assertThatThrownBy(() -> underTest.chargeCard(customerId, paymentRequest, "key-1"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("insert failed");
+
+        //When
+        CardPaymentCharge retry = underTest.chargeCard(customerId, paymentRequest, "key-1");
+
+        //Then
+        assertThat(retry.isCardDebited()).isTrue();
+        then(cardPaymentChargerRegistry).should().chargeCard(
+                paymentRequest.getPayment().getSource(),
+                paymentRequest.getPayment().getAmount(),
+                paymentRequest.getPayment().getDescription());
+        then(paymentStore).should(times(2)).save(paymentRequest.getPayment());
+    }
+
+    @Test
+    void isShouldNotChargeAgainWhenRetryingKeyWhoseCardWasNotDebited() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
+
+        PaymentRequest paymentRequest = new PaymentRequest(
+                new Payment(null, null, Money.parse("100.00", Currency.USD), "card123xx", "Donation"));
+        given(cardPaymentChargerRegistry.chargeCard(
+                paymentRequest.getPayment().getSource(),
+                paymentRequest.getPayment().getAmount(),
+                paymentRequest.getPayment().getDescription()
+        )).willReturn(new CardPaymentCharge(false));
+
+        assertThatThrownBy(() -> underTest.chargeCard(customerId, paymentRequest, "key-1"))
+                .isInstanceOf(IllegalStateException.class);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.chargeCard(customerId, paymentRequest, "key-1"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(String.format("Card not debited for customer %s", customerId));
+        then(cardPaymentChargerRegistry).should().chargeCard(
+                paymentRequest.getPayment().getSource(),
+                paymentRequest.getPayment().getAmount(),
+                paymentRequest.getPayment().getDescription());
+        then(paymentStore).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void isShouldMakeInFlightAsyncDuplicateWaitForFirstAttempt() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
+
+        PaymentRequest paymentRequest = new PaymentRequest(
+                new Payment(null, null, Money.parse("100.00", Currency.USD), "card123xx", "Donation"));
+
+        // ... Charge is still in flight
+        CompletableFuture<CardPaymentCharge> charge = new CompletableFuture<>();
+        given(asyncCardPaymentCharger.chargeCardAsync(
+                paymentRequest.getPayment().getSource(),
+                paymentRequest.getPayment().getAmount(),
+                paymentRequest.getPayment().getDescription()
+        )).willReturn(charge);
+
+        //When
+        CompletableFuture<CardPaymentCharge> first = underTest.chargeCardAsync(customerId, paymentRequest, "key-1");
+        CompletableFuture<CardPaymentCharge> duplicate = underTest.chargeCardAsync(customerId, paymentRequest, "key-1");
+
+        //Then
+        assertThat(duplicate).isNotDone();
+
+        charge.complete(new CardPaymentCharge(true));
+
+        assertThat(first).isCompleted();
+        assertThat(duplicate).isCompleted();
+        then(asyncCardPaymentCharger).should().chargeCardAsync(
+                paymentRequest.getPayment().getSource(),
+                paymentRequest.getPayment().getAmount(),
+                paymentRequest.getPayment().getDescription());
+        then(paymentStore).should().save(paymentRequest.getPayment());
+    }
+
+    @Test
+    void isShouldJournalPaymentInsteadOfSavingWhenWriteBehindIsEnabled() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        given(customerRepository.existsById(customerId)).willReturn(true);
+        given(paymentWriteBehindQueue.isEnabled()).willReturn(true);
+
+        PaymentRequest paymentRequest = new PaymentRequest(
+                new Payment(null, null, Money.parse("100.00", Currency.USD), "card123xx", "Donation"));
+        given(cardPaymentChargerRegistry.chargeCard(
+                paymentRequest.getPayment().getSource(),
+                paymentRequest.getPayment().getAmount(),
+                paymentRequest.getPayment().getDescription()
+        )).willReturn(new CardPaymentCharge(true));
+
+        //When
+        underTest.chargeCard(customerId, paymentRequest);
+
+        //Then
+        then(paymentWriteBehindQueue).should().enqueue(paymentRequest.getPayment());
+        then(paymentStore).shouldHaveNoInteractions();
+        assertThat(paymentRequest.getPayment().getCustomerId()).isEqualTo(customerId);
+        // ... counted by the queue once it is saved
+        then(paymentAggregates).shouldHaveNoInteractions();
+    }
+
+    private long stepCount(String step) {
+        return meterRegistry.get("payment.charge.step").tag("step", step).timer().count();
+    }
+
+    private double chargeCount(Currency currency, String outcome) {
+        return meterRegistry.get("payment.charges")
+                .tag("currency", currency.name())
+                .tag("outcome", outcome)
+                .counter().count();
+    }
+}
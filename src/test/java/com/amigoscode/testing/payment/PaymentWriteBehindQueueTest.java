@@ -0,0 +1,218 @@
+package com.amigoscode.testing.payment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+
+class PaymentWriteBehindQueueTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // payments the queue reported as saved
+    private final List<Payment> saved = new CopyOnWriteArrayList<>();
+
+    @TempDir
+    Path journalDirectory;
+
+    @Mock
+    private PaymentStore paymentStore;
+
+    private PaymentWriteBehindQueue underTest;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        underTest = newQueue();
+    }
+
+    @Test
+    void isShouldSaveQueuedPaymentsInBatchesAndDeleteSavedSegments() throws IOException {
+        //Given
+        underTest.recover();
+        underTest.enqueue(payment("one"));
+        underTest.enqueue(payment("two"));
+        underTest.enqueue(payment("three"));
+
+        //When
+        underTest.flush();
+
+        //Then
+        then(paymentStore).should(times(2)).saveAll(anyIterable());
+        assertThat(saved).extracting(Payment::getDescription).containsExactly("one", "two", "three");
+        // ... two payments per segment, only the one still being appended to is left
+        assertThat(journalDirectory.resolve("payments-1.journal")).doesNotExist();
+        assertThat(journalDirectory.resolve("payments-3.journal")).exists();
+        assertThat(Files.readString(journalDirectory.resolve("payments.checkpoint"))).isEqualTo("3");
+    }
+
+    @Test
+    void isShouldSaveOnCallingThreadWhenQueueIsFull() throws IOException {
+        //Given
+        Payment two = payment("two");
+        underTest = newQueue(1);
+        underTest.recover();
+        underTest.enqueue(payment("one"));
+
+        //When
+        underTest.enqueue(two);
+
+        //Then
+        then(paymentStore).should().save(two);
+        assertThat(saved).containsExactly(two);
+        assertThat(meterRegistry.get("payment.write-behind.synchronous-saves").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void isShouldDeadLetterBatchThatKeepsFailing() throws Exception {
+        //Given
+        given(paymentStore.saveAll(anyIterable())).willThrow(new IllegalStateException("database down"));
+        Payment one = payment("one");
+        underTest.start();
+
+        //When
+        underTest.enqueue(one);
+
+        //Then
+        then(paymentStore).should(timeout(2_000).times(3)).saveAll(anyIterable());
+        await(() -> meterRegistry.get("payment.write-behind.dead-lettered").counter().count() == 1);
+        assertThat(meterRegistry.get("payment.write-behind.retries").counter().count()).isEqualTo(2);
+        assertThat(Files.readString(journalDirectory.resolve("payments.dead-letter")))
+                .isEqualTo("1\t" + objectMapper.writeValueAsString(one) + "\n");
+        assertThat(Files.readString(journalDirectory.resolve("payments.checkpoint"))).isEqualTo("1");
+        // ... and it never counts as saved
+        assertThat(saved).isEmpty();
+        underTest.stop();
+    }
+
+    @Test
+    void isShouldReplayJournaledPaymentsOnStartup() throws Exception {
+        //Given
+        // ... previous run journaled two payments and died before saving them
+        Payment one = payment("one");
+        Payment two = payment("two");
+        underTest.recover();
+        underTest.enqueue(one);
+        underTest.enqueue(two);
+
+        //When
+        PaymentWriteBehindQueue restarted = newQueue();
+        restarted.start();
+
+        //Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Iterable<Payment>> paymentsArgumentCaptor = ArgumentCaptor.forClass(Iterable.class);
+        then(paymentStore).should().saveAll(paymentsArgumentCaptor.capture());
+
+        assertThat(paymentsArgumentCaptor.getValue())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(one, two);
+        restarted.stop();
+    }
+
+    @Test
+    void isShouldNotReplayPaymentsSavedBeforeCheckpoint() throws Exception {
+        //Given
+        underTest.recover();
+        underTest.enqueue(payment("one"));
+        underTest.flush();
+        underTest.stop();
+
+        //When
+        PaymentWriteBehindQueue restarted = newQueue();
+        restarted.start();
+
+        //Then
+        then(paymentStore).should(times(1)).saveAll(anyIterable());
+        restarted.stop();
+    }
+
+    @Test
+    void isShouldSkipTornLastLineOnStartup() throws Exception {
+        //Given
+        Payment one = payment("one");
+        Files.writeString(journalDirectory.resolve("payments-1.journal"),
+                "1\t" + objectMapper.writeValueAsString(one) + "\n2\t{\"paymentId\":nu");
+
+        //When
+        underTest.start();
+
+        //Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Iterable<Payment>> paymentsArgumentCaptor = ArgumentCaptor.forClass(Iterable.class);
+        then(paymentStore).should().saveAll(paymentsArgumentCaptor.capture());
+
+        assertThat(paymentsArgumentCaptor.getValue())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(one);
+        underTest.stop();
+    }
+
+    @Test
+    void isShouldSavePaymentsInBackgroundOnceStarted() throws Exception {
+        //Given
+        underTest.start();
+        then(paymentStore).should(never()).saveAll(anyIterable());
+
+        //When
+        underTest.enqueue(payment("one"));
+
+        //Then
+        then(paymentStore).should(timeout(2_000)).saveAll(anyIterable());
+        underTest.stop();
+    }
+
+    private PaymentWriteBehindQueue newQueue() {
+        return newQueue(10);
+    }
+
+    private PaymentWriteBehindQueue newQueue(int capacity) {
+        PaymentWriteBehindQueue queue = new PaymentWriteBehindQueue(
+                paymentStore,
+                objectMapper,
+                meterRegistry,
+                true,
+                journalDirectory.toString(),
+                2,
+                Duration.ofMillis(20),
+                true,
+                capacity,
+                3,
+                2);
+        queue.onSaved(saved::add);
+        return queue;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    private static Payment payment(String description) {
+        return new Payment(null, UUID.randomUUID(), Money.parse("10.00", Currency.USD), "card123xx", description);
+    }
+}
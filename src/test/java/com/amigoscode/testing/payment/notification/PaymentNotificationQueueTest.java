@@ -0,0 +1,128 @@
+package com.amigoscode.testing.payment.notification;
+
+import com.amigoscode.testing.customer.Customer;
+import com.amigoscode.testing.customer.CustomerRepository;
+import com.amigoscode.testing.datasource.ReadYourWritesGuard;
+import com.amigoscode.testing.payment.Currency;
+import com.amigoscode.testing.payment.Money;
+import com.amigoscode.testing.payment.Payment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentNotificationQueueTest {
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private InMemorySmsSender smsSender;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        smsSender = new InMemorySmsSender(100);
+    }
+
+    @Test
+    void isShouldTextCustomersOfPublishedPaymentsInOneBatch() {
+        //Given
+        // ... not started, flush sends on the test thread
+        PaymentNotificationQueue underTest = queue(smsSender, 10);
+        Customer zoe = new Customer(UUID.randomUUID(), "Zoe", "07700 900001");
+        Customer marta = new Customer(UUID.randomUUID(), "Marta", "07700 900002");
+        given(customerRepository.findAllById(anyIterable())).willReturn(List.of(zoe, marta));
+
+        underTest.publish(payment(zoe.getId(), "10.00"));
+        underTest.publish(payment(marta.getId(), "25.50"));
+        assertThat(meterRegistry.get("payment.notification.queue.depth").gauge().value()).isEqualTo(2);
+
+        //When
+        underTest.flush();
+
+        //Then
+        List<SmsMessage> messages = smsSender.getSentMessages();
+        assertThat(messages).extracting(SmsMessage::getPhoneNumber).containsExactly("07700 900001", "07700 900002");
+        assertThat(messages.get(0).getText()).isEqualTo("Payment of 10.00 GBP received");
+
+        // ... customers are looked up once for the whole batch
+        then(customerRepository).should().findAllById(anyIterable());
+        assertThat(meterRegistry.get("payment.notification.queue.depth").gauge().value()).isZero();
+        assertThat(meterRegistry.get("payment.notification.sms").tag("outcome", "sent").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("payment.notification.lag").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void isShouldDropEventsThatDoNotFitInTheQueue() {
+        //Given
+        PaymentNotificationQueue underTest = queue(smsSender, 1);
+
+        //When
+        underTest.publish(payment(UUID.randomUUID(), "10.00"));
+        underTest.publish(payment(UUID.randomUUID(), "10.00"));
+
+        //Then
+        assertThat(underTest.getDroppedEvents()).isEqualTo(1);
+        assertThat(meterRegistry.get("payment.notification.dropped").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void isShouldCountTextsAsFailedWhenSenderThrows() {
+        //Given
+        SmsSender failingSender = mock(SmsSender.class);
+        doThrow(new IllegalStateException("provider down")).when(failingSender).send(anyList());
+        PaymentNotificationQueue underTest = queue(failingSender, 10);
+        Customer zoe = new Customer(UUID.randomUUID(), "Zoe", "07700 900001");
+        given(customerRepository.findAllById(anyIterable())).willReturn(List.of(zoe));
+        underTest.publish(payment(zoe.getId(), "10.00"));
+
+        //When
+        underTest.flush();
+
+        //Then
+        assertThat(meterRegistry.get("payment.notification.sms").tag("outcome", "failed").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("payment.notification.sms").tag("outcome", "sent").counter().count()).isZero();
+    }
+
+    @Test
+    void isShouldSendInTheBackgroundOnceStarted() throws InterruptedException {
+        //Given
+        PaymentNotificationQueue underTest = queue(smsSender, 10);
+        Customer zoe = new Customer(UUID.randomUUID(), "Zoe", "07700 900001");
+        given(customerRepository.findAllById(anyIterable())).willReturn(List.of(zoe));
+        underTest.start();
+
+        //When
+        underTest.publish(payment(zoe.getId(), "10.00"));
+        underTest.stop();
+
+        //Then
+        assertThat(smsSender.getSentMessages()).hasSize(1);
+    }
+
+    private PaymentNotificationQueue queue(SmsSender sender, int queueCapacity) {
+        return new PaymentNotificationQueue(customerRepository, new ReadYourWritesGuard(false, Duration.ofSeconds(5), 100),
+                sender, meterRegistry, true, queueCapacity, 100);
+    }
+
+    private static Payment payment(UUID customerId, String amount) {
+        return new Payment(null, customerId, Money.parse(amount, Currency.GBP), "card123xx", "Donation");
+    }
+}
@@ -0,0 +1,193 @@
+package com.amigoscode.testing.payment.routing;
+
+import com.amigoscode.testing.payment.CardPaymentCharge;
+import com.amigoscode.testing.payment.CardPaymentCharger;
+import com.amigoscode.testing.payment.Currency;
+import com.amigoscode.testing.payment.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+class CardPaymentChargerRegistryTest {
+
+    private static final Money AMOUNT = Money.parse("10.00", Currency.USD);
+
+    @Mock
+    private CardPaymentCharger primary;
+    @Mock
+    private CardPaymentCharger secondary;
+
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        given(primary.chargeCard(any(), any(), any())).willReturn(new CardPaymentCharge(true));
+        given(secondary.chargeCard(any(), any(), any())).willReturn(new CardPaymentCharge(true));
+    }
+
+    @Test
+    void isShouldSupportOnlyCurrenciesWithRoutes() {
+        //Given
+        CardPaymentChargerRegistry underTest = registry(Map.of(
+                Currency.USD, List.of(route("primary", 1, 1))), index -> 0);
+
+        //When
+        //Then
+        assertThat(underTest.supports(Currency.USD)).isTrue();
+        assertThat(underTest.supports(Currency.EUR)).isFalse();
+        assertThatThrownBy(() -> underTest.chargeCard("card123xx", Money.parse("1.00", Currency.EUR), "Donation"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Currency [EUR] not supported");
+    }
+
+    @Test
+    void isShouldSplitChargesByWeight() {
+        //Given
+        // ... weights 60 and 40 are a wheel of five slots: primary, primary, primary, secondary, secondary
+        int[] next = {0};
+        CardPaymentChargerRegistry underTest = registry(Map.of(
+                Currency.USD, List.of(route("primary", 60, 10), route("secondary", 40, 10))),
+                bound -> next[0]++ % bound);
+
+        //When
+        for (int i = 0; i < 10; i++) {
+            underTest.chargeCard("card123xx", AMOUNT, "Donation");
+        }
+
+        //Then
+        then(primary).should(times(6)).chargeCard("card123xx", AMOUNT, "Donation");
+        then(secondary).should(times(4)).chargeCard("card123xx", AMOUNT, "Donation");
+    }
+
+    @Test
+    void isShouldSkipRouteAtItsConcurrencyLimit() throws Exception {
+        //Given
+        CardPaymentChargerRegistry underTest = registry(Map.of(
+                Currency.USD, List.of(route("primary", 1, 1), route("secondary", 1, 1))), index -> 0);
+
+        // ... the only primary permit is held by a charge stuck at the provider
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(primary.chargeCard(any(), any(), any())).willAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return new CardPaymentCharge(true);
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<CardPaymentCharge> stuck = executor.submit(() -> underTest.chargeCard("card123xx", AMOUNT, "Donation"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //When
+        CardPaymentCharge cardPaymentCharge = underTest.chargeCard("card456xx", AMOUNT, "Donation");
+
+        //Then
+        assertThat(cardPaymentCharge.isCardDebited()).isTrue();
+        then(secondary).should().chargeCard("card456xx", AMOUNT, "Donation");
+
+        release.countDown();
+        assertThat(stuck.get(5, TimeUnit.SECONDS).isCardDebited()).isTrue();
+        executor.shutdown();
+    }
+
+    @Test
+    void isShouldRejectChargeWhenEveryRouteIsAtItsLimit() throws Exception {
+        //Given
+        CardPaymentChargerRegistry underTest = registry(Map.of(
+                Currency.USD, List.of(route("primary", 1, 1))), index -> 0);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(primary.chargeCard(any(), any(), any())).willAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return new CardPaymentCharge(true);
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(() -> underTest.chargeCard("card123xx", AMOUNT, "Donation"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.chargeCard("card456xx", AMOUNT, "Donation"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Cannot charge USD, every route is at its concurrency limit");
+        then(primary).should(never()).chargeCard("card456xx", AMOUNT, "Donation");
+
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void isShouldKeepLatencyAndFailuresPerRoute() {
+        //Given
+        CardPaymentChargerRegistry underTest = registry(Map.of(
+                Currency.USD, List.of(route("primary", 1, 4)),
+                Currency.GBP, List.of(route("secondary", 1, 2))), index -> 0);
+
+        given(primary.chargeCard(any(), any(), any())).willAnswer(invocation -> {
+            nanoTime.addAndGet(3_000_000);
+            return new CardPaymentCharge(true);
+        });
+        given(secondary.chargeCard(any(), any(), any())).willThrow(new IllegalStateException("Cannot make stripe charge"));
+
+        //When
+        underTest.chargeCard("card123xx", AMOUNT, "Donation");
+        assertThatThrownBy(() -> underTest.chargeCard("card123xx", Money.parse("1.00", Currency.GBP), "Donation"))
+                .hasMessageContaining("Cannot make stripe charge");
+
+        //Then
+        List<ChargeRouteStats> stats = underTest.getRouteStats();
+        assertThat(stats).hasSize(2);
+        assertThat(stats.get(0).getCurrency()).isEqualTo(Currency.USD);
+        assertThat(stats.get(0).getCalls()).isEqualTo(1);
+        assertThat(stats.get(0).getFailures()).isZero();
+        assertThat(stats.get(0).getMeanLatencyNanos()).isEqualTo(3_000_000);
+        assertThat(stats.get(0).getInFlight()).isZero();
+        assertThat(stats.get(1).getCurrency()).isEqualTo(Currency.GBP);
+        assertThat(stats.get(1).getFailures()).isEqualTo(1);
+        assertThat(stats.get(1).getInFlight()).isZero();
+    }
+
+    @Test
+    void isShouldRefuseRouteToUnknownCharger() {
+        //Given
+        //When
+        //Then
+        assertThatThrownBy(() -> registry(Map.of(Currency.USD, List.of(route("adyen", 1, 1))), index -> 0))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("No CardPaymentCharger named [adyen] for USD route");
+    }
+
+    private CardPaymentChargerRegistry registry(Map<Currency, List<ChargeRoutingProperties.Route>> routes,
+                                                IntUnaryOperator randomIndex) {
+        return new CardPaymentChargerRegistry(
+                routes,
+                Map.of("primary", primary, "secondary", secondary),
+                randomIndex,
+                nanoTime::get);
+    }
+
+    private static ChargeRoutingProperties.Route route(String charger, int weight, int maxConcurrency) {
+        return new ChargeRoutingProperties.Route(charger, weight, maxConcurrency);
+    }
+}
@@ -0,0 +1,218 @@
+package com.amigoscode.testing.payment.sharding;
+
+import com.amigoscode.testing.payment.Currency;
+import com.amigoscode.testing.payment.Money;
+import com.amigoscode.testing.payment.Payment;
+import com.amigoscode.testing.payment.PaymentAggregateRow;
+import com.amigoscode.testing.payment.PaymentSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// three in-memory H2 databases stand in for three database nodes
+class ShardedPaymentStoreTest {
+
+    private static final int SHARDS = 3;
+
+    private ShardedPaymentStore underTest;
+
+    @BeforeEach
+    void setUp() {
+        PaymentShardingProperties properties = new PaymentShardingProperties();
+        for (int i = 0; i < SHARDS; i++) {
+            properties.getShards().add(new PaymentShardingProperties.Shard(
+                    "jdbc:h2:mem:payment-shard-" + i + "-" + UUID.randomUUID(), 2));
+        }
+        underTest = new ShardedPaymentStore(properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        underTest.close();
+    }
+
+    @Test
+    void isShouldKeepEveryPaymentOfCustomerOnItsShard() {
+        //Given
+        List<UUID> customerIds = new ArrayList<>();
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            UUID customerId = UUID.randomUUID();
+            customerIds.add(customerId);
+            for (int j = 0; j < 3; j++) {
+                payments.add(payment(customerId, "10.00"));
+            }
+        }
+
+        //When
+        underTest.saveAll(payments);
+
+        //Then
+        for (UUID customerId : customerIds) {
+            int shard = underTest.shardOf(customerId).getIndex();
+            for (PaymentShard other : underTest.getShards()) {
+                assertThat(countPayments(other, customerId)).isEqualTo(other.getIndex() == shard ? 3 : 0);
+            }
+        }
+        assertThat(payments).allSatisfy(payment -> assertThat(payment.getPaymentId()).isNotNull());
+    }
+
+    @Test
+    void isShouldFindPaymentByIdOnItsShard() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        Payment payment = underTest.save(payment(customerId, "12.34"));
+
+        //When
+        Payment found = underTest.findById(payment.getPaymentId()).orElseThrow();
+
+        //Then
+        assertThat(PaymentShard.indexOf(payment.getPaymentId())).isEqualTo(underTest.shardOf(customerId).getIndex());
+        assertThat(found.getCustomerId()).isEqualTo(customerId);
+        assertThat(found.getAmount()).isEqualTo(Money.parse("12.34", Currency.USD));
+        assertThat(found.getSource()).isEqualTo("card123");
+        assertThat(found.getDescription()).isEqualTo("Donation");
+    }
+
+    @Test
+    void isShouldNotFindPaymentOfShardThatDoesNotExist() {
+        //Given
+        long paymentId = (1L << PaymentShard.SHARD_BITS) | SHARDS;
+
+        //When
+        //Then
+        assertThat(underTest.findById(paymentId)).isNotPresent();
+    }
+
+    @Test
+    void isShouldPageCustomerPaymentsNewestFirst() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        Payment first = underTest.save(payment(customerId, "1.00"));
+        Payment second = underTest.save(payment(customerId, "2.00"));
+        Payment third = underTest.save(payment(customerId, "3.00"));
+        underTest.save(payment(UUID.randomUUID(), "4.00"));
+
+        //When
+        List<PaymentSummary> firstPage = underTest.findByCustomerIdOrderByPaymentIdDesc(customerId, PageRequest.of(0, 2));
+        List<PaymentSummary> nextPage = underTest.findByCustomerIdAndPaymentIdLessThanOrderByPaymentIdDesc(
+                customerId, second.getPaymentId(), PageRequest.of(0, 2));
+
+        //Then
+        assertThat(firstPage).extracting(PaymentSummary::getPaymentId)
+                .containsExactly(third.getPaymentId(), second.getPaymentId());
+        assertThat(firstPage.get(0).getAmount()).isEqualTo(300);
+        assertThat(nextPage).extracting(PaymentSummary::getPaymentId).containsExactly(first.getPaymentId());
+    }
+
+    @Test
+    void isShouldAggregateEveryShard() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        UUID otherCustomerId = customerOnAnotherShard(customerId);
+        underTest.saveAll(List.of(
+                payment(customerId, "1.00"),
+                payment(customerId, "4.00"),
+                payment(otherCustomerId, "2.50")));
+
+        //When
+        List<PaymentAggregateRow> rows = underTest.aggregateByCustomerAndCurrency();
+
+        //Then
+        assertThat(rows).hasSize(2);
+        assertThat(rows).anySatisfy(row -> {
+            assertThat(row.getCustomerId()).isEqualTo(customerId);
+            assertThat(row.getCurrency()).isEqualTo(Currency.USD);
+            assertThat(row.getCount()).isEqualTo(2);
+            assertThat(row.getTotal()).isEqualTo(500);
+            assertThat(row.getMin()).isEqualTo(100);
+            assertThat(row.getMax()).isEqualTo(400);
+        });
+        assertThat(rows).anySatisfy(row -> {
+            assertThat(row.getCustomerId()).isEqualTo(otherCustomerId);
+            assertThat(row.getCount()).isEqualTo(1);
+            assertThat(row.getTotal()).isEqualTo(250);
+        });
+    }
+
+    @Test
+    void isShouldFindSavedWriteBehindKeysOnEveryShard() {
+        //Given
+        UUID customerId = UUID.randomUUID();
+        Payment payment = payment(customerId, "1.00");
+        Payment otherPayment = payment(customerOnAnotherShard(customerId), "2.00");
+        payment.setWriteBehindKey(UUID.randomUUID());
+        otherPayment.setWriteBehindKey(UUID.randomUUID());
+        underTest.saveAll(List.of(payment, otherPayment));
+
+        // ... journaled but never saved
+        UUID unsavedKey = UUID.randomUUID();
+
+        //When
+        List<UUID> saved = underTest.findWriteBehindKeysIn(
+                List.of(payment.getWriteBehindKey(), otherPayment.getWriteBehindKey(), unsavedKey));
+
+        //Then
+        assertThat(saved).containsExactlyInAnyOrder(payment.getWriteBehindKey(), otherPayment.getWriteBehindKey());
+    }
+
+    @Test
+    void isShouldNotSavePaymentWithoutCustomer() {
+        //Given
+        Payment payment = payment(null, "1.00");
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.save(payment))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Payment has no customer id");
+    }
+
+    @Test
+    void isShouldFailScatterWhenAnyShardFails() {
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.scatter(shard -> {
+            if (shard.getIndex() == 1)
+                throw new IllegalStateException("Shard 1 is down");
+            return shard.getIndex();
+        }))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Shard 1 is down");
+    }
+
+    private UUID customerOnAnotherShard(UUID customerId) {
+        UUID other = UUID.randomUUID();
+        while (underTest.shardOf(other) == underTest.shardOf(customerId)) {
+            other = UUID.randomUUID();
+        }
+        return other;
+    }
+
+    private static int countPayments(PaymentShard shard, UUID customerId) {
+        return new JdbcTemplate(shard.getDataSource()).queryForObject(
+                "SELECT COUNT(*) FROM payment WHERE customer_id = ?", Integer.class, bytes(customerId));
+    }
+
+    private static byte[] bytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    private static Payment payment(UUID customerId, String amount) {
+        return new Payment(null, customerId, Money.parse(amount, Currency.USD), "card123", "Donation");
+    }
+}
@@ -0,0 +1,82 @@
+package com.amigoscode.testing.payment.stripe;
+
+import com.amigoscode.testing.payment.CardPaymentCharge;
+import com.amigoscode.testing.payment.CardPaymentCharger;
+import com.amigoscode.testing.payment.Currency;
+import com.amigoscode.testing.payment.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+class AsyncStripeServiceTest {
+
+    @Mock
+    private CardPaymentCharger cardPaymentCharger;
+
+    private AsyncStripeService underTest;
+
+    @AfterEach
+    void tearDown() {
+        underTest.shutdown();
+    }
+
+    @Test
+    void isShouldChargeCardOnChargePool() throws Exception {
+        //Given
+        MockitoAnnotations.initMocks(this);
+        underTest = new AsyncStripeService(cardPaymentCharger, 1, 1, false);
+
+        Money amount = Money.parse("10.00", Currency.USD);
+        given(cardPaymentCharger.chargeCard("0x0x0x", amount, "Zakat"))
+                .willReturn(new CardPaymentCharge(true));
+
+        //When
+        CompletableFuture<CardPaymentCharge> charge =
+                underTest.chargeCardAsync("0x0x0x", amount, "Zakat");
+
+        //Then
+        assertThat(charge.get(5, TimeUnit.SECONDS).isCardDebited()).isTrue();
+    }
+
+    @Test
+    void isShouldRejectChargeWhenPoolAndQueueAreFull() throws Exception {
+        //Given
+        MockitoAnnotations.initMocks(this);
+        underTest = new AsyncStripeService(cardPaymentCharger, 1, 1, false);
+
+        // ... the only charge thread is stuck talking to stripe
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(cardPaymentCharger.chargeCard(any(), any(), any())).willAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return new CardPaymentCharge(true);
+        });
+
+        Money amount = Money.parse("10.00", Currency.USD);
+        CompletableFuture<CardPaymentCharge> inFlight = underTest.chargeCardAsync("a", amount, "d");
+        started.await(5, TimeUnit.SECONDS);
+        CompletableFuture<CardPaymentCharge> queued = underTest.chargeCardAsync("b", amount, "d");
+
+        //When
+        CompletableFuture<CardPaymentCharge> rejected = underTest.chargeCardAsync("c", amount, "d");
+
+        //Then
+        assertThat(rejected).hasFailedWithThrowableThat()
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("too many charges in flight");
+
+        release.countDown();
+        assertThat(inFlight.get(5, TimeUnit.SECONDS).isCardDebited()).isTrue();
+        assertThat(queued.get(5, TimeUnit.SECONDS).isCardDebited()).isTrue();
+    }
+}
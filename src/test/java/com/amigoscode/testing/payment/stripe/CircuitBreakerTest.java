@@ -0,0 +1,115 @@
+package com.amigoscode.testing.payment.stripe;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private final CircuitBreaker underTest = new CircuitBreaker(10, 4, 0.5, Duration.ofSeconds(30), nanos::get);
+
+    @Test
+    void isShouldStayClosedBelowMinimumCalls() {
+        //Given
+        //When
+        underTest.onFailure();
+        underTest.onFailure();
+        underTest.onFailure();
+
+        //Then
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(underTest.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    void isShouldOpenWhenFailureRateReachesThreshold() {
+        //Given
+        underTest.onSuccess(1_000);
+        underTest.onSuccess(1_000);
+        underTest.onFailure();
+
+        //When
+        underTest.onFailure();
+
+        //Then
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(underTest.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void isShouldLetSingleProbeThroughAfterOpenDuration() {
+        //Given
+        openCircuit();
+
+        //When
+        nanos.addAndGet(Duration.ofSeconds(31).toNanos());
+
+        //Then
+        assertThat(underTest.tryAcquirePermission()).isTrue();
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(underTest.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void isShouldCloseWhenProbeSucceeds() {
+        //Given
+        openCircuit();
+        nanos.addAndGet(Duration.ofSeconds(31).toNanos());
+        underTest.tryAcquirePermission();
+
+        //When
+        underTest.onSuccess(1_000);
+
+        //Then
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(underTest.failureRate()).isZero();
+    }
+
+    @Test
+    void isShouldReopenWhenProbeFails() {
+        //Given
+        openCircuit();
+        nanos.addAndGet(Duration.ofSeconds(31).toNanos());
+        underTest.tryAcquirePermission();
+
+        //When
+        underTest.onFailure();
+
+        //Then
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(underTest.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void isShouldReportLatencyPercentileOfSlidingWindow() {
+        //Given
+        assertThat(underTest.latencyPercentileNanos(0.99)).isEqualTo(-1);
+        for (int i = 0; i < 10; i++) {
+            underTest.onSuccess(TimeUnit.SECONDS.toNanos(1));
+        }
+
+        //When
+        // ... the slow calls slide out of the window
+        for (int i = 0; i < 10; i++) {
+            underTest.onSuccess(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        //Then
+        long p99 = underTest.latencyPercentileNanos(0.99);
+        assertThat(p99).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(10));
+        assertThat(p99).isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    private void openCircuit() {
+        for (int i = 0; i < 4; i++) {
+            underTest.onFailure();
+        }
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,125 @@
+package com.amigoscode.testing.payment.stripe;
+
+import com.amigoscode.testing.payment.CardPaymentCharge;
+import com.amigoscode.testing.payment.Currency;
+import com.amigoscode.testing.payment.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CircuitBreakingStripeServiceTest {
+
+    private final FakeStripeApi stripeApi = new FakeStripeApi();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private CircuitBreaker circuitBreaker;
+    private CircuitBreakingStripeService underTest;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreaker = new CircuitBreaker(10, 4, 0.5, Duration.ofMillis(200), System::nanoTime);
+        underTest = new CircuitBreakingStripeService(
+                new StripeService(stripeApi, new SimpleMeterRegistry()),
+                circuitBreaker,
+                executor,
+                Duration.ofMillis(50),
+                Duration.ofSeconds(1),
+                3,
+                System::nanoTime);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void isShouldChargeCardThroughClosedCircuit() {
+        //Given
+        //When
+        CardPaymentCharge cardPaymentCharge = charge();
+
+        //Then
+        assertThat(cardPaymentCharge.isCardDebited()).isTrue();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void isShouldFailFastWithoutCallingStripeOnceCircuitIsOpen() {
+        //Given
+        stripeApi.setDown(true);
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(this::charge).isInstanceOf(IllegalStateException.class);
+        }
+
+        //When
+        //Then
+        assertThatThrownBy(this::charge)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("circuit is open");
+        assertThat(stripeApi.getCalls()).isEqualTo(4);
+    }
+
+    @Test
+    void isShouldCloseCircuitWhenProbeSucceedsAfterOutage() throws InterruptedException {
+        //Given
+        stripeApi.setDown(true);
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(this::charge).isInstanceOf(IllegalStateException.class);
+        }
+        stripeApi.setDown(false);
+
+        //When
+        TimeUnit.MILLISECONDS.sleep(250);
+        CardPaymentCharge probe = charge();
+
+        //Then
+        assertThat(probe.isCardDebited()).isTrue();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void isShouldShrinkTimeoutToMinimumWhenStripeIsFast() {
+        //Given
+        assertThat(underTest.timeoutNanos()).isEqualTo(Duration.ofSeconds(1).toNanos());
+
+        //When
+        for (int i = 0; i < 20; i++) {
+            charge();
+        }
+
+        //Then
+        assertThat(underTest.timeoutNanos()).isEqualTo(Duration.ofMillis(50).toNanos());
+    }
+
+    @Test
+    void isShouldStopWaitingAndCountFailureWhenStripeIsSlowerThanTimeout() {
+        //Given
+        // ... twice the window, so slow first calls (thread start, class loading) slide out
+        for (int i = 0; i < 20; i++) {
+            charge();
+        }
+
+        //When
+        stripeApi.setLatencyMillis(500);
+
+        //Then
+        assertThatThrownBy(this::charge)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("no answer within 50 ms");
+        assertThat(circuitBreaker.failureRate()).isEqualTo(0.1);
+    }
+
+    private CardPaymentCharge charge() {
+        return underTest.chargeCard("card123xx", Money.parse("100.00", Currency.USD), "Donation");
+    }
+}
@@ -0,0 +1,51 @@
+package com.amigoscode.testing.payment.stripe;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Charge;
+import com.stripe.net.RequestOptions;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stands in for stripe with a switchable latency and outage, so the circuit breaker
+ * can be exercised without any network.
+ */
+class FakeStripeApi extends StripeApi {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile long latencyMillis;
+    private volatile boolean down;
+
+    @Override
+    public Charge create(Map<String, Object> params, RequestOptions options) throws StripeException {
+        calls.incrementAndGet();
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ApiConnectionException("Fake stripe call interrupted");
+            }
+        }
+        if (down) {
+            throw new ApiConnectionException("Fake stripe is down");
+        }
+        Charge charge = new Charge();
+        charge.setPaid(true);
+        return charge;
+    }
+
+    void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    void setDown(boolean down) {
+        this.down = down;
+    }
+
+    int getCalls() {
+        return calls.get();
+    }
+}
@@ -2,17 +2,18 @@ package com.amigoscode.testing.payment.stripe;
 
 import com.amigoscode.testing.payment.CardPaymentCharge;
 import com.amigoscode.testing.payment.Currency;
+import com.amigoscode.testing.payment.Money;
 import com.stripe.exception.ApiConnectionException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Charge;
 import com.stripe.net.RequestOptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
-import java.math.BigDecimal;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -26,21 +27,24 @@ class StripeServiceTest {
 
     private StripeService underTest;
 
+    private SimpleMeterRegistry meterRegistry;
+
     @Mock
     private StripeApi stripeApi;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.initMocks(this);
-        underTest = new StripeService(stripeApi);
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new StripeService(stripeApi, meterRegistry);
     }
 
     @Test
     void isShouldChargeCard() throws StripeException {
         //Given
         String cardSource = "0x0x0x";
-        BigDecimal amount = new BigDecimal("10.00");
         Currency currency = Currency.USD;
+        Money amount = Money.parse("10.00", currency);
         String description = "Zakat";
 
         //... Charge has been successful
@@ -49,7 +53,7 @@ class StripeServiceTest {
         given(stripeApi.create(anyMap(),any())).willReturn(charge);
 
         //When
-        CardPaymentCharge cardPaymentCharge = underTest.chargeCard(cardSource, amount, currency, description);
+        CardPaymentCharge cardPaymentCharge = underTest.chargeCard(cardSource, amount, description);
 
         //Then
         // ... Stripe API was called with correct input parameters
@@ -62,7 +66,8 @@ class StripeServiceTest {
 
         assertThat(requestMap.keySet()).hasSize(4);
         // ... correct parameters were passed to the Stripe API
-        assertThat(requestMap.get("amount")).isEqualTo(amount);
+        // ... stripe takes amounts in minor units
+        assertThat(requestMap.get("amount")).isEqualTo(1000L);
         assertThat(requestMap.get("currency")).isEqualTo(currency);
         assertThat(requestMap.get("source")).isEqualTo(cardSource);
         assertThat(requestMap.get("description")).isEqualTo(description);
@@ -72,14 +77,16 @@ class StripeServiceTest {
 
         // ... the charge was successful
         assertThat(cardPaymentCharge.isCardDebited()).isTrue();
+        // ... and its round trip timed as a success
+        assertThat(meterRegistry.get("stripe.charge.create").tag("outcome", "success").timer().count()).isEqualTo(1);
     }
 
     @Test
     void isShouldThrowExceptionWhenChargeCard() throws StripeException {
         //Given
         String cardSource = "0x0x0x";
-        BigDecimal amount = new BigDecimal("10.00");
         Currency currency = Currency.USD;
+        Money amount = Money.parse("10.00", currency);
         String description = "Zakat";
 
         //... Charge has been unsuccessful
@@ -87,8 +94,9 @@ class StripeServiceTest {
 
         //When
         //Then
-        assertThatThrownBy(() -> underTest.chargeCard(cardSource,amount,currency,description))
+        assertThatThrownBy(() -> underTest.chargeCard(cardSource, amount, description))
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessageContaining("Cannot make stripe charge");
+        assertThat(meterRegistry.get("stripe.charge.create").tag("outcome", "failure").timer().count()).isEqualTo(1);
     }
 }
\ No newline at end of file
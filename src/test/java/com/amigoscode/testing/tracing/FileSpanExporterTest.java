@@ -0,0 +1,71 @@
+package com.amigoscode.testing.tracing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileSpanExporterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void isShouldAppendSpansAsJsonLines() throws Exception {
+        //Given
+        Path file = directory.resolve("traces").resolve("spans.jsonl");
+        FileSpanExporter underTest = new FileSpanExporter(file, 100);
+        underTest.start();
+        Tracer tracer = new Tracer(underTest, true, 1.0);
+
+        Span root = tracer.startSpan("POST /api/v1/payment/{customerId}");
+        Span child = tracer.startSpan("StripeService.chargeCard");
+        child.setAttribute("currency", "USD")
+                .recordError(new IllegalStateException("Cannot make \"stripe\" charge"));
+
+        //When
+        child.end();
+        root.end();
+        underTest.stop();
+
+        //Then
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(2);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode childJson = objectMapper.readTree(lines.get(0));
+        assertThat(childJson.get("traceId").asText()).isEqualTo(root.getTraceId());
+        assertThat(childJson.get("parentSpanId").asText()).isEqualTo(root.getSpanId());
+        assertThat(childJson.get("name").asText()).isEqualTo("StripeService.chargeCard");
+        assertThat(childJson.get("status").asText()).isEqualTo("ERROR");
+        assertThat(childJson.get("error").asText()).isEqualTo("IllegalStateException: Cannot make \"stripe\" charge");
+        assertThat(childJson.get("attributes").get("currency").asText()).isEqualTo("USD");
+        assertThat(childJson.get("endTimeUnixNano").asLong())
+                .isGreaterThanOrEqualTo(childJson.get("startTimeUnixNano").asLong());
+
+        JsonNode rootJson = objectMapper.readTree(lines.get(1));
+        assertThat(rootJson.has("parentSpanId")).isFalse();
+        assertThat(rootJson.get("status").asText()).isEqualTo("OK");
+    }
+
+    @Test
+    void isShouldDropSpansThatDoNotFitInTheQueue() {
+        //Given
+        // ... not started, so nothing drains the queue
+        FileSpanExporter underTest = new FileSpanExporter(directory.resolve("spans.jsonl"), 1);
+        Tracer tracer = new Tracer(underTest, true, 1.0);
+
+        //When
+        tracer.startSpan("first").end();
+        tracer.startSpan("second").end();
+
+        //Then
+        assertThat(underTest.getDroppedSpans()).isEqualTo(1);
+    }
+}
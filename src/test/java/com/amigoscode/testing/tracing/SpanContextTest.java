@@ -0,0 +1,61 @@
+package com.amigoscode.testing.tracing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpanContextTest {
+
+    @Test
+    void isShouldRoundTripTraceparentHeader() {
+        //Given
+        String traceparent = "00-0af7651916cd43dd8448eb211c80319c-00f067aa0ba902b7-01";
+
+        //When
+        SpanContext context = SpanContext.fromTraceparent(traceparent);
+
+        //Then
+        assertThat(context.getTraceId()).isEqualTo("0af7651916cd43dd8448eb211c80319c");
+        assertThat(context.getSpanId()).isEqualTo("00f067aa0ba902b7");
+        assertThat(context.isSampled()).isTrue();
+        assertThat(context.toTraceparent()).isEqualTo(traceparent);
+    }
+
+    @Test
+    void isShouldReadUnsampledFlag() {
+        //When
+        SpanContext context =
+                SpanContext.fromTraceparent("00-0af7651916cd43dd8448eb211c80319c-00f067aa0ba902b7-00");
+
+        //Then
+        assertThat(context.isSampled()).isFalse();
+    }
+
+    @Test
+    void isShouldIgnoreMalformedTraceparent() {
+        assertThat(SpanContext.fromTraceparent(null)).isNull();
+        assertThat(SpanContext.fromTraceparent("")).isNull();
+        // ... unknown version
+        assertThat(SpanContext.fromTraceparent("ff-0af7651916cd43dd8448eb211c80319c-00f067aa0ba902b7-01")).isNull();
+        // ... not hex
+        assertThat(SpanContext.fromTraceparent("00-0af7651916cd43dd8448eb211c80319z-00f067aa0ba902b7-01")).isNull();
+        // ... all zero ids are invalid
+        assertThat(SpanContext.fromTraceparent("00-00000000000000000000000000000000-00f067aa0ba902b7-01")).isNull();
+        assertThat(SpanContext.fromTraceparent("00-0af7651916cd43dd8448eb211c80319c-0000000000000000-01")).isNull();
+    }
+
+    @Test
+    void isShouldKeepTraceIdAndSamplingForChild() {
+        //Given
+        SpanContext parent =
+                SpanContext.fromTraceparent("00-0af7651916cd43dd8448eb211c80319c-00f067aa0ba902b7-01");
+
+        //When
+        SpanContext child = parent.newChild();
+
+        //Then
+        assertThat(child.getTraceId()).isEqualTo(parent.getTraceId());
+        assertThat(child.getSpanId()).isNotEqualTo(parent.getSpanId()).hasSize(16);
+        assertThat(child.isSampled()).isTrue();
+    }
+}
@@ -0,0 +1,166 @@
+package com.amigoscode.testing.tracing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TracerTest {
+
+    private InMemorySpanExporter spanExporter;
+
+    private Tracer underTest;
+
+    @BeforeEach
+    void setUp() {
+        spanExporter = new InMemorySpanExporter(100);
+        underTest = new Tracer(spanExporter, true, 1.0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        // nothing may leak into the next test on this thread
+        assertThat(TraceContext.current()).isNull();
+    }
+
+    @Test
+    void isShouldNestSpansStartedWhileAnotherIsCurrent() {
+        //Given
+        Span root = underTest.startSpan("POST /api/v1/payment/{customerId}");
+        Span child = underTest.startSpan("CustomerRepository.existsById");
+
+        //When
+        child.end();
+        root.end();
+
+        //Then
+        // ... exported in the order they ended
+        List<Span> spans = spanExporter.getFinishedSpans();
+        assertThat(spans).containsExactly(child, root);
+        assertThat(child.getTraceId()).isEqualTo(root.getTraceId());
+        assertThat(child.getParentSpanId()).isEqualTo(root.getSpanId());
+        assertThat(root.getParentSpanId()).isNull();
+        assertThat(child.getDurationNanos()).isLessThanOrEqualTo(root.getDurationNanos());
+        assertThat(root.getEndEpochNanos()).isGreaterThanOrEqualTo(root.getStartEpochNanos());
+    }
+
+    @Test
+    void isShouldNotRecordAnySpanOfTraceThatIsNotSampled() {
+        //Given
+        underTest = new Tracer(spanExporter, true, 0.0);
+
+        //When
+        Span root = underTest.startSpan("GET /api/v1/payment/routes");
+        Span child = underTest.startSpan("PaymentController.getRouteStats");
+        child.setAttribute("ignored", true);
+        child.end();
+        root.end();
+
+        //Then
+        assertThat(root.isRecording()).isFalse();
+        // ... spans below an unsampled root are the shared no-op span
+        assertThat(child).isSameAs(Span.NOOP);
+        assertThat(spanExporter.getFinishedSpans()).isEmpty();
+    }
+
+    @Test
+    void isShouldSampleRoughlyTheConfiguredRatioOfTraces() {
+        //Given
+        spanExporter = new InMemorySpanExporter(10_000);
+        underTest = new Tracer(spanExporter, true, 0.25);
+
+        //When
+        for (int i = 0; i < 10_000; i++) {
+            underTest.startSpan("root").end();
+        }
+
+        //Then
+        assertThat(spanExporter.getFinishedSpans().size()).isBetween(2_000, 3_000);
+    }
+
+    @Test
+    void isShouldContinueRemoteTraceAndKeepItsSamplingDecision() {
+        //Given
+        underTest = new Tracer(spanExporter, true, 0.0);
+        SpanContext remoteParent =
+                SpanContext.fromTraceparent("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01");
+
+        //When
+        Span span = underTest.startRootSpan("POST /api/v1/payment/{customerId}", remoteParent);
+        span.end();
+
+        //Then
+        assertThat(spanExporter.getFinishedSpans()).containsExactly(span);
+        assertThat(span.getTraceId()).isEqualTo("0af7651916cd43dd8448eb211c80319c");
+        assertThat(span.getParentSpanId()).isEqualTo("b7ad6b7169203331");
+    }
+
+    @Test
+    void isShouldCarrySpanContextAcrossWrappedExecutor() throws Exception {
+        //Given
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Span root = underTest.startSpan("POST /api/v1/payment/{customerId}/async");
+
+        //When
+        CompletableFuture<Span> charge = CompletableFuture.supplyAsync(() -> {
+            Span span = underTest.startSpan("StripeService.chargeCard");
+            span.end();
+            return span;
+        }, TraceContext.wrap(executor));
+        Span chargeSpan = charge.get(5, TimeUnit.SECONDS);
+        root.end();
+
+        //Then
+        assertThat(chargeSpan.getTraceId()).isEqualTo(root.getTraceId());
+        assertThat(chargeSpan.getParentSpanId()).isEqualTo(root.getSpanId());
+
+        // ... and the pool thread is left without a context
+        assertThat(executor.submit(TraceContext::current).get(5, TimeUnit.SECONDS)).isNull();
+        executor.shutdown();
+    }
+
+    @Test
+    void isShouldRecordErrorOnSpan() {
+        //Given
+        Span span = underTest.startSpan("StripeService.chargeCard");
+
+        //When
+        span.recordError(new IllegalStateException("Cannot make stripe charge"));
+        span.end();
+
+        //Then
+        assertThat(spanExporter.getFinishedSpans()).hasSize(1);
+        assertThat(span.getError()).isEqualTo("IllegalStateException: Cannot make stripe charge");
+    }
+
+    @Test
+    void isShouldRecordNothingWhenDisabled() {
+        //Given
+        underTest = new Tracer(spanExporter, false, 1.0);
+
+        //When
+        Span span = underTest.startSpan("POST /api/v1/customer-registration");
+        span.end();
+
+        //Then
+        assertThat(span).isSameAs(Span.NOOP);
+        assertThat(spanExporter.getFinishedSpans()).isEmpty();
+    }
+
+    @Test
+    void isShouldRejectSampleRatioOutsideZeroToOne() {
+        //When
+        //Then
+        assertThatThrownBy(() -> new Tracer(spanExporter, true, 1.5))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Sample ratio [1.5] must be between 0 and 1");
+    }
+}